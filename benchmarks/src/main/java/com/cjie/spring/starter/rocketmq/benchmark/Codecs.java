@@ -0,0 +1,25 @@
+package com.cjie.spring.starter.rocketmq.benchmark;
+
+import com.cjie.spring.starter.rocketmq.codec.JsonMessageCodec;
+import com.cjie.spring.starter.rocketmq.codec.KryoMessageCodec;
+import com.cjie.spring.starter.rocketmq.codec.MessageCodec;
+
+/**
+ * Codecs by the name used in the <code>codec</code> benchmark parameter.
+ */
+final class Codecs {
+
+    private Codecs() {
+    }
+
+    static MessageCodec of(String name) {
+        switch (name) {
+            case "json":
+                return new JsonMessageCodec();
+            case "kryo":
+                return new KryoMessageCodec();
+            default:
+                throw new IllegalArgumentException("unknown codec: " + name);
+        }
+    }
+}
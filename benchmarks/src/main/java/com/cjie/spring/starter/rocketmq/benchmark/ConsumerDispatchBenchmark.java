@@ -0,0 +1,86 @@
+package com.cjie.spring.starter.rocketmq.benchmark;
+
+import com.cjie.spring.starter.rocketmq.core.DefaultRocketMQListenerContainer;
+import com.cjie.spring.starter.rocketmq.core.RocketMQBatchListener;
+import com.cjie.spring.starter.rocketmq.core.RocketMQListener;
+import org.apache.rocketmq.client.consumer.listener.ConsumeConcurrentlyContext;
+import org.apache.rocketmq.client.consumer.listener.MessageListenerConcurrently;
+import org.apache.rocketmq.common.message.MessageExt;
+import org.apache.rocketmq.common.message.MessageQueue;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The concurrently consume loop of {@link DefaultRocketMQListenerContainer}, including
+ * <code>doConvertMessage</code> and the listener call, for a batch of messages handed over by the push consumer.
+ * No consumer is started, the listener only feeds a {@link Blackhole}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConsumerDispatchBenchmark {
+
+    @Param({"256", "4096", "65536"})
+    private int payloadSize;
+
+    @Param({"json", "kryo"})
+    private String codec;
+
+    @Param({"1", "32"})
+    private int batchSize;
+
+    @Param({"false", "true"})
+    private boolean batchListener;
+
+    private MessageListenerConcurrently listener;
+
+    private List<MessageExt> msgs;
+
+    private ConsumeConcurrentlyContext context;
+
+    @Setup
+    public void setup(Blackhole blackhole) {
+        DefaultRocketMQListenerContainer container = new DefaultRocketMQListenerContainer();
+        if (batchListener) {
+            container.setRocketMQBatchListener((RocketMQBatchListener<Payloads.Order>) blackhole::consume);
+        } else {
+            container.setRocketMQListener((RocketMQListener<Payloads.Order>) blackhole::consume);
+        }
+        container.setMessageType(Payloads.Order.class);
+        container.setMessageCodec(Codecs.of(codec));
+        container.setMessageDecoder(container.getMessageCodec().decoderFor(Payloads.Order.class));
+        listener = container.new DefaultMessageListenerConcurrently();
+
+        byte[] body = container.getMessageCodec().encode(Payloads.order(payloadSize));
+        msgs = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            MessageExt messageExt = new MessageExt();
+            messageExt.setTopic("benchmark");
+            messageExt.setBody(body);
+            msgs.add(messageExt);
+        }
+        context = new ConsumeConcurrentlyContext(new MessageQueue("benchmark", "broker-a", 0));
+    }
+
+    @Benchmark
+    public Object consumeMessage() {
+        return listener.consumeMessage(msgs, context);
+    }
+}
@@ -0,0 +1,60 @@
+package com.cjie.spring.starter.rocketmq.benchmark;
+
+import com.alibaba.fastjson.JSON;
+import com.cjie.spring.starter.rocketmq.codec.JsonMessageCodec;
+import com.cjie.spring.starter.rocketmq.codec.MessageCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the former String based JSON decode with {@link JsonMessageCodec#decode}. Run with <code>-prof gc</code>
+ * and compare <code>gc.alloc.rate.norm</code> for the bytes allocated per message.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonDecodeBenchmark {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @Param({"256", "4096", "65536", "262144"})
+    private int payloadSize;
+
+    private byte[] body;
+
+    private MessageCodec codec;
+
+    @Setup
+    public void setup() {
+        body = JSON.toJSONString(Payloads.order(payloadSize)).getBytes(UTF_8);
+        codec = new JsonMessageCodec(UTF_8);
+    }
+
+    /**
+     * The conversion of DefaultRocketMQListenerContainer before the codec decoded from bytes.
+     */
+    @Benchmark
+    public Object viaString() {
+        return JSON.parseObject(new String(body, Charset.forName("UTF-8")), Payloads.Order.class);
+    }
+
+    @Benchmark
+    public Object viaCodec() {
+        return codec.decode(body, Payloads.Order.class);
+    }
+}
@@ -0,0 +1,53 @@
+package com.cjie.spring.starter.rocketmq.benchmark;
+
+import lombok.Data;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Test payloads of roughly the requested encoded size.
+ */
+final class Payloads {
+
+    private Payloads() {
+    }
+
+    static Order order(int approximateSize) {
+        Order order = new Order();
+        order.setId(20180101L);
+        order.setCustomer("customer-0001");
+        List<Item> items = new ArrayList<>();
+        // one item is about 64 bytes of JSON
+        for (int i = 0; i < Math.max(1, approximateSize / 64); i++) {
+            Item item = new Item();
+            item.setSku("sku-" + i);
+            item.setQuantity(i % 7 + 1);
+            item.setPrice(i * 100L + 99);
+            items.add(item);
+        }
+        order.setItems(items);
+        return order;
+    }
+
+    @Data
+    public static class Order implements Serializable {
+
+        private Long id;
+
+        private String customer;
+
+        private List<Item> items;
+    }
+
+    @Data
+    public static class Item implements Serializable {
+
+        private String sku;
+
+        private int quantity;
+
+        private long price;
+    }
+}
@@ -0,0 +1,63 @@
+package com.cjie.spring.starter.rocketmq.benchmark;
+
+import com.cjie.spring.starter.rocketmq.core.RocketMQMessage;
+import com.cjie.spring.starter.rocketmq.core.RocketMQProducer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <code>RocketMQProducer.syncSend</code> against a {@link StubMQProducer}, which measures validation,
+ * <code>RocketMQMessage.covertMq</code> and the codec's encode without any broker I/O.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProducerEncodeBenchmark {
+
+    @Param({"256", "4096", "65536"})
+    private int payloadSize;
+
+    @Param({"json", "kryo"})
+    private String codec;
+
+    private RocketMQProducer producer;
+
+    private RocketMQMessage<Payloads.Order> message;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        producer = new RocketMQProducer();
+        producer.setProducer(new StubMQProducer());
+        producer.setMessageCodec(Codecs.of(codec));
+        producer.afterPropertiesSet();
+
+        message = RocketMQMessage.<Payloads.Order>builder().topic("benchmark").tags("tag").key("key")
+            .body(Payloads.order(payloadSize)).build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        producer.destroy();
+    }
+
+    @Benchmark
+    public Object syncSend() {
+        return producer.syncSend(message);
+    }
+}
@@ -0,0 +1,52 @@
+package com.cjie.spring.starter.rocketmq.benchmark;
+
+import org.apache.rocketmq.client.producer.DefaultMQProducer;
+import org.apache.rocketmq.client.producer.MessageQueueSelector;
+import org.apache.rocketmq.client.producer.SendCallback;
+import org.apache.rocketmq.client.producer.SendResult;
+import org.apache.rocketmq.client.producer.SendStatus;
+import org.apache.rocketmq.common.message.Message;
+import org.apache.rocketmq.common.message.MessageQueue;
+
+import java.util.Collection;
+
+/**
+ * Producer without broker I/O, every send completes immediately with the same result.
+ */
+class StubMQProducer extends DefaultMQProducer {
+
+    private final SendResult sendResult = new SendResult(SendStatus.SEND_OK, "msgId", "offsetMsgId",
+        new MessageQueue("benchmark", "broker-a", 0), 0);
+
+    StubMQProducer() {
+        super("benchmark_producer");
+    }
+
+    @Override
+    public void start() {
+    }
+
+    @Override
+    public void shutdown() {
+    }
+
+    @Override
+    public SendResult send(Message msg, long timeout) {
+        return sendResult;
+    }
+
+    @Override
+    public SendResult send(Message msg, MessageQueueSelector selector, Object arg, long timeout) {
+        return sendResult;
+    }
+
+    @Override
+    public void send(Message msg, SendCallback sendCallback, long timeout) {
+        sendCallback.onSuccess(sendResult);
+    }
+
+    @Override
+    public SendResult send(Collection<Message> msgs, long timeout) {
+        return sendResult;
+    }
+}
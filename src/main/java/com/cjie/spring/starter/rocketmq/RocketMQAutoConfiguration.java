@@ -2,19 +2,45 @@
 
 package com.cjie.spring.starter.rocketmq;
 
+import com.cjie.spring.starter.rocketmq.codec.JsonMessageCodec;
+import com.cjie.spring.starter.rocketmq.codec.MessageCodec;
+import com.cjie.spring.starter.rocketmq.core.ConsistentHashMessageQueueSelector;
 import com.cjie.spring.starter.rocketmq.core.RocketMQProducer;
 import com.cjie.spring.starter.rocketmq.annotation.RocketMQMessageListener;
 import com.cjie.spring.starter.rocketmq.core.DefaultRocketMQListenerContainer;
+import com.cjie.spring.starter.rocketmq.core.DefaultRocketMQPullListenerContainer;
+import com.cjie.spring.starter.rocketmq.core.DelayLevels;
+import com.cjie.spring.starter.rocketmq.core.MessageDedupStore;
+import com.cjie.spring.starter.rocketmq.core.RocketMQBatchAccumulator;
+import com.cjie.spring.starter.rocketmq.core.ReactiveRocketMQProducer;
+import com.cjie.spring.starter.rocketmq.core.RocketMQBatchListener;
+import com.cjie.spring.starter.rocketmq.core.RocketMQFluxListener;
 import com.cjie.spring.starter.rocketmq.core.RocketMQListener;
+import com.cjie.spring.starter.rocketmq.core.RocketMQListenerContainerStarter;
+import com.cjie.spring.starter.rocketmq.core.RocketMQMetrics;
+import com.cjie.spring.starter.rocketmq.core.RocketMQPullListener;
+import com.cjie.spring.starter.rocketmq.core.RocketMQReplyConsumer;
+import com.cjie.spring.starter.rocketmq.core.RocketMQSpillover;
+import com.cjie.spring.starter.rocketmq.core.SpilloverJournal;
+import com.cjie.spring.starter.rocketmq.core.VirtualThreadExecutors;
+import com.cjie.spring.starter.rocketmq.enums.DedupKey;
+import com.cjie.spring.starter.rocketmq.enums.QueueSelectorType;
+import com.cjie.spring.starter.rocketmq.enums.StartupMode;
+import com.cjie.spring.starter.rocketmq.metrics.MicrometerRocketMQMetrics;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.rocketmq.client.consumer.DefaultMQPushConsumer;
 import org.apache.rocketmq.client.impl.MQClientAPIImpl;
 import org.apache.rocketmq.client.producer.DefaultMQProducer;
+import org.apache.rocketmq.client.producer.MessageQueueSelector;
 import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.BeanUtils;
 import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.support.BeanDefinitionBuilder;
 import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
@@ -23,15 +49,23 @@ import org.springframework.boot.context.properties.EnableConfigurationProperties
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationContextAware;
 import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.SmartLifecycle;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.annotation.Order;
 import org.springframework.core.env.StandardEnvironment;
 import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
 
 import javax.annotation.Resource;
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
 import static com.cjie.spring.starter.rocketmq.core.DefaultRocketMQListenerContainerConstants.*;
@@ -41,6 +75,8 @@ import static com.cjie.spring.starter.rocketmq.core.DefaultRocketMQListenerConta
 @Configuration
 @EnableConfigurationProperties(RocketMQProperties.class)
 @ConditionalOnClass(MQClientAPIImpl.class)
+@AutoConfigureAfter(name = {"io.micrometer.spring.autoconfigure.MetricsAutoConfiguration",
+    "io.micrometer.spring.autoconfigure.CompositeMeterRegistryAutoConfiguration"})
 @Order
 @Slf4j
 public class RocketMQAutoConfiguration {
@@ -64,18 +100,97 @@ public class RocketMQAutoConfiguration {
         producer.setCompressMsgBodyOverHowmuch(producerConfig.getCompressMsgBodyOverHowmuch());
         producer.setRetryAnotherBrokerWhenNotStoreOK(producerConfig.isRetryAnotherBrokerWhenNotStoreOk());
 
+        RocketMQProperties.LatencyFault latencyFault = producerConfig.getLatencyFault();
+        if (latencyFault.isEnabled()) {
+            Assert.isTrue(latencyFault.getLatencyMax().length == latencyFault.getNotAvailableDuration().length,
+                "[spring.rocketmq.producer.latency-fault] tiers must have the same length");
+            producer.setSendLatencyFaultEnable(true);
+            producer.setLatencyMax(latencyFault.getLatencyMax());
+            producer.getDefaultMQProducerImpl().setNotAvailableDuration(latencyFault.getNotAvailableDuration());
+        }
+
         return producer;
     }
 
     @Bean(destroyMethod = "destroy")
     @ConditionalOnBean(DefaultMQProducer.class)
     @ConditionalOnMissingBean(name = "rocketMQTemplate")
-    public RocketMQProducer rocketMQProducer(DefaultMQProducer mqProducer) {
+    public RocketMQProducer rocketMQProducer(DefaultMQProducer mqProducer, RocketMQProperties rocketMQProperties,
+        ObjectProvider<MessageCodec> messageCodec, ObjectProvider<RocketMQMetrics> metrics,
+        ObjectProvider<MessageQueueSelector> messageQueueSelector) throws IOException {
         RocketMQProducer rocketMQProducer = new RocketMQProducer();
         rocketMQProducer.setProducer(mqProducer);
+        rocketMQProducer.setPoolSize(rocketMQProperties.getProducer().getPoolSize());
+        rocketMQProducer.setRouting(rocketMQProperties.getProducer().getRouting());
+        rocketMQProducer.setDelayLevels(new DelayLevels(rocketMQProperties.getDelayLevels()));
+        if (Objects.nonNull(messageCodec.getIfUnique())) {
+            rocketMQProducer.setMessageCodec(messageCodec.getIfUnique());
+        }
+        if (Objects.nonNull(metrics.getIfUnique())) {
+            rocketMQProducer.setMetrics(metrics.getIfUnique());
+        }
+        if (Objects.nonNull(messageQueueSelector.getIfUnique())) {
+            rocketMQProducer.setMessageQueueSelector(messageQueueSelector.getIfUnique());
+        } else if (rocketMQProperties.getProducer().getOrderlySelector() == QueueSelectorType.CONSISTENT_HASH) {
+            rocketMQProducer.setMessageQueueSelector(new ConsistentHashMessageQueueSelector());
+        }
+
+        RocketMQProperties.Batching batching = rocketMQProperties.getProducer().getBatching();
+        if (batching.isEnabled()) {
+            rocketMQProducer.setBatchAccumulator(new RocketMQBatchAccumulator(batching.getLingerMs(), batching.getBatchSize()));
+        }
+
+        RocketMQProperties.Spillover spillover = rocketMQProperties.getProducer().getSpillover();
+        if (spillover.isEnabled()) {
+            File dir = StringUtils.hasText(spillover.getDir()) ? new File(spillover.getDir())
+                : new File(System.getProperty("user.home"), "rocketmq-spillover" + File.separator
+                    + mqProducer.getProducerGroup());
+            SpilloverJournal journal = new SpilloverJournal(dir, spillover.getSegmentSize(), spillover.getMaxSize());
+            RocketMQSpillover rocketMQSpillover = new RocketMQSpillover(journal, spillover.getRetryInterval());
+            rocketMQSpillover.setMaxReplayAttempts(spillover.getMaxReplayAttempts());
+            rocketMQProducer.setSpillover(rocketMQSpillover);
+        }
+
+        RocketMQProperties.Reply reply = rocketMQProperties.getProducer().getReply();
+        if (reply.isEnabled()) {
+            Assert.hasText(reply.getTopic(), "[spring.rocketmq.producer.reply.topic] must not be null");
+            DefaultMQPushConsumer replyConsumer = new DefaultMQPushConsumer(StringUtils.hasText(reply.getGroup())
+                ? reply.getGroup() : mqProducer.getProducerGroup() + "_REPLY");
+            replyConsumer.setNamesrvAddr(rocketMQProperties.getNameServer());
+            replyConsumer.setConsumeThreadMin(reply.getConsumeThreads());
+            replyConsumer.setConsumeThreadMax(reply.getConsumeThreads());
+            rocketMQProducer.setReplyConsumer(StringUtils.hasText(reply.getInstanceId())
+                ? new RocketMQReplyConsumer(replyConsumer, reply.getTopic(), reply.getInstanceId())
+                : new RocketMQReplyConsumer(replyConsumer, reply.getTopic()));
+        }
         return rocketMQProducer;
     }
 
+    @Configuration
+    @ConditionalOnClass(MeterRegistry.class)
+    @ConditionalOnBean(MeterRegistry.class)
+    public static class MetricsConfiguration {
+
+        @Bean
+        @ConditionalOnMissingBean(RocketMQMetrics.class)
+        public RocketMQMetrics rocketMQMetrics(MeterRegistry meterRegistry) {
+            return new MicrometerRocketMQMetrics(meterRegistry);
+        }
+    }
+
+    @Configuration
+    @ConditionalOnClass(name = "reactor.core.publisher.Flux")
+    @ConditionalOnProperty(prefix = "spring.rocketmq", value = {"nameServer", "producer.group"})
+    public static class ReactiveConfiguration {
+
+        @Bean
+        @ConditionalOnMissingBean(ReactiveRocketMQProducer.class)
+        public ReactiveRocketMQProducer reactiveRocketMQProducer(RocketMQProducer rocketMQProducer,
+            RocketMQProperties rocketMQProperties) {
+            return new ReactiveRocketMQProducer(rocketMQProducer, rocketMQProperties.getProducer().getMaxInFlight());
+        }
+    }
+
     @Configuration
     @ConditionalOnClass(DefaultMQPushConsumer.class)
     @EnableConfigurationProperties(RocketMQProperties.class)
@@ -84,8 +199,18 @@ public class RocketMQAutoConfiguration {
     public static class ListenerContainerConfiguration implements ApplicationContextAware, InitializingBean {
         private ConfigurableApplicationContext applicationContext;
 
+        private static final String VIRTUAL_LISTENER_EXECUTOR = "virtual";
+
+        private static final String VIRTUAL_LISTENER_EXECUTOR_BEAN = "rocketMQVirtualListenerExecutor";
+
         private AtomicLong counter = new AtomicLong(0);
 
+        private ExecutorService virtualThreadExecutor;
+
+        private StartupMode startupMode;
+
+        private final Map<String, SmartLifecycle> deferredContainers = new LinkedHashMap<>();
+
         @Resource
         private StandardEnvironment environment;
 
@@ -100,6 +225,7 @@ public class RocketMQAutoConfiguration {
 
         @Override
         public void afterPropertiesSet() {
+            this.startupMode = rocketMQProperties.getConsumer().getStartupMode();
             Map<String, Object> beans = this.applicationContext.getBeansWithAnnotation(RocketMQMessageListener.class);
 
             if (Objects.nonNull(beans)) {
@@ -107,14 +233,32 @@ public class RocketMQAutoConfiguration {
             }
         }
 
+        @Bean
+        public RocketMQListenerContainerStarter rocketMQListenerContainerStarter() {
+            return new RocketMQListenerContainerStarter(deferredContainers, startupMode,
+                rocketMQProperties.getConsumer().getStartupParallelism());
+        }
+
         private void registerContainer(String beanName, Object bean) {
             Class<?> clazz = AopUtils.getTargetClass(bean);
+            if (RocketMQPullListener.class.isAssignableFrom(bean.getClass())) {
+                registerPullContainer(beanName, bean, clazz);
+                return;
+            }
 
-            if (!RocketMQListener.class.isAssignableFrom(bean.getClass())) {
-                throw new IllegalStateException(clazz + " is not instance of " + RocketMQListener.class.getName());
+            String listenerProperty;
+            if (RocketMQBatchListener.class.isAssignableFrom(bean.getClass())) {
+                listenerProperty = PROP_ROCKETMQ_BATCH_LISTENER;
+            } else if (RocketMQListener.class.isAssignableFrom(bean.getClass())) {
+                listenerProperty = PROP_ROCKETMQ_LISTENER;
+            } else if (RocketMQFluxListener.class.isAssignableFrom(bean.getClass())) {
+                listenerProperty = PROP_ROCKETMQ_FLUX_LISTENER;
+            } else {
+                throw new IllegalStateException(clazz + " is not instance of " + RocketMQListener.class.getName()
+                    + ", " + RocketMQBatchListener.class.getName() + ", " + RocketMQFluxListener.class.getName()
+                    + " or " + RocketMQPullListener.class.getName());
             }
 
-            RocketMQListener rocketMQListener = (RocketMQListener) bean;
             RocketMQMessageListener annotation = clazz.getAnnotation(RocketMQMessageListener.class);
             BeanDefinitionBuilder beanBuilder = BeanDefinitionBuilder.rootBeanDefinition(DefaultRocketMQListenerContainer.class);
             beanBuilder.addPropertyValue(PROP_NAMESERVER, rocketMQProperties.getNameServer());
@@ -123,19 +267,77 @@ public class RocketMQAutoConfiguration {
             beanBuilder.addPropertyValue(PROP_CONSUMER_GROUP, environment.resolvePlaceholders(annotation.consumerGroup()));
             beanBuilder.addPropertyValue(PROP_CONSUME_MODE, annotation.consumeMode());
             beanBuilder.addPropertyValue(PROP_CONSUME_THREAD_MAX, annotation.consumeThreadMax());
+
+            RocketMQProperties.Consumer consumerConfig = rocketMQProperties.getConsumer();
+            beanBuilder.addPropertyValue(PROP_CONSUME_THREAD_MIN,
+                resolveNumber(annotation.consumeThreadMin(), consumerConfig.getConsumeThreadMin()));
+            beanBuilder.addPropertyValue(PROP_PULL_BATCH_SIZE,
+                resolveNumber(annotation.pullBatchSize(), consumerConfig.getPullBatchSize()));
+            beanBuilder.addPropertyValue(PROP_PULL_INTERVAL,
+                resolveNumber(annotation.pullInterval(), consumerConfig.getPullInterval()));
+            beanBuilder.addPropertyValue(PROP_PULL_THRESHOLD_FOR_QUEUE,
+                resolveNumber(annotation.pullThresholdForQueue(), consumerConfig.getPullThresholdForQueue()));
+            beanBuilder.addPropertyValue(PROP_PULL_THRESHOLD_SIZE_FOR_QUEUE,
+                resolveNumber(annotation.pullThresholdSizeForQueue(), consumerConfig.getPullThresholdSizeForQueue()));
+            beanBuilder.addPropertyValue(PROP_CONSUME_CONCURRENTLY_MAX_SPAN,
+                resolveNumber(annotation.consumeConcurrentlyMaxSpan(), consumerConfig.getConsumeConcurrentlyMaxSpan()));
+            beanBuilder.addPropertyValue(PROP_CONSUME_TIMEOUT,
+                resolveNumber(annotation.consumeTimeout(), consumerConfig.getConsumeTimeout()));
+            beanBuilder.addPropertyValue(PROP_KEY_ORDERED_CONCURRENCY,
+                resolveNumber(annotation.keyOrderedConcurrency(), consumerConfig.getKeyOrderedConcurrency()));
+            Executor listenerExecutor = resolveListenerExecutor(annotation.listenerExecutor().isEmpty()
+                ? consumerConfig.getListenerExecutor() : annotation.listenerExecutor());
+            if (Objects.nonNull(listenerExecutor)) {
+                beanBuilder.addPropertyValue(PROP_LISTENER_EXECUTOR, listenerExecutor);
+            }
+            beanBuilder.addPropertyValue(PROP_LISTENER_CONCURRENCY,
+                resolveNumber(annotation.listenerConcurrency(), consumerConfig.getListenerConcurrency()));
+            RocketMQProperties.Adaptive adaptive = consumerConfig.getAdaptive();
+            String adaptiveConcurrency = environment.resolvePlaceholders(annotation.adaptiveConcurrency()).trim();
+            beanBuilder.addPropertyValue(PROP_ADAPTIVE_CONCURRENCY,
+                adaptiveConcurrency.isEmpty() ? adaptive.isEnabled() : Boolean.parseBoolean(adaptiveConcurrency));
+            beanBuilder.addPropertyValue(PROP_ADAPTIVE_TARGET_LATENCY,
+                resolveNumber(annotation.adaptiveTargetLatency(), adaptive.getTargetLatency()));
+            beanBuilder.addPropertyValue(PROP_ADAPTIVE_MAX_ERROR_RATE, adaptive.getMaxErrorRate());
+            beanBuilder.addPropertyValue(PROP_ADAPTIVE_INTERVAL, adaptive.getInterval());
+            RocketMQProperties.Dedup dedup = consumerConfig.getDedup();
+            String dedupKey = environment.resolvePlaceholders(annotation.dedupKey()).trim();
+            beanBuilder.addPropertyValue(PROP_DEDUP_KEY,
+                dedupKey.isEmpty() ? dedup.getKey() : DedupKey.valueOf(dedupKey.toUpperCase()));
+            beanBuilder.addPropertyValue(PROP_DEDUP_CAPACITY, dedup.getCapacity());
+            beanBuilder.addPropertyValue(PROP_DEDUP_WINDOW, dedup.getWindow());
+            String dedupStore = environment.resolvePlaceholders(
+                annotation.dedupStore().isEmpty() ? dedup.getStore() : annotation.dedupStore()).trim();
+            if (!dedupStore.isEmpty()) {
+                beanBuilder.addPropertyValue(PROP_DEDUP_STORE, applicationContext.getBean(dedupStore, MessageDedupStore.class));
+            }
+            beanBuilder.addPropertyValue(PROP_DELAY_LEVELS, new DelayLevels(rocketMQProperties.getDelayLevels()));
+            beanBuilder.addPropertyValue(PROP_CONSUME_MESSAGE_BATCH_MAX_SIZE, annotation.consumeMessageBatchMaxSize());
             beanBuilder.addPropertyValue(PROP_MESSAGE_MODEL, annotation.messageModel());
+            beanBuilder.addPropertyValue(PROP_MESSAGE_CODEC, resolveMessageCodec(annotation.messageCodec()));
+            String[] metricsBeanNames = applicationContext.getBeanNamesForType(RocketMQMetrics.class);
+            if (metricsBeanNames.length == 1) {
+                beanBuilder.addPropertyReference(PROP_METRICS, metricsBeanNames[0]);
+            }
             beanBuilder.addPropertyValue(PROP_SELECTOR_EXPRESS, environment.resolvePlaceholders(annotation.selectorExpress()));
             beanBuilder.addPropertyValue(PROP_SELECTOR_TYPE, annotation.selectorType());
-            beanBuilder.addPropertyValue(PROP_ROCKETMQ_LISTENER, rocketMQListener);
+            beanBuilder.addPropertyValue(listenerProperty, bean);
+            beanBuilder.addPropertyValue(PROP_DRAIN_TIMEOUT, consumerConfig.getDrainTimeout());
+            beanBuilder.addPropertyValue(PROP_START_ON_INITIALIZATION, startupMode == StartupMode.EAGER);
             beanBuilder.setDestroyMethodName(METHOD_DESTROY);
 
             String containerBeanName = String.format("%s_%s", DefaultRocketMQListenerContainer.class.getName(), counter.incrementAndGet());
             DefaultListableBeanFactory beanFactory = (DefaultListableBeanFactory) applicationContext.getBeanFactory();
             beanFactory.registerBeanDefinition(containerBeanName, beanBuilder.getBeanDefinition());
+            if (Objects.nonNull(listenerExecutor) && listenerExecutor == virtualThreadExecutor) {
+                beanFactory.registerDependentBean(VIRTUAL_LISTENER_EXECUTOR_BEAN, containerBeanName);
+            }
 
             DefaultRocketMQListenerContainer container = beanFactory.getBean(containerBeanName, DefaultRocketMQListenerContainer.class);
 
-            if (!container.isStarted()) {
+            if (startupMode != StartupMode.EAGER) {
+                deferredContainers.put(containerBeanName, container);
+            } else if (!container.isStarted()) {
                 try {
                     container.start();
                 } catch (Exception e) {
@@ -146,5 +348,97 @@ public class RocketMQAutoConfiguration {
 
             log.info("register rocketMQ listener to container, listenerBeanName:{}, containerBeanName:{}", beanName, containerBeanName);
         }
+
+        private void registerPullContainer(String beanName, Object bean, Class<?> clazz) {
+            RocketMQMessageListener annotation = clazz.getAnnotation(RocketMQMessageListener.class);
+            RocketMQProperties.Consumer consumerConfig = rocketMQProperties.getConsumer();
+            BeanDefinitionBuilder beanBuilder = BeanDefinitionBuilder.rootBeanDefinition(DefaultRocketMQPullListenerContainer.class);
+            beanBuilder.addPropertyValue(PROP_NAMESERVER, rocketMQProperties.getNameServer());
+            beanBuilder.addPropertyValue(PROP_TOPIC, environment.resolvePlaceholders(annotation.topic()));
+            beanBuilder.addPropertyValue(PROP_CONSUMER_GROUP, environment.resolvePlaceholders(annotation.consumerGroup()));
+            beanBuilder.addPropertyValue(PROP_SELECTOR_EXPRESS, environment.resolvePlaceholders(annotation.selectorExpress()));
+            beanBuilder.addPropertyValue(PROP_SELECTOR_TYPE, annotation.selectorType());
+            beanBuilder.addPropertyValue(PROP_MESSAGE_MODEL, annotation.messageModel());
+            beanBuilder.addPropertyValue(PROP_PULL_BATCH_SIZE,
+                resolveNumber(annotation.pullBatchSize(), consumerConfig.getPullBatchSize()));
+            beanBuilder.addPropertyValue(PROP_PULL_THREADS,
+                resolveNumber(annotation.pullThreads(), consumerConfig.getPullThreads()));
+            beanBuilder.addPropertyValue(PROP_MESSAGE_CODEC, resolveMessageCodec(annotation.messageCodec()));
+            String[] metricsBeanNames = applicationContext.getBeanNamesForType(RocketMQMetrics.class);
+            if (metricsBeanNames.length == 1) {
+                beanBuilder.addPropertyReference(PROP_METRICS, metricsBeanNames[0]);
+            }
+            beanBuilder.addPropertyValue(PROP_ROCKETMQ_PULL_LISTENER, bean);
+            beanBuilder.addPropertyValue(PROP_DRAIN_TIMEOUT, consumerConfig.getDrainTimeout());
+            beanBuilder.addPropertyValue(PROP_START_ON_INITIALIZATION, startupMode == StartupMode.EAGER);
+            beanBuilder.setDestroyMethodName(METHOD_DESTROY);
+
+            String containerBeanName = String.format("%s_%s", DefaultRocketMQPullListenerContainer.class.getName(), counter.incrementAndGet());
+            DefaultListableBeanFactory beanFactory = (DefaultListableBeanFactory) applicationContext.getBeanFactory();
+            beanFactory.registerBeanDefinition(containerBeanName, beanBuilder.getBeanDefinition());
+
+            DefaultRocketMQPullListenerContainer container = beanFactory.getBean(containerBeanName, DefaultRocketMQPullListenerContainer.class);
+            if (startupMode != StartupMode.EAGER) {
+                deferredContainers.put(containerBeanName, container);
+            }
+
+            log.info("register rocketMQ pull listener to container, listenerBeanName:{}, containerBeanName:{}", beanName, containerBeanName);
+        }
+
+        /**
+         * Resolve placeholders of a numeric annotation attribute, an empty attribute falls back to the global default.
+         */
+        private String resolveNumber(String value, long defaultValue) {
+            String resolved = environment.resolvePlaceholders(value).trim();
+            return resolved.isEmpty() ? String.valueOf(defaultValue) : resolved;
+        }
+
+        /**
+         * Resolve the executor of a listener by bean name, <code>virtual</code> shares one virtual thread per task
+         * executor among all listeners.
+         */
+        private Executor resolveListenerExecutor(String name) {
+            String resolved = environment.resolvePlaceholders(name).trim();
+            if (resolved.isEmpty()) {
+                return null;
+            }
+            if (!VIRTUAL_LISTENER_EXECUTOR.equals(resolved)) {
+                return applicationContext.getBean(resolved, Executor.class);
+            }
+            if (Objects.isNull(virtualThreadExecutor)) {
+                virtualThreadExecutor = VirtualThreadExecutors.newVirtualThreadPerTaskExecutor();
+                if (Objects.isNull(virtualThreadExecutor)) {
+                    throw new IllegalStateException("listener executor 'virtual' requires a runtime with virtual threads, "
+                        + "current java version: " + System.getProperty("java.version"));
+                }
+                // the containers using it are registered as its dependents, so they are destroyed before it
+                ((DefaultListableBeanFactory) applicationContext.getBeanFactory())
+                    .registerDisposableBean(VIRTUAL_LISTENER_EXECUTOR_BEAN, this::shutdownVirtualThreadExecutor);
+            }
+            return virtualThreadExecutor;
+        }
+
+        private void shutdownVirtualThreadExecutor() throws InterruptedException {
+            virtualThreadExecutor.shutdown();
+            long drainTimeout = rocketMQProperties.getConsumer().getDrainTimeout();
+            if (!virtualThreadExecutor.awaitTermination(drainTimeout, TimeUnit.MILLISECONDS)) {
+                log.warn("virtual listener executor not terminated after {} ms, interrupt its tasks", drainTimeout);
+                virtualThreadExecutor.shutdownNow();
+            }
+        }
+
+        /**
+         * Resolve the codec of a listener like the producer does, a listener keeping the default codec uses the only
+         * {@link MessageCodec} bean of any type.
+         */
+        private MessageCodec resolveMessageCodec(Class<? extends MessageCodec> codecClass) {
+            Class<? extends MessageCodec> beanType = codecClass == JsonMessageCodec.class ? MessageCodec.class
+                : codecClass;
+            String[] beanNames = applicationContext.getBeanNamesForType(beanType);
+            if (beanNames.length == 1) {
+                return applicationContext.getBean(beanNames[0], beanType);
+            }
+            return BeanUtils.instantiateClass(codecClass);
+        }
     }
 }
@@ -2,6 +2,11 @@
 
 package com.cjie.spring.starter.rocketmq;
 
+import com.cjie.spring.starter.rocketmq.core.DelayLevels;
+import com.cjie.spring.starter.rocketmq.enums.DedupKey;
+import com.cjie.spring.starter.rocketmq.enums.ProducerRouting;
+import com.cjie.spring.starter.rocketmq.enums.QueueSelectorType;
+import com.cjie.spring.starter.rocketmq.enums.StartupMode;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
@@ -14,8 +19,16 @@ public class RocketMQProperties {
      */
     private String nameServer;
 
+    /**
+     * Delay levels of the brokers, their `messageDelayLevel` setting. Messages with a deliver time are sent with the
+     * highest level not exceeding their delay.
+     */
+    private String delayLevels = DelayLevels.DEFAULT_LEVELS;
+
     private Producer producer;
 
+    private Consumer consumer = new Consumer();
+
     @Data
     public static class Producer {
 
@@ -56,5 +69,272 @@ public class RocketMQProperties {
          */
         private int maxMessageSize = 1024 * 1024 * 4; // 4M
 
+        private Batching batching = new Batching();
+
+        /**
+         * Max number of sends awaiting their result per stream of messages sent by `ReactiveRocketMQProducer`.
+         */
+        private int maxInFlight = 256;
+
+        /**
+         * Number of producer instances sends are spread over, each with its own client instance and connections.
+         */
+        private int poolSize = 1;
+
+        /**
+         * How a send picks a producer of the pool, orderly sends always go by their hash key.
+         */
+        private ProducerRouting routing = ProducerRouting.ROUND_ROBIN;
+
+        /**
+         * How orderly sends pick the queue of their hash key, a `MessageQueueSelector` bean takes precedence.
+         */
+        private QueueSelectorType orderlySelector = QueueSelectorType.HASH;
+
+        private LatencyFault latencyFault = new LatencyFault();
+
+        private Spillover spillover = new Spillover();
+
+        private Reply reply = new Reply();
+
+    }
+
+    @Data
+    public static class Reply {
+
+        /**
+         * Start a consumer of the replies to `RocketMQProducer.sendAndReceive`.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Topic the replies of all processes are sent to, each process consumes only its own.
+         */
+        private String topic;
+
+        /**
+         * Prefix of the consumer group of the reply consumers, each process appends its reply tag. Defaults to
+         * `{producer group}_REPLY`.
+         */
+        private String group;
+
+        /**
+         * Id of this process among the processes sharing the reply topic, its reply tag and group suffix. Must be
+         * stable across restarts and unique among the running processes, e.g. a pod name of a stateful set. Defaults to
+         * the client IP, followed by the client instance name when `rocketmq.client.name` is set. Groups of ids that
+         * are gone for good stay on the broker until deleted with `mqadmin deleteSubGroup`.
+         */
+        private String instanceId;
+
+        /**
+         * Threads completing the futures of replies.
+         */
+        private int consumeThreads = 4;
+    }
+
+    @Data
+    public static class Spillover {
+
+        /**
+         * Write messages the broker did not accept to a local journal and send them again once the broker is back.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Directory of the journal files, defaults to `rocketmq-spillover/{group}` under the user home, must not be
+         * shared by two running producers.
+         */
+        private String dir;
+
+        /**
+         * Bytes per memory-mapped journal file, larger than the largest message.
+         */
+        private int segmentSize = 1024 * 1024 * 64;
+
+        /**
+         * Max bytes of all journal files, sends fail once it is reached.
+         */
+        private long maxSize = 1024L * 1024 * 1024;
+
+        /**
+         * Millis the journal drainer waits after a failed replay.
+         */
+        private long retryInterval = 1000;
+
+        /**
+         * Failed replays of a journaled message before it is dropped with an error log.
+         */
+        private int maxReplayAttempts = 300;
+    }
+
+    @Data
+    public static class LatencyFault {
+
+        /**
+         * Non-orderly sends avoid brokers whose recent sends were slow or failed, and retry on another broker.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Send latency tiers in millis, a send slower than a tier makes its broker unavailable for the matching
+         * `notAvailableDuration`.
+         */
+        private long[] latencyMax = {50L, 100L, 550L, 1000L, 2000L, 3000L, 15000L};
+
+        /**
+         * Millis a broker is avoided after a send in the matching `latencyMax` tier.
+         */
+        private long[] notAvailableDuration = {0L, 0L, 30000L, 60000L, 120000L, 180000L, 600000L};
+    }
+
+    @Data
+    public static class Batching {
+
+        /**
+         * Collect messages sent by `asyncSend` into batches per topic.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Max millis a message waits for other messages of the same topic before its batch is sent.
+         */
+        private long lingerMs = 5;
+
+        /**
+         * Batch size in bytes that triggers a send without waiting for `lingerMs`.
+         */
+        private int batchSize = 1024 * 16;
+    }
+
+    /**
+     * Defaults for every `@RocketMQMessageListener`, an attribute set on the annotation takes precedence.
+     */
+    @Data
+    public static class Consumer {
+
+        /**
+         * Min consumer thread number, capped by `consumeThreadMax`.
+         */
+        private int consumeThreadMin = 20;
+
+        /**
+         * Max number of messages pulled from a queue in one request.
+         */
+        private int pullBatchSize = 32;
+
+        /**
+         * Millis between two pulls of a queue, 0 pulls as soon as the previous pull is handed over.
+         */
+        private long pullInterval = 0;
+
+        /**
+         * Number of threads reading queues of a `RocketMQPullListener`, each thread reads one queue at a time.
+         */
+        private int pullThreads = 20;
+
+        /**
+         * Max number of cached messages per queue before pulling is paused.
+         */
+        private int pullThresholdForQueue = 1000;
+
+        /**
+         * Max size in MiB of cached messages per queue before pulling is paused.
+         */
+        private int pullThresholdSizeForQueue = 100;
+
+        /**
+         * Max offset span of cached messages per queue before pulling is paused, concurrently mode only.
+         */
+        private int consumeConcurrentlyMaxSpan = 2000;
+
+        /**
+         * Minutes a message may block a consume thread before it is sent back for retry.
+         */
+        private long consumeTimeout = 15;
+
+        /**
+         * Number of messages of one queue consumed in parallel in `ORDERLY_BY_KEY` mode.
+         */
+        private int keyOrderedConcurrency = 8;
+
+        /**
+         * Executor running the listeners instead of the consume threads, the name of an `Executor` bean or `virtual`
+         * for virtual threads. Empty keeps consuming on the consume threads.
+         */
+        private String listenerExecutor = "";
+
+        /**
+         * Max number of messages of one listener running on its `listenerExecutor` at the same time.
+         */
+        private int listenerConcurrency = 64;
+
+        private Adaptive adaptive = new Adaptive();
+
+        /**
+         * When listener containers start, `EAGER` starts them one by one during context refresh, `LIFECYCLE` and
+         * `READY` start them in parallel after all singletons were created or once the application is ready.
+         */
+        private StartupMode startupMode = StartupMode.EAGER;
+
+        /**
+         * Max number of listener containers starting at the same time in `LIFECYCLE` or `READY` startup mode.
+         */
+        private int startupParallelism = 8;
+
+        /**
+         * Max millis a listener container waits on stop for the messages it already pulled to be consumed.
+         */
+        private long drainTimeout = 10000;
+
+        private Dedup dedup = new Dedup();
+    }
+
+    @Data
+    public static class Dedup {
+
+        /**
+         * What identifies a message when dropping messages already consumed: `none`, `msg_id` or `key`.
+         */
+        private DedupKey key = DedupKey.NONE;
+
+        /**
+         * Max number of consumed keys remembered in process per listener.
+         */
+        private int capacity = 100000;
+
+        /**
+         * Millis a consumed key is remembered.
+         */
+        private long window = 600000;
+
+        /**
+         * Name of a `MessageDedupStore` bean asked for keys unknown in process, empty deduplicates in process only.
+         */
+        private String store = "";
+    }
+
+    @Data
+    public static class Adaptive {
+
+        /**
+         * Adapt concurrency and pull threshold of listeners to the observed consume latency, error rate and cached
+         * messages.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Average millis of consuming a message above which concurrency decreases.
+         */
+        private long targetLatency = 100;
+
+        /**
+         * Rate of failed messages above which concurrency decreases.
+         */
+        private double maxErrorRate = 0.1;
+
+        /**
+         * Millis between two adjustments of concurrency.
+         */
+        private long interval = 1000;
     }
 }
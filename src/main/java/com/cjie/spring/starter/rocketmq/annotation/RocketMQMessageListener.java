@@ -2,6 +2,8 @@
 
 package com.cjie.spring.starter.rocketmq.annotation;
 
+import com.cjie.spring.starter.rocketmq.codec.JsonMessageCodec;
+import com.cjie.spring.starter.rocketmq.codec.MessageCodec;
 import com.cjie.spring.starter.rocketmq.enums.ConsumeMode;
 import com.cjie.spring.starter.rocketmq.enums.SelectorType;
 import org.apache.rocketmq.common.filter.ExpressionType;
@@ -58,4 +60,114 @@ public @interface RocketMQMessageListener {
      */
     int consumeThreadMax() default 64;
 
+    /**
+     * Min consumer thread number, capped by {@link #consumeThreadMax()}. Supports placeholders, empty uses
+     * <code>spring.rocketmq.consumer.consume-thread-min</code>.
+     */
+    String consumeThreadMin() default "";
+
+    /**
+     * Max number of messages pulled from a queue in one request. Supports placeholders, empty uses
+     * <code>spring.rocketmq.consumer.pull-batch-size</code>.
+     */
+    String pullBatchSize() default "";
+
+    /**
+     * Millis between two pulls of a queue. Supports placeholders, empty uses
+     * <code>spring.rocketmq.consumer.pull-interval</code>.
+     */
+    String pullInterval() default "";
+
+    /**
+     * Number of threads reading queues of a {@link com.cjie.spring.starter.rocketmq.core.RocketMQPullListener}, each
+     * thread reads one queue at a time. Supports placeholders, empty uses
+     * <code>spring.rocketmq.consumer.pull-threads</code>.
+     */
+    String pullThreads() default "";
+
+    /**
+     * Max number of cached messages per queue before pulling is paused. Supports placeholders, empty uses
+     * <code>spring.rocketmq.consumer.pull-threshold-for-queue</code>.
+     */
+    String pullThresholdForQueue() default "";
+
+    /**
+     * Max size in MiB of cached messages per queue before pulling is paused. Supports placeholders, empty uses
+     * <code>spring.rocketmq.consumer.pull-threshold-size-for-queue</code>.
+     */
+    String pullThresholdSizeForQueue() default "";
+
+    /**
+     * Max offset span of cached messages per queue before pulling is paused, concurrently mode only. Supports
+     * placeholders, empty uses <code>spring.rocketmq.consumer.consume-concurrently-max-span</code>.
+     */
+    String consumeConcurrentlyMaxSpan() default "";
+
+    /**
+     * Minutes a message may block a consume thread before it is sent back for retry. Supports placeholders, empty
+     * uses <code>spring.rocketmq.consumer.consume-timeout</code>.
+     */
+    String consumeTimeout() default "";
+
+    /**
+     * Number of messages of one queue consumed in parallel in {@link ConsumeMode#ORDERLY_BY_KEY} mode, messages with
+     * equal keys always go to the same worker. Supports placeholders, empty uses
+     * <code>spring.rocketmq.consumer.key-ordered-concurrency</code>.
+     */
+    String keyOrderedConcurrency() default "";
+
+    /**
+     * Executor running {@link com.cjie.spring.starter.rocketmq.core.RocketMQListener#onMessage(Object)} instead of
+     * the consume threads: the name of an {@link java.util.concurrent.Executor} bean, or <code>virtual</code> for a
+     * virtual thread per message when the runtime supports them. Supports placeholders, empty uses
+     * <code>spring.rocketmq.consumer.listener-executor</code>, which is empty by default and keeps consuming on the
+     * consume threads. Concurrently mode only.
+     */
+    String listenerExecutor() default "";
+
+    /**
+     * Max number of messages of this listener running on {@link #listenerExecutor()} at the same time. Supports
+     * placeholders, empty uses <code>spring.rocketmq.consumer.listener-concurrency</code>.
+     */
+    String listenerConcurrency() default "";
+
+    /**
+     * Whether concurrency and pull threshold adapt to the observed consume latency, error rate and cached messages.
+     * Supports placeholders, empty uses <code>spring.rocketmq.consumer.adaptive.enabled</code>. Without listener
+     * executor the consume threads adapt between {@link #consumeThreadMin()} and one below {@link #consumeThreadMax()},
+     * adaptation is disabled with a warning when the min is not below the max.
+     */
+    String adaptiveConcurrency() default "";
+
+    /**
+     * Average millis of consuming a message above which adaptive concurrency decreases. Supports placeholders, empty
+     * uses <code>spring.rocketmq.consumer.adaptive.target-latency</code>.
+     */
+    String adaptiveTargetLatency() default "";
+
+    /**
+     * What identifies a message when dropping messages already consumed: <code>none</code>, <code>msg_id</code> or
+     * <code>key</code>. Supports placeholders, empty uses <code>spring.rocketmq.consumer.dedup.key</code>.
+     */
+    String dedupKey() default "";
+
+    /**
+     * Name of a {@link com.cjie.spring.starter.rocketmq.core.MessageDedupStore} bean asked for keys unknown in
+     * process. Supports placeholders, empty uses <code>spring.rocketmq.consumer.dedup.store</code>.
+     */
+    String dedupStore() default "";
+
+    /**
+     * Max number of messages handed to the listener in one consume call. Only a
+     * {@link com.cjie.spring.starter.rocketmq.core.RocketMQBatchListener} benefits from a value larger than 1.
+     */
+    int consumeMessageBatchMaxSize() default 1;
+
+    /**
+     * Codec converting the message body to the listener's message type. A bean of this type is used when there is
+     * exactly one, otherwise the class is instantiated with its default constructor. Left at the default, the only
+     * {@link MessageCodec} bean of any type is used like on the producer side.
+     */
+    Class<? extends MessageCodec> messageCodec() default JsonMessageCodec.class;
+
 }
@@ -0,0 +1,46 @@
+package com.cjie.spring.starter.rocketmq.codec;
+
+import com.cjie.spring.starter.rocketmq.core.MessagingException;
+
+import java.lang.reflect.Type;
+import java.nio.charset.Charset;
+import java.util.Objects;
+
+/**
+ * Passes <code>byte[]</code> payloads through unchanged and encodes {@link String} payloads with the charset, without
+ * any serialization format.
+ */
+public class BytesMessageCodec implements MessageCodec {
+
+    private final Charset charset;
+
+    public BytesMessageCodec() {
+        this(Charset.forName("UTF-8"));
+    }
+
+    public BytesMessageCodec(Charset charset) {
+        this.charset = charset;
+    }
+
+    @Override
+    public byte[] encode(Object payload) {
+        if (payload instanceof byte[]) {
+            return (byte[]) payload;
+        }
+        if (payload instanceof String) {
+            return ((String) payload).getBytes(charset);
+        }
+        throw new MessagingException("cannot convert " + payload.getClass() + " to message body");
+    }
+
+    @Override
+    public Object decode(byte[] body, Type type) {
+        if (Objects.equals(type, byte[].class) || Objects.equals(type, Object.class)) {
+            return body;
+        }
+        if (Objects.equals(type, String.class)) {
+            return new String(body, charset);
+        }
+        throw new MessagingException("cannot convert message to " + type);
+    }
+}
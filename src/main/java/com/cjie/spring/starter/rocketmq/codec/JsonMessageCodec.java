@@ -0,0 +1,73 @@
+package com.cjie.spring.starter.rocketmq.codec;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.parser.ParserConfig;
+import com.cjie.spring.starter.rocketmq.core.MessagingException;
+
+import java.lang.reflect.Type;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * Encodes payloads as fastjson text, the default codec. Messages consumed as {@link String} are not parsed.
+ */
+public class JsonMessageCodec implements MessageCodec {
+
+    private final Charset charset;
+
+    private final boolean utf8;
+
+    private final ThreadLocal<CharsetDecoder> decoders;
+
+    public JsonMessageCodec() {
+        this(StandardCharsets.UTF_8);
+    }
+
+    public JsonMessageCodec(Charset charset) {
+        this.charset = charset;
+        this.utf8 = StandardCharsets.UTF_8.equals(charset);
+        // replace malformed input like new String(bytes, charset) does
+        this.decoders = ThreadLocal.withInitial(() -> charset.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE));
+    }
+
+    @Override
+    public byte[] encode(Object payload) {
+        if (utf8) {
+            // serializes into fastjson's thread local char and byte buffers, no String of the whole body
+            return JSON.toJSONBytes(payload);
+        }
+        return JSON.toJSONString(payload).getBytes(charset);
+    }
+
+    @Override
+    public Object decode(byte[] body, Type type) {
+        if (Objects.equals(type, String.class)) {
+            return new String(body, charset);
+        }
+        return parse(body, type);
+    }
+
+    @Override
+    public Decoder decoderFor(Type type) {
+        if (Objects.equals(type, String.class)) {
+            return body -> new String(body, charset);
+        }
+        // fastjson generates and caches the deserializer of a type on first use, do it before the first message
+        ParserConfig.getGlobalInstance().getDeserializer(type);
+        return body -> parse(body, type);
+    }
+
+    private Object parse(byte[] body, Type type) {
+        try {
+            // fastjson decodes into its thread local char buffer and parses from there, no String of the whole body
+            return JSON.parseObject(body, 0, body.length, decoders.get(), type);
+        } catch (Exception e) {
+            throw new MessagingException("cannot convert message to " + type, e);
+        }
+    }
+}
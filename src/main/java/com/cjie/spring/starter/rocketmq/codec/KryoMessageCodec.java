@@ -0,0 +1,126 @@
+package com.cjie.spring.starter.rocketmq.codec;
+
+import com.cjie.spring.starter.rocketmq.core.MessagingException;
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.KryoException;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import org.objenesis.strategy.StdInstantiatorStrategy;
+import org.springframework.core.ResolvableType;
+import org.springframework.util.ClassUtils;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Type;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * <p> Compact binary codec based on <a href="https://github.com/EsotericSoftware/kryo">Kryo</a>, requires
+ * <code>com.esotericsoftware:kryo</code> on the classpath. </p>
+ *
+ * The class of the payload is written ahead of its fields, so a listener can declare an interface or a super class of
+ * it, such as <code>List</code> for an <code>ArrayList</code>. The consumer needs the payload class on its classpath,
+ * a payload that is not an instance of the declared class fails to decode. For a parameterized type such as
+ * <code>List&lt;Order&gt;</code> the elements of collections, the keys and values of maps and the components of arrays
+ * are checked against the type arguments too.
+ */
+public class KryoMessageCodec implements MessageCodec {
+
+    private static final int BUFFER_SIZE = 1024 * 4;
+
+    private final ThreadLocal<Kryo> kryos = ThreadLocal.withInitial(() -> {
+        Kryo kryo = new Kryo();
+        kryo.setRegistrationRequired(false);
+        kryo.setInstantiatorStrategy(new Kryo.DefaultInstantiatorStrategy(new StdInstantiatorStrategy()));
+        return kryo;
+    });
+
+    private final ThreadLocal<Output> outputs = ThreadLocal.withInitial(() -> new Output(BUFFER_SIZE, -1));
+
+    @Override
+    public byte[] encode(Object payload) {
+        Output output = outputs.get();
+        output.clear();
+        try {
+            kryos.get().writeClassAndObject(output, payload);
+            return output.toBytes();
+        } catch (KryoException | LinkageError e) {
+            throw new MessagingException("cannot convert " + payload.getClass() + " to message body", e);
+        }
+    }
+
+    @Override
+    public Object decode(byte[] body, Type type) {
+        return decoderFor(type).decode(body);
+    }
+
+    @Override
+    public Decoder decoderFor(Type type) {
+        ResolvableType resolvableType = ResolvableType.forType(type);
+        Class<?> clazz = resolvableType.resolve(Object.class);
+        if (!resolvableType.hasGenerics() && !resolvableType.isArray()) {
+            return body -> read(body, clazz);
+        }
+        return body -> {
+            Object payload = read(body, clazz);
+            if (!hasType(payload, resolvableType)) {
+                throw new MessagingException("cannot convert message to " + type.getTypeName());
+            }
+            return payload;
+        };
+    }
+
+    /**
+     * Whether the contents of a decoded payload match the type arguments, unresolved arguments match anything.
+     */
+    private static boolean hasType(Object value, ResolvableType type) {
+        Class<?> clazz = type.resolve();
+        if (value == null || clazz == null || clazz == Object.class) {
+            return true;
+        }
+        if (!ClassUtils.isAssignableValue(clazz, value)) {
+            return false;
+        }
+        if (type.isArray()) {
+            // the class of the array already guarantees components of a class without generics
+            ResolvableType componentType = type.getComponentType();
+            if (!componentType.hasGenerics() && !componentType.isArray()) {
+                return true;
+            }
+            for (int i = 0; i < Array.getLength(value); i++) {
+                if (!hasType(Array.get(value, i), componentType)) {
+                    return false;
+                }
+            }
+        } else if (value instanceof Collection) {
+            ResolvableType elementType = type.asCollection().getGeneric(0);
+            for (Object element : (Collection<?>) value) {
+                if (!hasType(element, elementType)) {
+                    return false;
+                }
+            }
+        } else if (value instanceof Map) {
+            ResolvableType mapType = type.asMap();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                if (!hasType(entry.getKey(), mapType.getGeneric(0))
+                    || !hasType(entry.getValue(), mapType.getGeneric(1))) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private Object read(byte[] body, Class<?> clazz) {
+        Object payload;
+        try {
+            payload = kryos.get().readClassAndObject(new Input(body));
+        } catch (KryoException | LinkageError e) {
+            throw new MessagingException("cannot convert message to " + clazz, e);
+        }
+        if (!ClassUtils.isAssignableValue(clazz, payload)) {
+            throw new MessagingException("cannot convert message of " + payload.getClass() + " to " + clazz);
+        }
+        return payload;
+    }
+}
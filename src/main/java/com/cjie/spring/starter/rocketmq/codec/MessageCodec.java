@@ -0,0 +1,42 @@
+package com.cjie.spring.starter.rocketmq.codec;
+
+import java.lang.reflect.Type;
+
+/**
+ * Converts message payloads to and from the message body. Implementations must be thread-safe, one instance is shared
+ * by all sends of a producer or all consume threads of a listener container.
+ */
+public interface MessageCodec {
+
+    /**
+     * @param payload message payload, never null
+     * @return message body
+     */
+    byte[] encode(Object payload);
+
+    /**
+     * @param body message body
+     * @param type type of the listener's message
+     * @return payload of the given type
+     */
+    Object decode(byte[] body, Type type);
+
+    /**
+     * Prepare decoding of one type ahead of time. Listener containers call this once at start and use the returned
+     * decoder for every message.
+     *
+     * @param type type of the listener's message
+     * @return decoder to the given type
+     */
+    default Decoder decoderFor(Type type) {
+        return body -> decode(body, type);
+    }
+
+    /**
+     * Decodes message bodies to the type it was created for.
+     */
+    @FunctionalInterface
+    interface Decoder {
+        Object decode(byte[] body);
+    }
+}
@@ -0,0 +1,103 @@
+package com.cjie.spring.starter.rocketmq.core;
+
+import org.springframework.util.Assert;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p> Derives the concurrency of a listener from what it observed since the last adjustment, increase additively and
+ * decrease multiplicatively (AIMD). </p>
+ *
+ * The limit drops by {@link #DECREASE_FACTOR} when the average consume latency exceeds the target or the error rate
+ * exceeds the max, so an overloaded downstream gets relief at once. Otherwise it grows by a tenth of the range as long
+ * as more messages are cached than the limit can work on.
+ */
+public class AdaptiveConcurrencyController {
+
+    static final double DECREASE_FACTOR = 0.7;
+
+    private final int minLimit;
+
+    private final int maxLimit;
+
+    private final long targetLatencyNanos;
+
+    private final double maxErrorRate;
+
+    private final int increaseStep;
+
+    private final LongAdder consumed = new LongAdder();
+
+    private final LongAdder failed = new LongAdder();
+
+    private final LongAdder costNanos = new LongAdder();
+
+    private volatile int limit;
+
+    /**
+     * @param minLimit lower bound of the limit
+     * @param maxLimit upper bound of the limit
+     * @param initialLimit limit before the first adjustment
+     * @param targetLatencyMillis average consume latency above which the limit decreases
+     * @param maxErrorRate rate of failed messages above which the limit decreases
+     */
+    public AdaptiveConcurrencyController(int minLimit, int maxLimit, int initialLimit, long targetLatencyMillis,
+        double maxErrorRate) {
+        Assert.isTrue(minLimit > 0 && minLimit <= maxLimit, "'minLimit' must be positive and not above 'maxLimit'");
+        Assert.isTrue(targetLatencyMillis > 0, "'targetLatencyMillis' must be positive");
+        Assert.isTrue(maxErrorRate >= 0 && maxErrorRate <= 1, "'maxErrorRate' must be between 0 and 1");
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+        this.targetLatencyNanos = TimeUnit.MILLISECONDS.toNanos(targetLatencyMillis);
+        this.maxErrorRate = maxErrorRate;
+        this.increaseStep = Math.max(1, (maxLimit - minLimit) / 10);
+    }
+
+    /**
+     * Record the consumption of messages, called by consume threads.
+     */
+    public void record(int messages, long costNanos, boolean success) {
+        this.consumed.add(messages);
+        this.costNanos.add(costNanos);
+        if (!success) {
+            this.failed.add(messages);
+        }
+    }
+
+    /**
+     * Compute the next limit from the messages recorded since the last adjustment, called periodically by a single
+     * thread.
+     *
+     * @param backlog number of messages cached by the consumer and not consumed yet
+     * @return the new limit
+     */
+    public int adjust(long backlog) {
+        long messages = consumed.sumThenReset();
+        long errors = failed.sumThenReset();
+        long cost = costNanos.sumThenReset();
+        if (messages == 0) {
+            return limit;
+        }
+
+        if (cost / messages > targetLatencyNanos || (double) errors / messages > maxErrorRate) {
+            limit = Math.max(minLimit, (int) (limit * DECREASE_FACTOR));
+        } else if (backlog > limit) {
+            limit = Math.min(maxLimit, limit + increaseStep);
+        }
+        return limit;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getMinLimit() {
+        return minLimit;
+    }
+
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+}
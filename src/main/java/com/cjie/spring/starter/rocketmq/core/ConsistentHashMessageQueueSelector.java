@@ -0,0 +1,106 @@
+package com.cjie.spring.starter.rocketmq.core;
+
+import org.apache.rocketmq.client.producer.MessageQueueSelector;
+import org.apache.rocketmq.common.consistenthash.ConsistentHashRouter;
+import org.apache.rocketmq.common.consistenthash.HashFunction;
+import org.apache.rocketmq.common.consistenthash.Node;
+import org.apache.rocketmq.common.message.Message;
+import org.apache.rocketmq.common.message.MessageQueue;
+import org.springframework.util.Assert;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * <p> Selects the queue of an orderly send by consistent hashing of the hash key, so adding or removing a queue only
+ * moves the keys of the affected part of the ring instead of nearly all keys as the hash code modulo does. </p>
+ *
+ * The ring of a topic is built once and rebuilt when the queues of the topic change. Keys are hashed by MD5 with a
+ * digest per thread, the default hash function of the router shares one digest and cannot be used concurrently.
+ */
+public class ConsistentHashMessageQueueSelector implements MessageQueueSelector {
+
+    private static final HashFunction HASH_FUNCTION = new MD5Hash();
+
+    private final int virtualNodes;
+
+    private final ConcurrentMap<String, Ring> rings = new ConcurrentHashMap<>();
+
+    public ConsistentHashMessageQueueSelector() {
+        this(16);
+    }
+
+    /**
+     * @param virtualNodes number of points per queue on the ring, more points spread the keys more evenly
+     */
+    public ConsistentHashMessageQueueSelector(int virtualNodes) {
+        Assert.isTrue(virtualNodes > 0, "'virtualNodes' must be positive");
+        this.virtualNodes = virtualNodes;
+    }
+
+    @Override
+    public MessageQueue select(List<MessageQueue> mqs, Message msg, Object arg) {
+        Ring ring = rings.get(msg.getTopic());
+        if (ring == null || !ring.queues.equals(mqs)) {
+            ring = new Ring(mqs, virtualNodes);
+            rings.put(msg.getTopic(), ring);
+        }
+        return ring.router.routeNode(String.valueOf(arg)).queue;
+    }
+
+    private static class Ring {
+
+        private final List<MessageQueue> queues;
+
+        private final ConsistentHashRouter<QueueNode> router;
+
+        private Ring(List<MessageQueue> queues, int virtualNodes) {
+            this.queues = new ArrayList<>(queues);
+            List<QueueNode> nodes = new ArrayList<>(queues.size());
+            for (MessageQueue queue : queues) {
+                nodes.add(new QueueNode(queue));
+            }
+            this.router = new ConsistentHashRouter<>(nodes, virtualNodes, HASH_FUNCTION);
+        }
+    }
+
+    private static class QueueNode implements Node {
+
+        private final MessageQueue queue;
+
+        private QueueNode(MessageQueue queue) {
+            this.queue = queue;
+        }
+
+        @Override
+        public String getKey() {
+            return queue.getBrokerName() + '@' + queue.getQueueId();
+        }
+    }
+
+    private static class MD5Hash implements HashFunction {
+
+        private final ThreadLocal<MessageDigest> digests = ThreadLocal.withInitial(() -> {
+            try {
+                return MessageDigest.getInstance("MD5");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        @Override
+        public long hash(String key) {
+            byte[] digest = digests.get().digest(key.getBytes(StandardCharsets.UTF_8));
+            long hash = 0;
+            for (int i = 0; i < 4; i++) {
+                hash = hash << 8 | digest[i] & 0xFF;
+            }
+            return hash;
+        }
+    }
+}
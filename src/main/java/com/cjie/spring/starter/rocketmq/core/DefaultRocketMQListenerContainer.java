@@ -2,8 +2,11 @@
 
 package com.cjie.spring.starter.rocketmq.core;
 
-import com.alibaba.fastjson.JSON;
+import com.cjie.spring.starter.rocketmq.codec.JsonMessageCodec;
+import com.cjie.spring.starter.rocketmq.codec.MessageCodec;
 import com.cjie.spring.starter.rocketmq.enums.ConsumeMode;
+import com.cjie.spring.starter.rocketmq.enums.ConsumeResult;
+import com.cjie.spring.starter.rocketmq.enums.DedupKey;
 import com.cjie.spring.starter.rocketmq.enums.SelectorType;
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
@@ -11,20 +14,53 @@ import org.apache.rocketmq.client.consumer.DefaultMQPushConsumer;
 import org.apache.rocketmq.client.consumer.MessageSelector;
 import org.apache.rocketmq.client.consumer.listener.*;
 import org.apache.rocketmq.client.exception.MQClientException;
+import org.apache.rocketmq.client.producer.DefaultMQProducer;
+import org.apache.rocketmq.client.impl.consumer.ProcessQueue;
+import org.apache.rocketmq.common.ThreadFactoryImpl;
 import org.apache.rocketmq.common.message.MessageExt;
+import org.apache.rocketmq.common.message.MessageQueue;
 import org.apache.rocketmq.common.protocol.heartbeat.MessageModel;
+import org.springframework.aop.framework.AopProxyUtils;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.core.ResolvableType;
 import org.springframework.util.Assert;
 
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
 
 @Data
 @Slf4j
-public class DefaultRocketMQListenerContainer implements InitializingBean, RocketMQListenerContainer {
+public class DefaultRocketMQListenerContainer implements InitializingBean, RocketMQListenerContainer, SmartLifecycle {
+
+    private static final long DRAIN_CHECK_INTERVAL_MILLIS = 50;
 
 
     private long suspendCurrentQueueTimeMillis = 1000;
@@ -63,83 +99,689 @@ public class DefaultRocketMQListenerContainer implements InitializingBean, Rocke
     private int consumeThreadMax = 64;
 
 
+    private int consumeThreadMin = 20;
+
+
+    private int pullBatchSize = 32;
+
+
+    private long pullInterval = 0;
+
+
+    private int pullThresholdForQueue = 1000;
+
+
+    private int pullThresholdSizeForQueue = 100;
+
+
+    private int consumeConcurrentlyMaxSpan = 2000;
+
+    /**
+     * Minutes a message may block a consume thread before it is sent back for retry.
+     */
+    private long consumeTimeout = 15;
+
+
+    private int consumeMessageBatchMaxSize = 1;
+
+    /**
+     * Number of messages of one queue consumed in parallel in {@link ConsumeMode#ORDERLY_BY_KEY} mode.
+     */
+    private int keyOrderedConcurrency = 8;
+
+
+    /**
+     * Optional, when set {@link RocketMQListener#onMessage(Object)} runs on this executor instead of the consume
+     * threads, which then only hand batches over and wait for them. Concurrently mode and single message listeners
+     * only.
+     */
+    private Executor listenerExecutor;
+
+    /**
+     * Max number of messages of this listener running on {@link #listenerExecutor} at the same time.
+     */
+    private int listenerConcurrency = 64;
+
+    /**
+     * Adjust concurrency and pull threshold within bounds from the observed consume latency, error rate and cached
+     * messages, see {@link AdaptiveConcurrencyController}. Bounded by the consume threads, or by
+     * {@link #listenerConcurrency} when a {@link #listenerExecutor} is set.
+     */
+    private boolean adaptiveConcurrency;
+
+    /**
+     * Average millis of consuming a message above which concurrency decreases.
+     */
+    private long adaptiveTargetLatency = 100;
+
+    /**
+     * Rate of failed messages above which concurrency decreases.
+     */
+    private double adaptiveMaxErrorRate = 0.1;
+
+    /**
+     * Millis between two adjustments of concurrency.
+     */
+    private long adaptiveInterval = 1000;
+
+    /**
+     * What identifies a message when dropping messages already consumed, {@link DedupKey#NONE} consumes every
+     * delivery.
+     */
+    private DedupKey dedupKey = DedupKey.NONE;
+
+    /**
+     * Max number of consumed keys remembered in process.
+     */
+    private int dedupCapacity = 100000;
+
+    /**
+     * Millis a consumed key is remembered.
+     */
+    private long dedupWindow = 600000;
+
+    /**
+     * Optional, asked for keys unknown in process.
+     */
+    private MessageDedupStore dedupStore;
+
+    /**
+     * Delay levels of the broker, messages sent with a deliver time that arrive early wait for the rest, see {@link
+     * DeliverTimeScheduler}. Concurrently mode only, orderly modes consume on arrival.
+     */
+    private DelayLevels delayLevels = DelayLevels.getDefault();
+
     private String charset = "UTF-8";
 
 
+    private MessageCodec messageCodec;
+
+
     private boolean started;
 
+    private volatile boolean paused;
+
+    /**
+     * Max millis {@link #stop(Runnable)} waits for the messages already pulled to be consumed.
+     */
+    private long drainTimeout = 10000;
+
+    /**
+     * Lifecycle phase, the highest phase stops first so consumption ends before the beans it depends on stop.
+     */
+    private int phase = Integer.MAX_VALUE;
+
+    /**
+     * Start once the properties are set, false leaves starting to the caller, e.g. a
+     * {@link RocketMQListenerContainerStarter}.
+     */
+    private boolean startOnInitialization = true;
+
 
     private RocketMQListener rocketMQListener;
 
+    private RocketMQBatchListener rocketMQBatchListener;
+
+    /**
+     * Optional, consumes with a single thread blocked on the demand of the flux subscriber, requires Reactor.
+     */
+    private RocketMQFluxListener rocketMQFluxListener;
+
+    private RocketMQListener fluxListenerAdapter;
+
+    private RocketMQMetrics metrics = RocketMQMetrics.NOOP;
+
     private DefaultMQPushConsumer consumer;
 
-    private Class messageType;
+    private ExecutorService keyOrderedExecutor;
+
+    private Semaphore listenerPermits = new Semaphore(listenerConcurrency);
+
+    private AdaptiveConcurrencyController concurrencyController;
+
+    private MessageDeduplicator deduplicator;
+
+    private DeliverTimeScheduler deliverTimeScheduler;
+
+    private ExecutorService deliverTimeExecutor;
+
+    private final AtomicInteger heldInFlight = new AtomicInteger();
+
+    private ScheduledExecutorService adaptiveScheduler;
+
+    private Type messageType;
+
+    private MessageCodec.Decoder messageDecoder;
+
+    public void setListenerConcurrency(int listenerConcurrency) {
+        Assert.isTrue(listenerConcurrency > 0, "Property 'listenerConcurrency' must be positive");
+        this.listenerConcurrency = listenerConcurrency;
+        this.listenerPermits = new Semaphore(listenerConcurrency);
+    }
 
     @Override
     public void setupMessageListener(RocketMQListener rocketMQListener) {
         this.rocketMQListener = rocketMQListener;
     }
 
+    @Override
+    public synchronized void pause() {
+        if (Objects.nonNull(consumer) && !paused) {
+            consumer.suspend();
+            this.paused = true;
+            log.info("paused container: {}", this.toString());
+        }
+    }
+
+    @Override
+    public synchronized void resume() {
+        if (Objects.nonNull(consumer) && paused) {
+            consumer.resume();
+            this.paused = false;
+            log.info("resumed container: {}", this.toString());
+        }
+    }
+
+    /**
+     * Pause the container and drain the messages already pulled for at most {@link #drainTimeout} millis, so a
+     * shutdown following the stop does not hand messages in flight to other consumers for redelivery. The consumer
+     * stays in the group until {@link #destroy()}.
+     */
+    @Override
+    public void stop(Runnable callback) {
+        pause();
+        Thread drainThread = new Thread(() -> {
+            try {
+                drain();
+            } finally {
+                callback.run();
+            }
+        }, "RocketMQDrainThread_" + consumerGroup);
+        drainThread.setDaemon(true);
+        drainThread.start();
+    }
+
+    @Override
+    public void stop() {
+        pause();
+        drain();
+    }
+
+    private void drain() {
+        long deadline = System.currentTimeMillis() + drainTimeout;
+        long pending = pendingMessages();
+        while (pending > 0 && System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(DRAIN_CHECK_INTERVAL_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            pending = pendingMessages();
+        }
+        if (pending > 0) {
+            log.warn("drain container timeout, {} messages pending. {}", pending, this.toString());
+        } else {
+            log.info("drained container: {}", this.toString());
+        }
+    }
+
+    /**
+     * Number of messages pulled and not consumed yet, including the ones being consumed.
+     */
+    private long pendingMessages() {
+        if (Objects.isNull(consumer) || !started) {
+            return 0;
+        }
+        // held messages are acknowledged already, only the ones being consumed count
+        long pending = heldInFlight.get();
+        for (ProcessQueue processQueue : consumer.getDefaultMQPushConsumerImpl().getRebalanceImpl()
+            .getProcessQueueTable().values()) {
+            pending += processQueue.getMsgCount().get();
+        }
+        return pending;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return started && !paused;
+    }
+
+    /**
+     * Started on initialization or by a {@link RocketMQListenerContainerStarter}, the lifecycle only pauses, drains
+     * and resumes the container.
+     */
+    @Override
+    public boolean isAutoStartup() {
+        return false;
+    }
+
     @Override
     public void destroy() {
         this.setStarted(false);
+        if (Objects.nonNull(deliverTimeScheduler)) {
+            // held messages are relayed and failed ones sent back through the client of the consumer, so it shuts
+            // down after them
+            deliverTimeScheduler.close();
+            awaitHeldInFlight();
+        }
+        if (Objects.nonNull(deliverTimeExecutor)) {
+            deliverTimeExecutor.shutdown();
+        }
         if (Objects.nonNull(consumer)) {
             consumer.shutdown();
         }
+        if (Objects.nonNull(keyOrderedExecutor)) {
+            keyOrderedExecutor.shutdown();
+        }
+        if (Objects.nonNull(adaptiveScheduler)) {
+            adaptiveScheduler.shutdownNow();
+        }
+        if (fluxListenerAdapter instanceof DisposableBean) {
+            try {
+                ((DisposableBean) fluxListenerAdapter).destroy();
+            } catch (Exception e) {
+                log.warn("destroy flux listener failed", e);
+            }
+        }
         log.info("container destroyed, {}", this.toString());
     }
 
-    public synchronized void start() throws MQClientException {
+    private void awaitHeldInFlight() {
+        long deadline = System.currentTimeMillis() + drainTimeout;
+        while (heldInFlight.get() > 0 && System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(DRAIN_CHECK_INTERVAL_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        if (heldInFlight.get() > 0) {
+            log.warn("destroy container while {} held messages are consumed. {}", heldInFlight.get(),
+                this.toString());
+        }
+    }
 
+    /**
+     * Start the container, or resume it when it was paused or stopped.
+     *
+     * @throws IllegalStateException when the container is running already, or its consumer failed to start
+     */
+    @Override
+    public synchronized void start() {
         if (this.isStarted()) {
-            throw new IllegalStateException("container already started. " + this.toString());
+            if (!paused) {
+                throw new IllegalStateException("container already started. " + this.toString());
+            }
+            resume();
+            return;
         }
 
+        try {
+            doStart();
+        } catch (MQClientException e) {
+            throw new IllegalStateException("start container failed. " + this.toString(), e);
+        }
+    }
+
+    private void doStart() throws MQClientException {
+
         initRocketMQPushConsumer();
 
         // parse message type
-        this.messageType = getMessageType();
-        log.debug("msgType: {}", messageType.getName());
+        this.messageType = resolveMessageType();
+        if (Objects.isNull(messageCodec)) {
+            this.messageCodec = new JsonMessageCodec(Charset.forName(charset));
+        }
+        this.messageDecoder = messageCodec.decoderFor(messageType);
+        log.debug("msgType: {}", messageType.getTypeName());
+
+        if (Objects.nonNull(rocketMQFluxListener)) {
+            this.fluxListenerAdapter = new RocketMQFluxListenerAdapter(rocketMQFluxListener);
+        }
+        if (dedupKey != DedupKey.NONE && Objects.isNull(deduplicator)) {
+            this.deduplicator = new MessageDeduplicator(consumerGroup, dedupKey, dedupCapacity, dedupWindow,
+                dedupStore);
+        }
 
         consumer.start();
+        if (consumeMode == ConsumeMode.CONCURRENTLY) {
+            startDeliverTimeScheduler();
+        }
+        if (adaptiveConcurrency) {
+            startConcurrencyController();
+        }
         this.setStarted(true);
 
         log.info("started container: {}", this.toString());
     }
 
+    private void startDeliverTimeScheduler() {
+        // the inner producer of the client instance, the client sends messages back with it too
+        DefaultMQProducer relayProducer = messageModel == MessageModel.CLUSTERING
+            ? consumer.getDefaultMQPushConsumerImpl().getmQClientFactory().getDefaultMQProducer() : null;
+        this.deliverTimeScheduler = new DeliverTimeScheduler(consumerGroup, delayLevels, relayProducer,
+            ((DefaultMessageListenerConcurrently) consumer.getMessageListener())::consumeHeld);
+    }
+
+    private void startConcurrencyController() {
+        int initialLimit;
+        int maxLimit;
+        if (Objects.nonNull(listenerExecutor)) {
+            initialLimit = listenerConcurrency;
+            maxLimit = listenerConcurrency;
+            // permits start at the max and shrink on demand
+            this.listenerPermits = new ResizableSemaphore(listenerConcurrency);
+        } else {
+            // the client only applies a core size of the consume pool below its max size, more threads than the core
+            // size never start as the pool queue is unbounded
+            if (consumer.getConsumeThreadMin() >= consumer.getConsumeThreadMax()) {
+                log.warn("adaptive concurrency disabled, it needs consumeThreadMin below consumeThreadMax. {}",
+                    this.toString());
+                return;
+            }
+            initialLimit = consumer.getConsumeThreadMin();
+            maxLimit = consumer.getConsumeThreadMax() - 1;
+        }
+        int minLimit = Math.max(1, Math.min(initialLimit, maxLimit / 8));
+        this.concurrencyController = new AdaptiveConcurrencyController(minLimit, maxLimit, initialLimit,
+            adaptiveTargetLatency, adaptiveMaxErrorRate);
+
+        this.adaptiveScheduler = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryImpl("RocketMQAdaptiveConcurrencyThread_" + consumerGroup + "_"));
+        adaptiveScheduler.scheduleWithFixedDelay(this::adaptConcurrency, adaptiveInterval, adaptiveInterval,
+            TimeUnit.MILLISECONDS);
+    }
+
     public class DefaultMessageListenerConcurrently implements MessageListenerConcurrently {
 
         @Override
         public ConsumeConcurrentlyStatus consumeMessage(List<MessageExt> msgs, ConsumeConcurrentlyContext context) {
+            if (Objects.nonNull(deliverTimeScheduler)) {
+                for (MessageExt messageExt : msgs) {
+                    if (!deliverTimeScheduler.isDue(messageExt)) {
+                        return consumeDue(msgs, context);
+                    }
+                }
+            }
+            return doConsumeMessage(msgs, context);
+        }
+
+        /**
+         * Consume a message taken from the {@link #deliverTimeScheduler} like a pulled one, on the listener executor
+         * within the listener permits, or on the deliver time executor. It is acknowledged already, so a failure sends
+         * it back for retry. While the container is paused or no listener permit is free, the message waits in the
+         * scheduler, which is shared by all containers and must not block.
+         */
+        public void consumeHeld(MessageExt messageExt) {
+            if (started && paused || Objects.nonNull(listenerExecutor) && !listenerPermits.tryAcquire()) {
+                deliverTimeScheduler.postpone(messageExt, DRAIN_CHECK_INTERVAL_MILLIS);
+                return;
+            }
+            heldInFlight.incrementAndGet();
+            CompletableFuture<Void> future = Objects.nonNull(listenerExecutor) ? dispatchAcquired(messageExt)
+                : consumeHeldAsync(messageExt);
+            future.whenComplete((result, e) -> {
+                try {
+                    if (Objects.nonNull(e)) {
+                        sendHeldBack(messageExt, e instanceof CompletionException ? e.getCause() : e);
+                    }
+                } finally {
+                    heldInFlight.decrementAndGet();
+                }
+            });
+        }
+
+        private CompletableFuture<Void> consumeHeldAsync(MessageExt messageExt) {
+            Runnable consume = () -> {
+                if (Objects.nonNull(rocketMQBatchListener)) {
+                    consumeBatch(Collections.singletonList(messageExt));
+                } else {
+                    consumeOne(messageExt);
+                }
+            };
+            try {
+                return CompletableFuture.runAsync(consume, deliverTimeExecutor());
+            } catch (RejectedExecutionException e) {
+                log.debug("deliver time executor rejected, consume on the scheduler thread");
+                CompletableFuture<Void> future = new CompletableFuture<>();
+                try {
+                    consume.run();
+                    future.complete(null);
+                } catch (Exception ex) {
+                    future.completeExceptionally(ex);
+                }
+                return future;
+            }
+        }
+
+        /**
+         * Created with the first held message, its threads end when idle.
+         */
+        private synchronized ExecutorService deliverTimeExecutor() {
+            if (Objects.isNull(deliverTimeExecutor)) {
+                int threads = Objects.isNull(consumer) ? 1 : consumer.getConsumeThreadMin();
+                ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(),
+                    new ThreadFactoryImpl("RocketMQDeliverTimeConsumeThread_" + consumerGroup + "_"));
+                executor.allowCoreThreadTimeOut(true);
+                deliverTimeExecutor = executor;
+            }
+            return deliverTimeExecutor;
+        }
+
+        private void sendHeldBack(MessageExt messageExt, Throwable e) {
+            if (Objects.isNull(consumer) || messageModel != MessageModel.CLUSTERING) {
+                log.warn("consume held message failed. msgId:{}", messageExt.getMsgId(), e);
+                return;
+            }
+            log.warn("consume held message failed, send it back. msgId:{}", messageExt.getMsgId(), e);
+            try {
+                // without broker name the message goes back to the broker storing it
+                consumer.sendMessageBack(messageExt, delayLevelWhenNextConsume, null);
+            } catch (Exception ex) {
+                log.error("send held message back failed, message lost. msgId:{}", messageExt.getMsgId(), ex);
+            }
+        }
+
+        /**
+         * <p> Consume the due messages of a batch, then defer the others. The ack index of the client counts all
+         * messages of the batch, so failed messages and messages failing to relay are sent back one by one. </p>
+         *
+         * When a message cannot be sent back, the batch is acknowledged up to it. The messages after it are not
+         * deferred, they come again with the rest of the batch and are deferred then, so no message is both deferred
+         * and redelivered.
+         */
+        private ConsumeConcurrentlyStatus consumeDue(List<MessageExt> msgs, ConsumeConcurrentlyContext context) {
+            List<MessageExt> due = new ArrayList<>(msgs.size());
             for (MessageExt messageExt : msgs) {
+                if (deliverTimeScheduler.isDue(messageExt)) {
+                    due.add(messageExt);
+                }
+            }
+            Set<MessageExt> dueMessages = Collections.newSetFromMap(new IdentityHashMap<>());
+            dueMessages.addAll(due);
+            Set<MessageExt> failed = Collections.newSetFromMap(new IdentityHashMap<>());
+            context.setDelayLevelWhenNextConsume(delayLevelWhenNextConsume);
+            if (!due.isEmpty()) {
+                ConsumeConcurrentlyContext dueContext = new ConsumeConcurrentlyContext(context.getMessageQueue());
+                ConsumeConcurrentlyStatus status = doConsumeMessage(due, dueContext);
+                int ackIndex = status == ConsumeConcurrentlyStatus.CONSUME_SUCCESS
+                    ? Math.min(dueContext.getAckIndex(), due.size() - 1) : -1;
+                List<MessageExt> dueFailed = due.subList(ackIndex + 1, due.size());
+                // the ones sent back are acknowledged, the client sends the rest back after the ack index
+                failed.addAll(dueFailed.subList(sendMessageBack(dueFailed, context), dueFailed.size()));
+            }
+
+            for (int i = 0; i < msgs.size(); i++) {
+                MessageExt messageExt = msgs.get(i);
+                boolean acknowledged = dueMessages.contains(messageExt) ? !failed.contains(messageExt)
+                    : deliverTimeScheduler.defer(messageExt)
+                    || sendMessageBack(Collections.singletonList(messageExt), context) == 1;
+                if (!acknowledged) {
+                    if (i == 0) {
+                        return ConsumeConcurrentlyStatus.RECONSUME_LATER;
+                    }
+                    context.setAckIndex(i - 1);
+                    return ConsumeConcurrentlyStatus.CONSUME_SUCCESS;
+                }
+            }
+            return ConsumeConcurrentlyStatus.CONSUME_SUCCESS;
+        }
+
+        private ConsumeConcurrentlyStatus doConsumeMessage(List<MessageExt> msgs, ConsumeConcurrentlyContext context) {
+            if (Objects.nonNull(rocketMQBatchListener)) {
+                try {
+                    consumeBatch(msgs);
+                } catch (Exception e) {
+                    log.warn("consume message batch failed. size:{}", msgs.size(), e);
+                    context.setDelayLevelWhenNextConsume(delayLevelWhenNextConsume);
+                    return ConsumeConcurrentlyStatus.RECONSUME_LATER;
+                }
+                return ConsumeConcurrentlyStatus.CONSUME_SUCCESS;
+            }
+            if (Objects.nonNull(listenerExecutor)) {
+                return dispatch(msgs, context);
+            }
+
+            for (int i = 0; i < msgs.size(); i++) {
+                MessageExt messageExt = msgs.get(i);
                 log.debug("received msg: {}", messageExt);
                 try {
-                    long now = System.currentTimeMillis();
-                    rocketMQListener.onMessage(doConvertMessage(messageExt));
-                    long costTime = System.currentTimeMillis() - now;
-                    log.debug("consume {} cost: {} ms", messageExt.getMsgId(), costTime);
+                    consumeOne(messageExt);
                 } catch (Exception e) {
                     log.warn("consume message failed. messageExt:{}", messageExt, e);
                     context.setDelayLevelWhenNextConsume(delayLevelWhenNextConsume);
-                    return ConsumeConcurrentlyStatus.RECONSUME_LATER;
+                    if (i == 0) {
+                        return ConsumeConcurrentlyStatus.RECONSUME_LATER;
+                    }
+                    // ack the consumed head, the client sends msgs after ackIndex back for retry
+                    context.setAckIndex(i - 1);
+                    return ConsumeConcurrentlyStatus.CONSUME_SUCCESS;
+                }
+            }
+
+            return ConsumeConcurrentlyStatus.CONSUME_SUCCESS;
+        }
+
+        /**
+         * Consume the messages in parallel on {@link #listenerExecutor}. Failed messages are sent back for retry one
+         * by one, so the messages consumed after them are not redelivered. When a send back fails, the batch is
+         * acknowledged up to the first failed message not sent back yet.
+         */
+        private ConsumeConcurrentlyStatus dispatch(List<MessageExt> msgs, ConsumeConcurrentlyContext context) {
+            List<CompletableFuture<Void>> futures = new ArrayList<>(msgs.size());
+            for (MessageExt messageExt : msgs) {
+                futures.add(dispatchOne(messageExt));
+            }
+
+            List<MessageExt> failed = new ArrayList<>();
+            List<Integer> failedIndexes = new ArrayList<>();
+            for (int i = 0; i < msgs.size(); i++) {
+                try {
+                    futures.get(i).join();
+                } catch (CompletionException | CancellationException e) {
+                    log.warn("consume message failed. messageExt:{}", msgs.get(i), e.getCause());
+                    failed.add(msgs.get(i));
+                    failedIndexes.add(i);
                 }
             }
+            if (failed.isEmpty()) {
+                return ConsumeConcurrentlyStatus.CONSUME_SUCCESS;
+            }
 
+            context.setDelayLevelWhenNextConsume(delayLevelWhenNextConsume);
+            int sentBack = sendMessageBack(failed, context);
+            if (sentBack == failed.size()) {
+                return ConsumeConcurrentlyStatus.CONSUME_SUCCESS;
+            }
+            // the client sends back the messages after the ack index, not the ones sent back already
+            int notSentBack = failedIndexes.get(sentBack);
+            if (notSentBack == 0) {
+                return ConsumeConcurrentlyStatus.RECONSUME_LATER;
+            }
+            context.setAckIndex(notSentBack - 1);
             return ConsumeConcurrentlyStatus.CONSUME_SUCCESS;
         }
+
+        private CompletableFuture<Void> dispatchOne(MessageExt messageExt) {
+            try {
+                listenerPermits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                CompletableFuture<Void> future = new CompletableFuture<>();
+                future.completeExceptionally(e);
+                return future;
+            }
+            return dispatchAcquired(messageExt);
+        }
+
+        /**
+         * Consume a message on {@link #listenerExecutor} with a listener permit acquired already.
+         */
+        private CompletableFuture<Void> dispatchAcquired(MessageExt messageExt) {
+            log.debug("received msg: {}", messageExt);
+            try {
+                return CompletableFuture.runAsync(() -> consumeOne(messageExt), listenerExecutor)
+                    .whenComplete((result, e) -> listenerPermits.release());
+            } catch (RejectedExecutionException e) {
+                log.debug("listener executor rejected, consume on the consume thread");
+                listenerPermits.release();
+                CompletableFuture<Void> future = new CompletableFuture<>();
+                try {
+                    consumeOne(messageExt);
+                    future.complete(null);
+                } catch (Exception ex) {
+                    future.completeExceptionally(ex);
+                }
+                return future;
+            }
+        }
+
+        /**
+         * Send failed messages back to the broker in order like the client does for the messages after the ack index,
+         * stopping at the first one that cannot be sent back.
+         *
+         * @return number of messages sent back, the rest must be acknowledged by index instead
+         */
+        private int sendMessageBack(List<MessageExt> failed, ConsumeConcurrentlyContext context) {
+            if (Objects.isNull(consumer) || messageModel != MessageModel.CLUSTERING) {
+                return 0;
+            }
+            for (int i = 0; i < failed.size(); i++) {
+                MessageExt messageExt = failed.get(i);
+                try {
+                    consumer.sendMessageBack(messageExt, context.getDelayLevelWhenNextConsume(),
+                        context.getMessageQueue().getBrokerName());
+                } catch (Exception e) {
+                    log.warn("send message back failed. msgId:{}", messageExt.getMsgId(), e);
+                    return i;
+                }
+            }
+            return failed.size();
+        }
     }
 
     public class DefaultMessageListenerOrderly implements MessageListenerOrderly {
 
         @Override
         public ConsumeOrderlyStatus consumeMessage(List<MessageExt> msgs, ConsumeOrderlyContext context) {
+            if (Objects.nonNull(rocketMQBatchListener)) {
+                try {
+                    consumeBatch(msgs);
+                } catch (Exception e) {
+                    log.warn("consume message batch failed. size:{}", msgs.size(), e);
+                    context.setSuspendCurrentQueueTimeMillis(suspendCurrentQueueTimeMillis);
+                    return ConsumeOrderlyStatus.SUSPEND_CURRENT_QUEUE_A_MOMENT;
+                }
+                return ConsumeOrderlyStatus.SUCCESS;
+            }
+
             for (MessageExt messageExt : msgs) {
                 log.debug("received msg: {}", messageExt);
                 try {
-                    long now = System.currentTimeMillis();
-                    rocketMQListener.onMessage(doConvertMessage(messageExt));
-                    long costTime = System.currentTimeMillis() - now;
-                    log.info("consume {} cost: {} ms", messageExt.getMsgId(), costTime);
+                    consumeOne(messageExt);
                 } catch (Exception e) {
                     log.warn("consume message failed. messageExt:{}", messageExt, e);
                     context.setSuspendCurrentQueueTimeMillis(suspendCurrentQueueTimeMillis);
@@ -151,9 +793,256 @@ public class DefaultRocketMQListenerContainer implements InitializingBean, Rocke
         }
     }
 
+    /**
+     * <p> Takes a window of messages from a locked queue like {@link DefaultMessageListenerOrderly}, splits it into
+     * stripes by the hash of the message keys and consumes the stripes in parallel, each stripe in offset order. </p>
+     *
+     * The window returns to the client, which commits its offsets, only when every stripe completed. When a stripe
+     * fails, the other stripes still run to the end and the whole window is redelivered, skipping the messages already
+     * consumed, so the committed offset never passes a message in flight and each key keeps its order.
+     */
+    public class DefaultMessageListenerKeyOrderly implements MessageListenerOrderly {
+
+        private final Map<MessageQueue, Set<Long>> consumedOffsets = new ConcurrentHashMap<>();
+
+        @Override
+        public ConsumeOrderlyStatus consumeMessage(List<MessageExt> msgs, ConsumeOrderlyContext context) {
+            removeDroppedQueues(context.getMessageQueue());
+            Set<Long> consumed = consumedOffsets.computeIfAbsent(context.getMessageQueue(),
+                messageQueue -> ConcurrentHashMap.newKeySet());
+
+            List<List<MessageExt>> stripes = new ArrayList<>(keyOrderedConcurrency);
+            for (int i = 0; i < keyOrderedConcurrency; i++) {
+                stripes.add(null);
+            }
+            for (MessageExt messageExt : msgs) {
+                if (consumed.contains(messageExt.getQueueOffset())) {
+                    continue;
+                }
+                int index = stripeIndex(messageExt);
+                if (Objects.isNull(stripes.get(index))) {
+                    stripes.set(index, new ArrayList<>());
+                }
+                stripes.get(index).add(messageExt);
+            }
+
+            // the last stripe runs on the consume thread, which waits for the others anyway
+            List<Future<Boolean>> futures = new ArrayList<>();
+            List<MessageExt> last = null;
+            for (List<MessageExt> stripe : stripes) {
+                if (Objects.isNull(stripe)) {
+                    continue;
+                }
+                if (Objects.nonNull(last)) {
+                    List<MessageExt> submitted = last;
+                    futures.add(keyOrderedExecutor.submit(() -> consumeStripe(submitted, consumed)));
+                }
+                last = stripe;
+            }
+            boolean success = Objects.isNull(last) || consumeStripe(last, consumed);
+            for (Future<Boolean> future : futures) {
+                try {
+                    success &= future.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    success = false;
+                } catch (ExecutionException e) {
+                    log.warn("consume message stripe failed", e.getCause());
+                    success = false;
+                }
+            }
+
+            if (!success) {
+                if (isSentBack(msgs)) {
+                    consumedOffsets.remove(context.getMessageQueue());
+                }
+                context.setSuspendCurrentQueueTimeMillis(suspendCurrentQueueTimeMillis);
+                return ConsumeOrderlyStatus.SUSPEND_CURRENT_QUEUE_A_MOMENT;
+            }
+            consumedOffsets.remove(context.getMessageQueue());
+            return ConsumeOrderlyStatus.SUCCESS;
+        }
+
+        /**
+         * Forget the offsets of queues rebalanced away from this consumer, their windows never succeed here.
+         */
+        private void removeDroppedQueues(MessageQueue current) {
+            if (Objects.isNull(consumer) || consumedOffsets.size() <= 1) {
+                return;
+            }
+            Map<MessageQueue, ProcessQueue> processQueues = consumer.getDefaultMQPushConsumerImpl().getRebalanceImpl()
+                .getProcessQueueTable();
+            consumedOffsets.keySet().removeIf(messageQueue -> {
+                if (messageQueue.equals(current)) {
+                    return false;
+                }
+                ProcessQueue processQueue = processQueues.get(messageQueue);
+                return Objects.isNull(processQueue) || processQueue.isDropped();
+            });
+        }
+
+        /**
+         * Whether the client gives up a failed window, sending its messages back to the broker as they reached the max
+         * reconsume times, instead of consuming it again.
+         */
+        private boolean isSentBack(List<MessageExt> msgs) {
+            if (Objects.isNull(consumer) || consumer.getMaxReconsumeTimes() < 0) {
+                return false;
+            }
+            for (MessageExt messageExt : msgs) {
+                if (messageExt.getReconsumeTimes() < consumer.getMaxReconsumeTimes()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private int stripeIndex(MessageExt messageExt) {
+            String keys = messageExt.getKeys();
+            // messages without keys need no order, spread them by offset
+            int hash = Objects.isNull(keys) ? Long.hashCode(messageExt.getQueueOffset()) : keys.hashCode();
+            return ((hash ^ (hash >>> 16)) & Integer.MAX_VALUE) % keyOrderedConcurrency;
+        }
+
+        private boolean consumeStripe(List<MessageExt> stripe, Set<Long> consumed) {
+            for (MessageExt messageExt : stripe) {
+                log.debug("received msg: {}", messageExt);
+                try {
+                    consumeOne(messageExt);
+                } catch (Exception e) {
+                    log.warn("consume message failed. messageExt:{}", messageExt, e);
+                    return false;
+                }
+                consumed.add(messageExt.getQueueOffset());
+            }
+            return true;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void consumeOne(MessageExt messageExt) {
+        if (Objects.nonNull(deduplicator) && !deduplicator.acquire(messageExt)) {
+            log.debug("drop duplicate msg: {}", messageExt.getMsgId());
+            return;
+        }
+        long now = System.nanoTime();
+        try {
+            RocketMQListener listener = Objects.nonNull(rocketMQListener) ? rocketMQListener : fluxListenerAdapter;
+            listener.onMessage(doConvertMessage(messageExt));
+        } catch (RuntimeException e) {
+            if (Objects.nonNull(deduplicator)) {
+                deduplicator.release(messageExt);
+            }
+            recordConsumed(1, System.nanoTime() - now, failureResult(messageExt));
+            throw e;
+        }
+        if (Objects.nonNull(deduplicator)) {
+            deduplicator.consumed(messageExt);
+        }
+        long costTime = System.nanoTime() - now;
+        recordConsumed(1, costTime, ConsumeResult.SUCCESS);
+        log.debug("consume {} cost: {} ms", messageExt.getMsgId(), TimeUnit.NANOSECONDS.toMillis(costTime));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void consumeBatch(List<MessageExt> msgs) {
+        log.debug("received msg batch, size: {}", msgs.size());
+        if (Objects.nonNull(deduplicator)) {
+            List<MessageExt> acquired = new ArrayList<>(msgs.size());
+            for (MessageExt messageExt : msgs) {
+                if (deduplicator.acquire(messageExt)) {
+                    acquired.add(messageExt);
+                } else {
+                    log.debug("drop duplicate msg: {}", messageExt.getMsgId());
+                }
+            }
+            if (acquired.isEmpty()) {
+                return;
+            }
+            try {
+                doConsumeBatch(acquired);
+            } catch (RuntimeException e) {
+                acquired.forEach(deduplicator::release);
+                throw e;
+            }
+            acquired.forEach(deduplicator::consumed);
+            return;
+        }
+        doConsumeBatch(msgs);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void doConsumeBatch(List<MessageExt> msgs) {
+        long now = System.nanoTime();
+        try {
+            List<Object> messages = new ArrayList<>(msgs.size());
+            for (MessageExt messageExt : msgs) {
+                messages.add(doConvertMessage(messageExt));
+            }
+            rocketMQBatchListener.onMessage(messages);
+        } catch (RuntimeException e) {
+            recordConsumed(msgs.size(), System.nanoTime() - now, failureResult(msgs.get(0)));
+            throw e;
+        }
+        long costTime = System.nanoTime() - now;
+        recordConsumed(msgs.size(), costTime, ConsumeResult.SUCCESS);
+        log.debug("consume batch of {} cost: {} ms", msgs.size(), TimeUnit.NANOSECONDS.toMillis(costTime));
+    }
+
+    private void recordConsumed(int messages, long costNanos, ConsumeResult result) {
+        metrics.consumed(consumerGroup, topic, messages, costNanos, result);
+        if (Objects.nonNull(concurrencyController)) {
+            concurrencyController.record(messages, costNanos, result == ConsumeResult.SUCCESS);
+        }
+    }
+
+    /**
+     * Apply the limit of {@link #concurrencyController} to the listener permits, or to the consume threads, and
+     * scale the pull threshold with it, so a shrunk limit also caches fewer messages.
+     */
+    private void adaptConcurrency() {
+        try {
+            long backlog = pendingMessages();
+            int previous = concurrencyController.getLimit();
+            int limit = concurrencyController.adjust(backlog);
+            if (limit == previous) {
+                return;
+            }
+            if (listenerPermits instanceof ResizableSemaphore) {
+                ((ResizableSemaphore) listenerPermits).resize(limit - previous);
+            } else {
+                consumer.updateCorePoolSize(limit);
+            }
+            consumer.setPullThresholdForQueue(Math.max(pullBatchSize,
+                (int) ((long) pullThresholdForQueue * limit / concurrencyController.getMaxLimit())));
+            log.info("adapt concurrency of {} from {} to {}, backlog: {}", consumerGroup, previous, limit, backlog);
+        } catch (Exception e) {
+            log.warn("adapt concurrency failed. consumerGroup:{}", consumerGroup, e);
+        }
+    }
+
+    /**
+     * Whether a failed message is redelivered or goes to the dead letter queue, following the client's and broker's
+     * max reconsume times defaults.
+     */
+    private ConsumeResult failureResult(MessageExt messageExt) {
+        int maxReconsumeTimes = Objects.isNull(consumer) ? -1 : consumer.getMaxReconsumeTimes();
+        if (consumeMode == ConsumeMode.ORDERLY || consumeMode == ConsumeMode.ORDERLY_BY_KEY) {
+            maxReconsumeTimes = maxReconsumeTimes == -1 ? Integer.MAX_VALUE : maxReconsumeTimes;
+        } else {
+            maxReconsumeTimes = maxReconsumeTimes == -1 ? 16 : maxReconsumeTimes;
+            if (delayLevelWhenNextConsume < 0) {
+                return ConsumeResult.DLQ;
+            }
+        }
+        return messageExt.getReconsumeTimes() >= maxReconsumeTimes ? ConsumeResult.DLQ : ConsumeResult.RETRY;
+    }
+
     @Override
     public void afterPropertiesSet() throws Exception {
-        start();
+        if (startOnInitialization) {
+            start();
+        }
     }
 
     @Override
@@ -166,6 +1055,13 @@ public class DefaultRocketMQListenerContainer implements InitializingBean, Rocke
             ", selectorType=" + selectorType +
             ", selectorExpress='" + selectorExpress + '\'' +
             ", messageModel=" + messageModel +
+            ", consumeMessageBatchMaxSize=" + consumeMessageBatchMaxSize +
+            ", keyOrderedConcurrency=" + keyOrderedConcurrency +
+            ", listenerExecutor=" + (listenerExecutor == null ? null : listenerExecutor.getClass().getSimpleName()) +
+            ", listenerConcurrency=" + listenerConcurrency +
+            ", adaptiveConcurrency=" + adaptiveConcurrency +
+            ", dedupKey=" + dedupKey +
+            ", messageCodec=" + (messageCodec == null ? null : messageCodec.getClass().getSimpleName()) +
             '}';
     }
 
@@ -174,57 +1070,101 @@ public class DefaultRocketMQListenerContainer implements InitializingBean, Rocke
         if (Objects.equals(messageType, MessageExt.class)) {
             return messageExt;
         } else {
-            String str = new String(messageExt.getBody(), Charset.forName(charset));
-            if (Objects.equals(messageType, String.class)) {
-                return str;
-            } else {
-                // if msgType not string, use objectMapper change it.
-                try {
-                    return JSON.parseObject(str, messageType);
-                } catch (Exception e) {
-                    log.info("convert failed. str:{}, msgType:{}", str, messageType);
-                    throw new RuntimeException("cannot convert message to " + messageType, e);
-                }
+            try {
+                return messageDecoder.decode(messageExt.getBody());
+            } catch (Exception e) {
+                log.info("convert failed. msgId:{}, msgType:{}", messageExt.getMsgId(), messageType);
+                throw e;
             }
         }
     }
 
-    private Class getMessageType() {
-        Type[] interfaces = rocketMQListener.getClass().getGenericInterfaces();
-        if (Objects.nonNull(interfaces)) {
-            for (Type type : interfaces) {
-                if (type instanceof ParameterizedType) {
-                    ParameterizedType parameterizedType = (ParameterizedType) type;
-                    if (Objects.equals(parameterizedType.getRawType(), RocketMQListener.class)) {
-                        Type[] actualTypeArguments = parameterizedType.getActualTypeArguments();
-                        if (Objects.nonNull(actualTypeArguments) && actualTypeArguments.length > 0) {
-                            return (Class) actualTypeArguments[0];
-                        } else {
-                            return Object.class;
-                        }
-                    }
-                }
-            }
+    /**
+     * Resolve the full generic message type, e.g. <code>List&lt;Order&gt;</code>, through AOP proxies, superclasses
+     * and generic super interfaces of the listener.
+     */
+    private Type resolveMessageType() {
+        Object listener = rocketMQListener;
+        Class<?> listenerInterface = RocketMQListener.class;
+        if (Objects.nonNull(rocketMQBatchListener)) {
+            listener = rocketMQBatchListener;
+            listenerInterface = RocketMQBatchListener.class;
+        } else if (Objects.nonNull(rocketMQFluxListener)) {
+            listener = rocketMQFluxListener;
+            listenerInterface = RocketMQFluxListener.class;
+        }
 
-            return Object.class;
-        } else {
-            return Object.class;
+        return resolveMessageType(listener, listenerInterface);
+    }
+
+    /**
+     * Resolve the message type of a listener, the first type argument of the listener interface it implements.
+     */
+    static Type resolveMessageType(Object listener, Class<?> listenerInterface) {
+        ResolvableType resolvableType = ResolvableType.forClass(AopProxyUtils.ultimateTargetClass(listener))
+            .as(listenerInterface).getGeneric(0);
+        return toType(resolvableType);
+    }
+
+    /**
+     * Convert to a {@link Type} without type variables, which codecs can decode to directly.
+     */
+    private static Type toType(ResolvableType resolvableType) {
+        Class<?> rawClass = resolvableType.resolve(Object.class);
+        if (!resolvableType.hasGenerics()) {
+            return rawClass;
         }
+        ResolvableType[] generics = resolvableType.getGenerics();
+        Type[] typeArguments = new Type[generics.length];
+        for (int i = 0; i < generics.length; i++) {
+            typeArguments[i] = toType(generics[i]);
+        }
+        return new ResolvedParameterizedType(rawClass, typeArguments);
     }
 
     private void initRocketMQPushConsumer() throws MQClientException {
 
-        Assert.notNull(rocketMQListener, "Property 'rocketMQListener' is required");
+        Assert.isTrue(Stream.of(rocketMQListener, rocketMQBatchListener, rocketMQFluxListener).filter(Objects::nonNull)
+            .count() == 1, "Exactly one of property 'rocketMQListener', 'rocketMQBatchListener' or "
+            + "'rocketMQFluxListener' is required");
+        Assert.isTrue(consumeMessageBatchMaxSize > 0, "Property 'consumeMessageBatchMaxSize' must be positive");
+        Assert.isTrue(consumeMode != ConsumeMode.ORDERLY_BY_KEY || Objects.isNull(rocketMQBatchListener),
+            "Property 'rocketMQBatchListener' is not supported in ORDERLY_BY_KEY mode");
+        Assert.isTrue(keyOrderedConcurrency > 0, "Property 'keyOrderedConcurrency' must be positive");
+        Assert.isTrue(Objects.isNull(listenerExecutor)
+                || (consumeMode == ConsumeMode.CONCURRENTLY && Objects.nonNull(rocketMQListener)),
+            "Property 'listenerExecutor' requires CONCURRENTLY mode and property 'rocketMQListener'");
+        Assert.isTrue(!adaptiveConcurrency || Objects.isNull(rocketMQFluxListener),
+            "Property 'adaptiveConcurrency' is not supported with property 'rocketMQFluxListener'");
         Assert.notNull(consumerGroup, "Property 'consumerGroup' is required");
         Assert.notNull(nameServer, "Property 'nameServer' is required");
         Assert.notNull(topic, "Property 'topic' is required");
 
         consumer = new DefaultMQPushConsumer(consumerGroup);
         consumer.setNamesrvAddr(nameServer);
-        consumer.setConsumeThreadMax(consumeThreadMax);
-        if (consumeThreadMax < consumer.getConsumeThreadMin()) {
-            consumer.setConsumeThreadMin(consumeThreadMax);
+        // the batch is the window fanned out to the stripes or the listener executor, a single message window has
+        // nothing to fan out
+        boolean fanOut = consumeMode == ConsumeMode.ORDERLY_BY_KEY || Objects.nonNull(listenerExecutor);
+        int batchMaxSize = fanOut && consumeMessageBatchMaxSize == 1 ? pullBatchSize : consumeMessageBatchMaxSize;
+
+        int threadMax = consumeThreadMax;
+        if (Objects.nonNull(rocketMQFluxListener)) {
+            // the demand of the flux subscriber paces a single consume thread
+            threadMax = 1;
+        } else if (Objects.nonNull(listenerExecutor)) {
+            // consume threads only wait for their batch, enough to keep the executor at its concurrency
+            threadMax = Math.min(consumeThreadMax, (listenerConcurrency + batchMaxSize - 1) / batchMaxSize + 1);
         }
+        consumer.setConsumeThreadMax(threadMax);
+        consumer.setConsumeThreadMin(Math.min(consumeThreadMin, threadMax));
+        consumer.setPullBatchSize(pullBatchSize);
+        consumer.setPullInterval(pullInterval);
+        consumer.setPullThresholdForQueue(pullThresholdForQueue);
+        consumer.setPullThresholdSizeForQueue(pullThresholdSizeForQueue);
+        consumer.setConsumeConcurrentlyMaxSpan(consumeConcurrentlyMaxSpan);
+        consumer.setConsumeTimeout(consumeTimeout);
+
+        consumer.setConsumeMessageBatchMaxSize(batchMaxSize);
 
         consumer.setMessageModel(messageModel);
 
@@ -246,6 +1186,11 @@ public class DefaultRocketMQListenerContainer implements InitializingBean, Rocke
             case CONCURRENTLY:
                 consumer.setMessageListener(new DefaultMessageListenerConcurrently());
                 break;
+            case ORDERLY_BY_KEY:
+                keyOrderedExecutor = Executors.newFixedThreadPool(keyOrderedConcurrency,
+                    new ThreadFactoryImpl("RocketMQKeyOrderedThread_" + consumerGroup + "_"));
+                consumer.setMessageListener(new DefaultMessageListenerKeyOrderly());
+                break;
             default:
                 throw new IllegalArgumentException("Property 'consumeMode' was wrong.");
         }
@@ -257,4 +1202,70 @@ public class DefaultRocketMQListenerContainer implements InitializingBean, Rocke
 
     }
 
+    private static final class ResizableSemaphore extends Semaphore {
+
+        private ResizableSemaphore(int permits) {
+            super(permits);
+        }
+
+        private void resize(int delta) {
+            if (delta > 0) {
+                release(delta);
+            } else {
+                reducePermits(-delta);
+            }
+        }
+    }
+
+    private static final class ResolvedParameterizedType implements ParameterizedType {
+
+        private final Class<?> rawType;
+
+        private final Type[] actualTypeArguments;
+
+        private ResolvedParameterizedType(Class<?> rawType, Type[] actualTypeArguments) {
+            this.rawType = rawType;
+            this.actualTypeArguments = actualTypeArguments;
+        }
+
+        @Override
+        public Type[] getActualTypeArguments() {
+            return actualTypeArguments.clone();
+        }
+
+        @Override
+        public Type getRawType() {
+            return rawType;
+        }
+
+        @Override
+        public Type getOwnerType() {
+            return null;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof ParameterizedType)) {
+                return false;
+            }
+            ParameterizedType that = (ParameterizedType) o;
+            return Objects.equals(rawType, that.getRawType()) && Objects.isNull(that.getOwnerType())
+                && Arrays.equals(actualTypeArguments, that.getActualTypeArguments());
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(actualTypeArguments) ^ rawType.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder(rawType.getName()).append('<');
+            for (int i = 0; i < actualTypeArguments.length; i++) {
+                sb.append(i > 0 ? ", " : "").append(actualTypeArguments[i].getTypeName());
+            }
+            return sb.append('>').toString();
+        }
+    }
+
 }
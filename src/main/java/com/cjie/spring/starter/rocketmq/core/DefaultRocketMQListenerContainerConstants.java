@@ -9,9 +9,37 @@ public final class DefaultRocketMQListenerContainerConstants {
     public static final String PROP_CONSUMER_GROUP = "consumerGroup";
     public static final String PROP_CONSUME_MODE = "consumeMode";
     public static final String PROP_CONSUME_THREAD_MAX = "consumeThreadMax";
+    public static final String PROP_CONSUME_THREAD_MIN = "consumeThreadMin";
+    public static final String PROP_PULL_BATCH_SIZE = "pullBatchSize";
+    public static final String PROP_PULL_INTERVAL = "pullInterval";
+    public static final String PROP_PULL_THREADS = "pullThreads";
+    public static final String PROP_PULL_THRESHOLD_FOR_QUEUE = "pullThresholdForQueue";
+    public static final String PROP_PULL_THRESHOLD_SIZE_FOR_QUEUE = "pullThresholdSizeForQueue";
+    public static final String PROP_CONSUME_CONCURRENTLY_MAX_SPAN = "consumeConcurrentlyMaxSpan";
+    public static final String PROP_CONSUME_TIMEOUT = "consumeTimeout";
+    public static final String PROP_KEY_ORDERED_CONCURRENCY = "keyOrderedConcurrency";
+    public static final String PROP_LISTENER_EXECUTOR = "listenerExecutor";
+    public static final String PROP_LISTENER_CONCURRENCY = "listenerConcurrency";
+    public static final String PROP_ADAPTIVE_CONCURRENCY = "adaptiveConcurrency";
+    public static final String PROP_ADAPTIVE_TARGET_LATENCY = "adaptiveTargetLatency";
+    public static final String PROP_ADAPTIVE_MAX_ERROR_RATE = "adaptiveMaxErrorRate";
+    public static final String PROP_ADAPTIVE_INTERVAL = "adaptiveInterval";
+    public static final String PROP_DEDUP_KEY = "dedupKey";
+    public static final String PROP_DEDUP_CAPACITY = "dedupCapacity";
+    public static final String PROP_DEDUP_WINDOW = "dedupWindow";
+    public static final String PROP_DEDUP_STORE = "dedupStore";
+    public static final String PROP_DELAY_LEVELS = "delayLevels";
     public static final String PROP_MESSAGE_MODEL = "messageModel";
     public static final String PROP_SELECTOR_EXPRESS = "selectorExpress";
     public static final String PROP_SELECTOR_TYPE = "selectorType";
+    public static final String PROP_CONSUME_MESSAGE_BATCH_MAX_SIZE = "consumeMessageBatchMaxSize";
+    public static final String PROP_MESSAGE_CODEC = "messageCodec";
+    public static final String PROP_METRICS = "metrics";
     public static final String PROP_ROCKETMQ_LISTENER = "rocketMQListener";
+    public static final String PROP_ROCKETMQ_BATCH_LISTENER = "rocketMQBatchListener";
+    public static final String PROP_ROCKETMQ_FLUX_LISTENER = "rocketMQFluxListener";
+    public static final String PROP_ROCKETMQ_PULL_LISTENER = "rocketMQPullListener";
+    public static final String PROP_DRAIN_TIMEOUT = "drainTimeout";
+    public static final String PROP_START_ON_INITIALIZATION = "startOnInitialization";
     public static final String METHOD_DESTROY = "destroy";
 }
@@ -0,0 +1,410 @@
+package com.cjie.spring.starter.rocketmq.core;
+
+import com.cjie.spring.starter.rocketmq.codec.JsonMessageCodec;
+import com.cjie.spring.starter.rocketmq.codec.MessageCodec;
+import com.cjie.spring.starter.rocketmq.enums.ConsumeResult;
+import com.cjie.spring.starter.rocketmq.enums.SelectorType;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.rocketmq.client.consumer.DefaultMQPullConsumer;
+import org.apache.rocketmq.client.consumer.MQPullConsumer;
+import org.apache.rocketmq.client.consumer.MQPullConsumerScheduleService;
+import org.apache.rocketmq.client.consumer.MessageQueueListener;
+import org.apache.rocketmq.client.consumer.PullResult;
+import org.apache.rocketmq.client.consumer.PullTaskCallback;
+import org.apache.rocketmq.client.consumer.PullTaskContext;
+import org.apache.rocketmq.client.consumer.store.OffsetStore;
+import org.apache.rocketmq.client.consumer.store.ReadOffsetType;
+import org.apache.rocketmq.client.exception.MQClientException;
+import org.apache.rocketmq.common.message.MessageExt;
+import org.apache.rocketmq.common.message.MessageQueue;
+import org.apache.rocketmq.common.protocol.heartbeat.MessageModel;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.util.Assert;
+
+import java.lang.reflect.Type;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p> Pulls batches of messages from the queues assigned to this consumer and passes them to a
+ * {@link RocketMQPullListener}, each queue read by one of {@link #pullThreads} threads with long polling, the next
+ * batch is pulled as soon as the listener returned. </p>
+ *
+ * <p> Offsets only move when the listener commits them. A consumer group without committed offset starts at the
+ * earliest message of each queue. </p>
+ *
+ * The broker caps a pull at <code>maxTransferCountOnMessageInMemory</code> messages, 32 by default, raise it on the
+ * broker for larger batches.
+ */
+@Data
+@Slf4j
+public class DefaultRocketMQPullListenerContainer implements InitializingBean, RocketMQListenerContainer, SmartLifecycle {
+
+    private static final long DRAIN_CHECK_INTERVAL_MILLIS = 50;
+
+    /**
+     * Millis between two checks of a paused queue.
+     */
+    private static final int PAUSED_CHECK_INTERVAL_MILLIS = 1000;
+
+    /**
+     * Min millis the broker holds a pull while the queue has no new message.
+     */
+    private static final long MIN_BROKER_SUSPEND_MILLIS = 1000;
+
+    /**
+     * Millis a queue is not pulled after a pull or its listener call failed.
+     */
+    private long suspendCurrentQueueTimeMillis = 1000;
+
+    private String consumerGroup;
+
+    private String nameServer;
+
+    private String topic;
+
+    private SelectorType selectorType = SelectorType.TAG;
+
+    private String selectorExpress = "*";
+
+    private MessageModel messageModel = MessageModel.CLUSTERING;
+
+    /**
+     * Max number of messages pulled from a queue in one request and passed to the listener at once.
+     */
+    private int pullBatchSize = 32;
+
+    /**
+     * Number of threads reading queues, each thread reads one queue at a time.
+     */
+    private int pullThreads = 20;
+
+    private String charset = "UTF-8";
+
+    private MessageCodec messageCodec;
+
+    private RocketMQMetrics metrics = RocketMQMetrics.NOOP;
+
+    private boolean started;
+
+    private volatile boolean paused;
+
+    /**
+     * Max millis {@link #stop(Runnable)} waits for the pulls and listener calls in progress. The broker holds a pull of
+     * a queue without new messages for at most half of it, so an idle pull returns before the drain gives up.
+     */
+    private long drainTimeout = 10000;
+
+    private int phase = Integer.MAX_VALUE;
+
+    private boolean startOnInitialization = true;
+
+    private RocketMQPullListener rocketMQPullListener;
+
+    private MQPullConsumerScheduleService scheduleService;
+
+    private OffsetStore offsetStore;
+
+    /**
+     * Offset of the next pull by queue, ahead of the committed offset while batches are not committed.
+     */
+    private final ConcurrentMap<MessageQueue, Long> nextOffsets = new ConcurrentHashMap<>();
+
+    /**
+     * Pull tasks between their paused check and the return of the listener, a pull in progress included.
+     */
+    private final AtomicInteger pullTasks = new AtomicInteger();
+
+    private Type messageType;
+
+    private MessageCodec.Decoder messageDecoder;
+
+    @Override
+    public void setupMessageListener(RocketMQListener<?> messageListener) {
+        throw new IllegalArgumentException("pull listener container only supports " + RocketMQPullListener.class);
+    }
+
+    @Override
+    public synchronized void pause() {
+        if (started && !paused) {
+            this.paused = true;
+            log.info("paused container: {}", this.toString());
+        }
+    }
+
+    @Override
+    public synchronized void resume() {
+        if (started && paused) {
+            this.paused = false;
+            log.info("resumed container: {}", this.toString());
+        }
+    }
+
+    @Override
+    public void stop(Runnable callback) {
+        pause();
+        Thread drainThread = new Thread(() -> {
+            try {
+                drain();
+            } finally {
+                callback.run();
+            }
+        }, "RocketMQDrainThread_" + consumerGroup);
+        drainThread.setDaemon(true);
+        drainThread.start();
+    }
+
+    @Override
+    public void stop() {
+        pause();
+        drain();
+    }
+
+    private void drain() {
+        long deadline = System.currentTimeMillis() + drainTimeout;
+        while (pullTasks.get() > 0 && System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(DRAIN_CHECK_INTERVAL_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        if (pullTasks.get() > 0) {
+            log.warn("drain container timeout, {} pull tasks pending. {}", pullTasks.get(), this.toString());
+        } else {
+            log.info("drained container: {}", this.toString());
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return started && !paused;
+    }
+
+    @Override
+    public boolean isAutoStartup() {
+        return false;
+    }
+
+    @Override
+    public void destroy() {
+        this.setStarted(false);
+        if (Objects.nonNull(scheduleService)) {
+            // shuts the pull consumer down, which sends the committed offsets to the broker
+            scheduleService.shutdown();
+        }
+        log.info("container destroyed, {}", this.toString());
+    }
+
+    @Override
+    public synchronized void start() {
+        if (this.isStarted()) {
+            if (paused) {
+                resume();
+                return;
+            }
+            throw new IllegalStateException("container already started. " + this.toString());
+        }
+        try {
+            doStart();
+        } catch (MQClientException e) {
+            throw new IllegalStateException("start container failed. " + this.toString(), e);
+        }
+    }
+
+    private void doStart() throws MQClientException {
+        Assert.notNull(rocketMQPullListener, "Property 'rocketMQPullListener' is required");
+        Assert.notNull(consumerGroup, "Property 'consumerGroup' is required");
+        Assert.notNull(nameServer, "Property 'nameServer' is required");
+        Assert.notNull(topic, "Property 'topic' is required");
+        Assert.isTrue(selectorType == SelectorType.TAG, "pull listener container only supports selector type TAG");
+        Assert.isTrue(pullBatchSize > 0, "Property 'pullBatchSize' must be positive");
+        Assert.isTrue(pullThreads > 0, "Property 'pullThreads' must be positive");
+
+        this.messageType = DefaultRocketMQListenerContainer.resolveMessageType(rocketMQPullListener,
+            RocketMQPullListener.class);
+        if (Objects.isNull(messageCodec)) {
+            this.messageCodec = new JsonMessageCodec(Charset.forName(charset));
+        }
+        this.messageDecoder = messageCodec.decoderFor(messageType);
+        log.debug("msgType: {}", messageType.getTypeName());
+
+        this.scheduleService = new MQPullConsumerScheduleService(consumerGroup);
+        scheduleService.setMessageModel(messageModel);
+        scheduleService.setPullThreadNums(pullThreads);
+        DefaultMQPullConsumer pullConsumer = scheduleService.getDefaultMQPullConsumer();
+        pullConsumer.setNamesrvAddr(nameServer);
+        pullConsumer.setBrokerSuspendMaxTimeMillis(Math.max(MIN_BROKER_SUSPEND_MILLIS,
+            Math.min(pullConsumer.getBrokerSuspendMaxTimeMillis(), drainTimeout / 2)));
+        scheduleService.registerPullTaskCallback(topic, new DefaultPullTaskCallback());
+        scheduleService.start();
+        this.offsetStore = pullConsumer.getDefaultMQPullConsumerImpl().getOffsetStore();
+
+        // forget the pull position of queues moving to other consumers, they continue from the committed offset
+        MessageQueueListener scheduleListener = pullConsumer.getMessageQueueListener();
+        pullConsumer.setMessageQueueListener((changedTopic, mqAll, mqDivided) -> {
+            nextOffsets.keySet().retainAll(mqDivided);
+            scheduleListener.messageQueueChanged(changedTopic, mqAll, mqDivided);
+        });
+
+        this.setStarted(true);
+        log.info("started container: {}", this.toString());
+    }
+
+    /**
+     * Pulls one batch from a queue and passes it to the listener, runs on the pull threads of the schedule service.
+     */
+    public class DefaultPullTaskCallback implements PullTaskCallback {
+
+        @Override
+        public void doPullTask(MessageQueue messageQueue, PullTaskContext context) {
+            // counted before the paused check, a drain that sees no task sees this one skip the queue
+            pullTasks.incrementAndGet();
+            try {
+                doPullTask(messageQueue, context, context.getPullConsumer());
+            } finally {
+                pullTasks.decrementAndGet();
+            }
+        }
+
+        private void doPullTask(MessageQueue messageQueue, PullTaskContext context, MQPullConsumer pullConsumer) {
+            if (paused || !started) {
+                context.setPullNextDelayTimeMillis(PAUSED_CHECK_INTERVAL_MILLIS);
+                return;
+            }
+            try {
+                Long offset = nextOffsets.get(messageQueue);
+                if (Objects.isNull(offset)) {
+                    offset = offsetStore.readOffset(messageQueue, ReadOffsetType.MEMORY_FIRST_THEN_STORE);
+                    if (offset < 0) {
+                        offset = pullConsumer.minOffset(messageQueue);
+                    }
+                }
+
+                PullResult pullResult = pullConsumer.pullBlockIfNotFound(messageQueue, selectorExpress, offset,
+                    pullBatchSize);
+                if (paused || !started) {
+                    // paused during the pull, the batch is pulled again on resume
+                    context.setPullNextDelayTimeMillis(PAUSED_CHECK_INTERVAL_MILLIS);
+                    return;
+                }
+                switch (pullResult.getPullStatus()) {
+                    case FOUND:
+                        consume(messageQueue, pullResult);
+                        break;
+                    case NO_MATCHED_MSG:
+                    case OFFSET_ILLEGAL:
+                        // nothing for the listener, move the committed offset along unless a batch is not committed
+                        if (offsetStore.readOffset(messageQueue, ReadOffsetType.READ_FROM_MEMORY) == offset) {
+                            offsetStore.updateOffset(messageQueue, pullResult.getNextBeginOffset(), true);
+                        }
+                        break;
+                    default:
+                        break;
+                }
+                nextOffsets.put(messageQueue, pullResult.getNextBeginOffset());
+                context.setPullNextDelayTimeMillis(0);
+            } catch (Exception e) {
+                log.warn("pull queue failed, pull again from the committed offset. messageQueue:{}", messageQueue, e);
+                nextOffsets.remove(messageQueue);
+                context.setPullNextDelayTimeMillis((int) suspendCurrentQueueTimeMillis);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void consume(MessageQueue messageQueue, PullResult pullResult) {
+        List<MessageExt> msgs = pullResult.getMsgFoundList();
+        log.debug("pulled msg batch, queue: {}, size: {}", messageQueue, msgs.size());
+        long now = System.nanoTime();
+        try {
+            List<Object> messages = new ArrayList<>(msgs.size());
+            for (MessageExt messageExt : msgs) {
+                messages.add(doConvertMessage(messageExt));
+            }
+            rocketMQPullListener.onMessages(messages,
+                new QueueOffsetCommitter(messageQueue, pullResult.getNextBeginOffset()));
+        } catch (RuntimeException e) {
+            metrics.consumed(consumerGroup, topic, msgs.size(), System.nanoTime() - now, ConsumeResult.RETRY);
+            throw e;
+        }
+        long costTime = System.nanoTime() - now;
+        metrics.consumed(consumerGroup, topic, msgs.size(), costTime, ConsumeResult.SUCCESS);
+        log.debug("consume batch of {} cost: {} ms", msgs.size(), TimeUnit.NANOSECONDS.toMillis(costTime));
+    }
+
+    private Object doConvertMessage(MessageExt messageExt) {
+        if (Objects.equals(messageType, MessageExt.class)) {
+            return messageExt;
+        }
+        try {
+            return messageDecoder.decode(messageExt.getBody());
+        } catch (Exception e) {
+            log.info("convert failed. msgId:{}, msgType:{}", messageExt.getMsgId(), messageType);
+            throw e;
+        }
+    }
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        if (startOnInitialization) {
+            start();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "DefaultRocketMQPullListenerContainer{" +
+            "consumerGroup='" + consumerGroup + '\'' +
+            ", nameServer='" + nameServer + '\'' +
+            ", topic='" + topic + '\'' +
+            ", selectorExpress='" + selectorExpress + '\'' +
+            ", messageModel=" + messageModel +
+            ", pullBatchSize=" + pullBatchSize +
+            ", pullThreads=" + pullThreads +
+            ", messageCodec=" + (messageCodec == null ? null : messageCodec.getClass().getSimpleName()) +
+            '}';
+    }
+
+    private class QueueOffsetCommitter implements OffsetCommitter {
+
+        private final MessageQueue messageQueue;
+
+        private final long offset;
+
+        private QueueOffsetCommitter(MessageQueue messageQueue, long offset) {
+            this.messageQueue = messageQueue;
+            this.offset = offset;
+        }
+
+        @Override
+        public MessageQueue getMessageQueue() {
+            return messageQueue;
+        }
+
+        @Override
+        public void commit() {
+            offsetStore.updateOffset(messageQueue, offset, true);
+        }
+
+        @Override
+        public void commitSync() {
+            commit();
+            try {
+                offsetStore.updateConsumeOffsetToBroker(messageQueue,
+                    offsetStore.readOffset(messageQueue, ReadOffsetType.READ_FROM_MEMORY), false);
+            } catch (Exception e) {
+                throw new MessagingException("commit offset failed. messageQueue: " + messageQueue, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.cjie.spring.starter.rocketmq.core;
+
+import org.apache.rocketmq.common.message.Message;
+import org.apache.rocketmq.common.message.MessageExt;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * <p> The delay levels of the broker, formatted like its <code>messageDelayLevel</code> setting, e.g.
+ * <code>1s 5s 10s 30s 1m</code>. Level 1 is the first delay. </p>
+ *
+ * A message with a deliver time is sent with the highest level not exceeding its delay, and carries the deliver time
+ * in {@link #PROPERTY_DELIVER_TIME}, so the consumer waits for the rest, see {@link DeliverTimeScheduler}.
+ */
+public class DelayLevels {
+
+    /**
+     * Property of messages with a deliver time, epoch millis.
+     */
+    public static final String PROPERTY_DELIVER_TIME = "DELIVER_TIME";
+
+    /**
+     * Default <code>messageDelayLevel</code> of the broker.
+     */
+    public static final String DEFAULT_LEVELS = "1s 5s 10s 30s 1m 2m 3m 4m 5m 6m 7m 8m 9m 10m 20m 30m 1h 2h";
+
+    private static final DelayLevels DEFAULT = new DelayLevels(DEFAULT_LEVELS);
+
+    /**
+     * Delay millis by level - 1, ascending.
+     */
+    private final long[] delays;
+
+    /**
+     * @param levels delays separated by spaces, each a number followed by a unit of s, m, h or d
+     */
+    public DelayLevels(String levels) {
+        Assert.hasText(levels, "'levels' must not be empty");
+        String[] parts = StringUtils.tokenizeToStringArray(levels, " ");
+        this.delays = new long[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            delays[i] = parse(parts[i]);
+            Assert.isTrue(i == 0 || delays[i] > delays[i - 1], "delay levels must ascend: " + levels);
+        }
+    }
+
+    public static DelayLevels getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * @return the highest level whose delay is not longer than <code>delayMillis</code>, 0 when it is shorter than
+     * the first level
+     */
+    public int levelFor(long delayMillis) {
+        int index = Arrays.binarySearch(delays, delayMillis);
+        return index >= 0 ? index + 1 : -index - 1;
+    }
+
+    /**
+     * @return delay millis of a level, 0 for level 0
+     */
+    public long delayOf(int level) {
+        Assert.isTrue(level >= 0 && level <= delays.length, "no delay level " + level);
+        return level == 0 ? 0 : delays[level - 1];
+    }
+
+    /**
+     * Delay a message to be delivered at <code>deliverTime</code>, replacing its delay level.
+     */
+    public void apply(Message message, long deliverTime) {
+        long delay = deliverTime - System.currentTimeMillis();
+        if (delay <= 0) {
+            return;
+        }
+        message.setDelayTimeLevel(levelFor(delay));
+        message.putUserProperty(PROPERTY_DELIVER_TIME, String.valueOf(deliverTime));
+    }
+
+    /**
+     * @return deliver time of a message in epoch millis, 0 when it has none
+     */
+    public static long deliverTime(MessageExt messageExt) {
+        String deliverTime = messageExt.getUserProperty(PROPERTY_DELIVER_TIME);
+        if (Objects.isNull(deliverTime)) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(deliverTime);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static long parse(String delay) {
+        long value = Long.parseLong(delay.substring(0, delay.length() - 1));
+        switch (delay.charAt(delay.length() - 1)) {
+            case 's':
+                return value * 1000L;
+            case 'm':
+                return value * 60 * 1000L;
+            case 'h':
+                return value * 60 * 60 * 1000L;
+            case 'd':
+                return value * 24 * 60 * 60 * 1000L;
+            default:
+                throw new IllegalArgumentException("unknown unit of delay level " + delay);
+        }
+    }
+}
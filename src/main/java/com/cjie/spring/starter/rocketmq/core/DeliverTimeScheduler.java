@@ -0,0 +1,253 @@
+package com.cjie.spring.starter.rocketmq.core;
+
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import io.netty.util.TimerTask;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.rocketmq.client.producer.DefaultMQProducer;
+import org.apache.rocketmq.common.MixAll;
+import org.apache.rocketmq.common.ThreadFactoryImpl;
+import org.apache.rocketmq.common.UtilAll;
+import org.apache.rocketmq.common.message.Message;
+import org.apache.rocketmq.common.message.MessageAccessor;
+import org.apache.rocketmq.common.message.MessageConst;
+import org.apache.rocketmq.common.message.MessageExt;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * <p> Holds back messages of a listener container that arrive before their deliver time, see {@link DelayLevels}.
+ * </p>
+ *
+ * <p> When the rest of the delay spans a delay level and a relay producer is given, the message is sent to the retry
+ * topic of the consumer group again with the highest level not exceeding the rest, so the broker keeps it and only
+ * this group receives it again. The rest below the first level, or any rest without relay producer as in broadcasting
+ * mode, waits in a hashed timing wheel shared by all schedulers and started with the first held message. A held
+ * message costs one wheel entry, added and removed in constant time. </p>
+ *
+ * Messages held in the timer are acknowledged already. When the scheduler closes they are relayed at the level of
+ * their rest and consumed by the group once due, without relay producer they are dropped with an error log. Without
+ * relay producer a deliver time past the highest delay level is held in memory for the whole rest.
+ */
+@Slf4j
+public class DeliverTimeScheduler {
+
+    /**
+     * A message due within this many millis is consumed right away.
+     */
+    private static final long DUE_MARGIN_MILLIS = 10;
+
+    private static final long TICK_MILLIS = 10;
+
+    private static final int TICKS_PER_WHEEL = 512;
+
+    private static HashedWheelTimer sharedTimer;
+
+    private static int sharedTimerUsers;
+
+    private final String consumerGroup;
+
+    private final DelayLevels delayLevels;
+
+    private final DefaultMQProducer relayProducer;
+
+    private final Consumer<MessageExt> consumer;
+
+    private final Set<HeldMessage> held = ConcurrentHashMap.newKeySet();
+
+    private final AtomicInteger running = new AtomicInteger();
+
+    private HashedWheelTimer timer;
+
+    private volatile boolean closed;
+
+    /**
+     * @param consumerGroup group of the listener container
+     * @param delayLevels delay levels of the broker
+     * @param relayProducer started producer sending to the retry topic of the group, null holds every message in the
+     * timer
+     * @param consumer called on the timer thread once a message is due, hands the message off to be consumed
+     */
+    public DeliverTimeScheduler(String consumerGroup, DelayLevels delayLevels, DefaultMQProducer relayProducer,
+        Consumer<MessageExt> consumer) {
+        this.consumerGroup = consumerGroup;
+        this.delayLevels = delayLevels;
+        this.relayProducer = relayProducer;
+        this.consumer = consumer;
+    }
+
+    /**
+     * @return true when the message has no deliver time or it is due within a few millis
+     */
+    public boolean isDue(MessageExt messageExt) {
+        return DelayLevels.deliverTime(messageExt) - System.currentTimeMillis() < DUE_MARGIN_MILLIS;
+    }
+
+    /**
+     * Relay or hold a message that is not due, see {@link #isDue(MessageExt)}.
+     *
+     * @return false when the relay failed, the message is neither relayed nor held and must be retried
+     */
+    public boolean defer(MessageExt messageExt) {
+        long delay = DelayLevels.deliverTime(messageExt) - System.currentTimeMillis();
+        int level = delayLevels.levelFor(delay);
+        if (level > 0 && Objects.nonNull(relayProducer)) {
+            try {
+                relay(messageExt, level);
+                log.debug("relay msg: {} for {} ms with delay level {}", messageExt.getMsgId(), delay, level);
+                return true;
+            } catch (Exception e) {
+                log.warn("relay delayed message failed. msgId:{}", messageExt.getMsgId(), e);
+                return false;
+            }
+        }
+        postpone(messageExt, delay);
+        return true;
+    }
+
+    /**
+     * Hold a message in the timer for <code>delay</code> millis, e.g. a due message while its container is paused.
+     * Once the scheduler is closed the message is relayed right away.
+     */
+    public void postpone(MessageExt messageExt, long delay) {
+        synchronized (this) {
+            if (!closed) {
+                if (Objects.isNull(timer)) {
+                    this.timer = acquireTimer();
+                }
+                HeldMessage heldMessage = new HeldMessage(messageExt);
+                held.add(heldMessage);
+                heldMessage.timeout = timer.newTimeout(heldMessage, delay, TimeUnit.MILLISECONDS);
+                return;
+            }
+        }
+        relayRest(messageExt);
+    }
+
+    /**
+     * Relay the held messages at the level of their rest and release the timer. Returns once the relays are sent and
+     * no due message is being handed off any more, so the relay producer and the consumer can be shut down then.
+     */
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            this.closed = true;
+        }
+        while (running.get() > 0) {
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        List<HeldMessage> pending = new ArrayList<>(held);
+        if (!pending.isEmpty()) {
+            log.info("relay {} held messages on close, group:{}", pending.size(), consumerGroup);
+        }
+        for (HeldMessage heldMessage : pending) {
+            if (held.remove(heldMessage)) {
+                heldMessage.timeout.cancel();
+                relayRest(heldMessage.messageExt);
+            }
+        }
+        if (Objects.nonNull(timer)) {
+            releaseTimer();
+        }
+    }
+
+    /**
+     * Send a held message back to the broker for the rest of its delay, the group receives it again and holds what is
+     * left below the first level.
+     */
+    private void relayRest(MessageExt messageExt) {
+        if (Objects.isNull(relayProducer)) {
+            log.error("drop held message on close, no relay producer. group:{}, msgId:{}", consumerGroup,
+                messageExt.getMsgId());
+            return;
+        }
+        int level = delayLevels.levelFor(DelayLevels.deliverTime(messageExt) - System.currentTimeMillis());
+        try {
+            relay(messageExt, level);
+        } catch (Exception e) {
+            log.error("relay held message failed, message lost. group:{}, msgId:{}", consumerGroup,
+                messageExt.getMsgId(), e);
+        }
+    }
+
+    private void consume(MessageExt messageExt) {
+        try {
+            consumer.accept(messageExt);
+        } catch (Exception e) {
+            log.warn("consume held message failed. msgId:{}", messageExt.getMsgId(), e);
+        }
+    }
+
+    /**
+     * Send a copy to the retry topic like the client does when the broker cannot take a message back, keeping the
+     * properties so the copy has the msgId and keys of the original.
+     */
+    private void relay(MessageExt messageExt, int level) throws Exception {
+        Message message = new Message(MixAll.getRetryTopic(consumerGroup), messageExt.getBody());
+        message.setFlag(messageExt.getFlag());
+        MessageAccessor.setProperties(message, Objects.isNull(messageExt.getProperties()) ? new HashMap<>()
+            : new HashMap<>(messageExt.getProperties()));
+        String originMsgId = MessageAccessor.getOriginMessageId(messageExt);
+        MessageAccessor.setOriginMessageId(message, UtilAll.isBlank(originMsgId) ? messageExt.getMsgId()
+            : originMsgId);
+        MessageAccessor.putProperty(message, MessageConst.PROPERTY_RETRY_TOPIC, messageExt.getTopic());
+        message.setDelayTimeLevel(level);
+        relayProducer.send(message);
+    }
+
+    private static synchronized HashedWheelTimer acquireTimer() {
+        if (Objects.isNull(sharedTimer)) {
+            sharedTimer = new HashedWheelTimer(new ThreadFactoryImpl("RocketMQDeliverTimeThread_"), TICK_MILLIS,
+                TimeUnit.MILLISECONDS, TICKS_PER_WHEEL);
+        }
+        sharedTimerUsers++;
+        return sharedTimer;
+    }
+
+    private static synchronized void releaseTimer() {
+        if (--sharedTimerUsers == 0) {
+            sharedTimer.stop();
+            sharedTimer = null;
+        }
+    }
+
+    private final class HeldMessage implements TimerTask {
+
+        private final MessageExt messageExt;
+
+        private volatile Timeout timeout;
+
+        private HeldMessage(MessageExt messageExt) {
+            this.messageExt = messageExt;
+        }
+
+        @Override
+        public void run(Timeout expired) {
+            running.incrementAndGet();
+            try {
+                // once closed the message stays held and is relayed by close
+                if (!closed && held.remove(this)) {
+                    consume(messageExt);
+                }
+            } finally {
+                running.decrementAndGet();
+            }
+        }
+    }
+}
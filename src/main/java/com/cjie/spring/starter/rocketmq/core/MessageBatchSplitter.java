@@ -0,0 +1,83 @@
+package com.cjie.spring.starter.rocketmq.core;
+
+import org.apache.rocketmq.common.message.Message;
+import org.apache.rocketmq.common.message.MessageDecoder;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Groups messages by topic and splits every group into batches whose encoded
+ * {@link org.apache.rocketmq.common.message.MessageBatch} body stays under the producer's max message size.
+ */
+public final class MessageBatchSplitter {
+
+    /**
+     * Fixed fields written per message by {@link org.apache.rocketmq.common.message.MessageBatch#encode()}: total size, magic code, body crc, flag,
+     * body length and properties length.
+     */
+    private static final int MESSAGE_OVERHEAD = 4 + 4 + 4 + 4 + 4 + 2;
+
+    /**
+     * Room for the unique id property the client adds to every message of a batch before sending.
+     */
+    private static final int UNIQ_KEY_RESERVE = 64;
+
+    private MessageBatchSplitter() {
+    }
+
+    /**
+     * Split messages into batches of one topic each, keeping the original order inside a topic.
+     *
+     * @param messages messages to send
+     * @param maxBatchSize max encoded size in bytes of one batch, see {@link
+     * org.apache.rocketmq.client.producer.DefaultMQProducer#getMaxMessageSize()}
+     * @return batches in the order their topic first appeared
+     */
+    public static List<List<Message>> split(Collection<Message> messages, int maxBatchSize) {
+        Map<String, List<Message>> byTopic = new LinkedHashMap<>();
+        for (Message message : messages) {
+            if (message.getDelayTimeLevel() > 0) {
+                throw new IllegalArgumentException("delay message is not supported in batch, topic: " + message.getTopic());
+            }
+            byTopic.computeIfAbsent(message.getTopic(), topic -> new ArrayList<>()).add(message);
+        }
+
+        List<List<Message>> batches = new ArrayList<>();
+        for (List<Message> topicMessages : byTopic.values()) {
+            List<Message> batch = new ArrayList<>();
+            int batchSize = 0;
+            for (Message message : topicMessages) {
+                int size = encodedSize(message);
+                if (size > maxBatchSize) {
+                    throw new IllegalArgumentException("message size " + size + " exceeds max batch size "
+                        + maxBatchSize + ", topic: " + message.getTopic());
+                }
+                if (batchSize + size > maxBatchSize) {
+                    batches.add(batch);
+                    batch = new ArrayList<>();
+                    batchSize = 0;
+                }
+                batch.add(message);
+                batchSize += size;
+            }
+            if (!batch.isEmpty()) {
+                batches.add(batch);
+            }
+        }
+        return batches;
+    }
+
+    static int encodedSize(Message message) {
+        int bodyLength = message.getBody() == null ? 0 : message.getBody().length;
+        int propertiesLength = 0;
+        if (message.getProperties() != null) {
+            String properties = MessageDecoder.messageProperties2String(message.getProperties());
+            propertiesLength = properties.getBytes(MessageDecoder.CHARSET_UTF8).length;
+        }
+        return MESSAGE_OVERHEAD + bodyLength + propertiesLength + UNIQ_KEY_RESERVE;
+    }
+}
@@ -0,0 +1,25 @@
+package com.cjie.spring.starter.rocketmq.core;
+
+/**
+ * Shared record of consumed messages, consulted by {@link MessageDeduplicator} when its in-process cache does not
+ * know a message, for example after a restart or a rebalance moved the queue from another instance. Implementations
+ * must be thread-safe, they are called on the consume threads.
+ */
+public interface MessageDedupStore {
+
+    /**
+     * @param consumerGroup consumer group of the listener container
+     * @param key message id or key of the message
+     * @return whether a message with this key was consumed by the consumer group
+     */
+    boolean isConsumed(String consumerGroup, String key);
+
+    /**
+     * Record a consumed message.
+     *
+     * @param consumerGroup consumer group of the listener container
+     * @param key message id or key of the message
+     * @param windowMillis millis the record needs to be kept, duplicates arriving later are consumed again
+     */
+    void markConsumed(String consumerGroup, String key, long windowMillis);
+}
@@ -0,0 +1,162 @@
+package com.cjie.spring.starter.rocketmq.core;
+
+import com.cjie.spring.starter.rocketmq.enums.DedupKey;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.rocketmq.common.message.MessageExt;
+import org.springframework.util.Assert;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * <p> Drops messages of a listener container that were already consumed, keyed on the message id or key. </p>
+ *
+ * <p> An in-process cache remembers the keys consumed within the last <code>windowMillis</code>, at most
+ * <code>capacity</code> of them, the least recently consumed are evicted first. Keys of messages in flight are held
+ * too, so a duplicate arriving while the first delivery is consumed is dropped, and consumed again on its redelivery
+ * when the first delivery fails. </p>
+ *
+ * When the cache does not know a key, the optional {@link MessageDedupStore} is asked, so duplicates are also dropped
+ * after a restart or when another instance consumed the message before a rebalance.
+ */
+@Slf4j
+public class MessageDeduplicator {
+
+    private static final int SEGMENTS = 16;
+
+    /**
+     * Expiry of keys in flight, never expires before the message completes.
+     */
+    private static final long IN_FLIGHT = Long.MAX_VALUE;
+
+    private final String consumerGroup;
+
+    private final DedupKey dedupKey;
+
+    private final long windowMillis;
+
+    private final MessageDedupStore store;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+
+    /**
+     * @param consumerGroup consumer group of the listener container
+     * @param dedupKey what identifies a message, must not be {@link DedupKey#NONE}
+     * @param capacity max number of keys kept in process
+     * @param windowMillis millis a consumed key is remembered
+     * @param store optional shared record of consumed messages
+     */
+    public MessageDeduplicator(String consumerGroup, DedupKey dedupKey, int capacity, long windowMillis,
+        MessageDedupStore store) {
+        Assert.isTrue(dedupKey != DedupKey.NONE, "'dedupKey' must not be NONE");
+        Assert.isTrue(capacity > 0, "'capacity' must be positive");
+        Assert.isTrue(windowMillis > 0, "'windowMillis' must be positive");
+        this.consumerGroup = consumerGroup;
+        this.dedupKey = dedupKey;
+        this.windowMillis = windowMillis;
+        this.store = store;
+        int segmentCapacity = Math.max(1, capacity / SEGMENTS);
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(segmentCapacity);
+        }
+    }
+
+    /**
+     * Claim a message before consuming it.
+     *
+     * @return false when the message was already consumed or is in flight, and must be dropped
+     */
+    public boolean acquire(MessageExt messageExt) {
+        String key = key(messageExt);
+        if (!segment(key).acquire(key, System.currentTimeMillis())) {
+            return false;
+        }
+        if (Objects.nonNull(store) && isConsumedInStore(key)) {
+            segment(key).put(key, System.currentTimeMillis() + windowMillis);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Remember a claimed message as consumed.
+     */
+    public void consumed(MessageExt messageExt) {
+        String key = key(messageExt);
+        segment(key).put(key, System.currentTimeMillis() + windowMillis);
+        if (Objects.nonNull(store)) {
+            try {
+                store.markConsumed(consumerGroup, key, windowMillis);
+            } catch (Exception e) {
+                log.warn("mark message consumed in dedup store failed. key:{}", key, e);
+            }
+        }
+    }
+
+    /**
+     * Give up the claim of a message that failed, so its redelivery is consumed.
+     */
+    public void release(MessageExt messageExt) {
+        String key = key(messageExt);
+        segment(key).release(key);
+    }
+
+    private boolean isConsumedInStore(String key) {
+        try {
+            return store.isConsumed(consumerGroup, key);
+        } catch (Exception e) {
+            // a duplicate is better than a lost message
+            log.warn("query dedup store failed, consume the message. key:{}", key, e);
+            return false;
+        }
+    }
+
+    private String key(MessageExt messageExt) {
+        if (dedupKey == DedupKey.KEY && Objects.nonNull(messageExt.getKeys())) {
+            return messageExt.getKeys();
+        }
+        return messageExt.getMsgId();
+    }
+
+    private Segment segment(String key) {
+        int hash = key.hashCode();
+        return segments[((hash ^ (hash >>> 16)) & Integer.MAX_VALUE) % SEGMENTS];
+    }
+
+    private static final class Segment {
+
+        /**
+         * Expiry millis by key, in order of consumption.
+         */
+        private final LinkedHashMap<String, Long> expiries;
+
+        private Segment(int capacity) {
+            this.expiries = new LinkedHashMap<String, Long>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                    return size() > capacity;
+                }
+            };
+        }
+
+        private synchronized boolean acquire(String key, long now) {
+            Long expiry = expiries.get(key);
+            if (Objects.nonNull(expiry) && expiry > now) {
+                return false;
+            }
+            expiries.put(key, IN_FLIGHT);
+            return true;
+        }
+
+        private synchronized void put(String key, long expiry) {
+            expiries.put(key, expiry);
+        }
+
+        private synchronized void release(String key) {
+            if (Objects.equals(expiries.get(key), IN_FLIGHT)) {
+                expiries.remove(key);
+            }
+        }
+    }
+}
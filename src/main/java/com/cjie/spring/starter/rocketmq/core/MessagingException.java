@@ -2,7 +2,7 @@ package com.cjie.spring.starter.rocketmq.core;
 
 public class MessagingException extends RuntimeException {
 
-    public MessagingException(String message, Exception e) {
+    public MessagingException(String message, Throwable e) {
         super(message, e);
     }
 
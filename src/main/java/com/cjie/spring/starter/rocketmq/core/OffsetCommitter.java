@@ -0,0 +1,26 @@
+package com.cjie.spring.starter.rocketmq.core;
+
+import org.apache.rocketmq.common.message.MessageQueue;
+
+/**
+ * Commits the consume offset of one queue past a batch passed to {@link RocketMQPullListener}. Offsets only move
+ * forward, committing an older batch after a newer one has no effect.
+ */
+public interface OffsetCommitter {
+
+    /**
+     * @return queue the batch was pulled from
+     */
+    MessageQueue getMessageQueue();
+
+    /**
+     * Commit the offset after the batch. The client sends committed offsets to the broker periodically and on
+     * shutdown.
+     */
+    void commit();
+
+    /**
+     * Commit the offset after the batch and send it to the broker right away.
+     */
+    void commitSync();
+}
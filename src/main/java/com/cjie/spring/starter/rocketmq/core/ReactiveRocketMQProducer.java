@@ -0,0 +1,84 @@
+package com.cjie.spring.starter.rocketmq.core;
+
+import org.apache.rocketmq.client.producer.SendResult;
+import org.reactivestreams.Publisher;
+import org.springframework.util.Assert;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.function.Function;
+
+/**
+ * <p> Reactive facade of {@link RocketMQProducer} built on its asynchronous sends, no thread blocks on a send. </p>
+ *
+ * Streams of messages are sent with at most {@link #getMaxInFlight()} sends awaiting their result, the upstream is
+ * only requested more messages as sends complete. Send results are emitted in the order of the messages.
+ */
+public class ReactiveRocketMQProducer {
+
+    private static final int PREFETCH = 1;
+
+    private final RocketMQProducer producer;
+
+    private final int maxInFlight;
+
+    /**
+     * @param producer producer sending the messages
+     * @param maxInFlight max number of sends awaiting their result per stream of messages
+     */
+    public ReactiveRocketMQProducer(RocketMQProducer producer, int maxInFlight) {
+        Assert.notNull(producer, "'producer' is required");
+        Assert.isTrue(maxInFlight > 0, "'maxInFlight' must be positive");
+        this.producer = producer;
+        this.maxInFlight = maxInFlight;
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    /**
+     * Send a message when subscribed, see {@link RocketMQProducer#asyncSend(RocketMQMessage)}.
+     *
+     * @param message {@link RocketMQMessage}
+     * @return {@link SendResult} of the message
+     */
+    public Mono<SendResult> send(RocketMQMessage message) {
+        return Mono.defer(() -> Mono.fromFuture(producer.asyncSend(message)));
+    }
+
+    /**
+     * Send a message orderly when subscribed, see {@link RocketMQProducer#asyncSendOrderly(RocketMQMessage,
+     * String)}.
+     *
+     * @param message {@link RocketMQMessage}
+     * @param hashKey use this key to select queue. for example: orderId, productId ...
+     * @return {@link SendResult} of the message
+     */
+    public Mono<SendResult> sendOrderly(RocketMQMessage message, String hashKey) {
+        return Mono.defer(() -> Mono.fromFuture(producer.asyncSendOrderly(message, hashKey)));
+    }
+
+    /**
+     * Send every message of <code>messages</code>, the first failure terminates the returned flux and cancels the
+     * upstream.
+     *
+     * @param messages publisher of {@link RocketMQMessage}
+     * @return {@link SendResult} of every message, in message order
+     */
+    public Flux<SendResult> send(Publisher<RocketMQMessage> messages) {
+        return Flux.from(messages).flatMapSequential(this::send, maxInFlight, PREFETCH);
+    }
+
+    /**
+     * Same to {@link #send(Publisher)} with send orderly by the hash key of each message.
+     *
+     * @param messages publisher of {@link RocketMQMessage}
+     * @param hashKey function of the key selecting the queue of a message
+     * @return {@link SendResult} of every message, in message order
+     */
+    public Flux<SendResult> sendOrderly(Publisher<RocketMQMessage> messages, Function<RocketMQMessage, String> hashKey) {
+        return Flux.from(messages).flatMapSequential(message -> sendOrderly(message, hashKey.apply(message)),
+            maxInFlight, PREFETCH);
+    }
+}
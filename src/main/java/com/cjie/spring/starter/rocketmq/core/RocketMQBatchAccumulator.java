@@ -0,0 +1,220 @@
+package com.cjie.spring.starter.rocketmq.core;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.rocketmq.client.producer.DefaultMQProducer;
+import org.apache.rocketmq.client.producer.SendCallback;
+import org.apache.rocketmq.client.producer.SendResult;
+import org.apache.rocketmq.common.ThreadFactoryImpl;
+import org.apache.rocketmq.common.message.Message;
+import org.springframework.util.Assert;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p> Collects asynchronously sent messages per topic and sends them as one batch when either {@link #lingerMs}
+ * elapsed since the first message of the batch, or the batch reached {@link #batchSize} bytes. </p>
+ *
+ * Every message keeps its own {@link SendCallback}, which receives a {@link SendResult} carrying the id and queue
+ * offset of that message.
+ */
+@Slf4j
+public class RocketMQBatchAccumulator {
+
+    private final long lingerMs;
+
+    private final int batchSize;
+
+    private final Map<String, ProducerBatch> batches = new HashMap<>();
+
+    private DefaultMQProducer producer;
+
+    private Executor sendExecutor;
+
+    private ScheduledExecutorService lingerScheduler;
+
+    private int maxBatchSize;
+
+    private boolean closed;
+
+    /**
+     * @param lingerMs max millis a message waits for other messages of the same topic
+     * @param batchSize batch size in bytes that triggers a send without waiting for <code>lingerMs</code>
+     */
+    public RocketMQBatchAccumulator(long lingerMs, int batchSize) {
+        Assert.isTrue(lingerMs >= 0, "'lingerMs' must not be negative");
+        Assert.isTrue(batchSize > 0, "'batchSize' must be positive");
+        this.lingerMs = lingerMs;
+        this.batchSize = batchSize;
+    }
+
+    public synchronized void start(DefaultMQProducer producer, Executor sendExecutor) {
+        this.producer = producer;
+        this.sendExecutor = sendExecutor;
+        this.maxBatchSize = producer.getMaxMessageSize();
+        this.lingerScheduler = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryImpl("RocketMQBatchLingerThread_"));
+    }
+
+    /**
+     * Add a message to the batch of its topic.
+     *
+     * @param message message to send, must not be a delay message
+     * @param sendCallback executed when the batch holding the message completes
+     * @param timeout send timeout with millis, the shortest timeout of a batch is used for it
+     */
+    public void append(Message message, SendCallback sendCallback, long timeout) {
+        int size = MessageBatchSplitter.encodedSize(message);
+        ProducerBatch full = null;
+        ProducerBatch ready = null;
+
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("batch accumulator already closed");
+            }
+
+            String topic = message.getTopic();
+            ProducerBatch batch = batches.get(topic);
+            if (Objects.nonNull(batch) && batch.bytes + size > maxBatchSize) {
+                full = batches.remove(topic);
+                batch = null;
+            }
+            if (Objects.isNull(batch)) {
+                ProducerBatch created = new ProducerBatch();
+                batches.put(topic, created);
+                lingerScheduler.schedule(() -> expire(topic, created), lingerMs, TimeUnit.MILLISECONDS);
+                batch = created;
+            }
+
+            batch.add(message, sendCallback, size, timeout);
+            if (batch.bytes >= batchSize) {
+                ready = batches.remove(topic);
+            }
+        }
+
+        if (Objects.nonNull(full)) {
+            send(full);
+        }
+        if (Objects.nonNull(ready)) {
+            send(ready);
+        }
+    }
+
+    /**
+     * Send all pending batches and stop accepting messages.
+     */
+    public void close() {
+        List<ProducerBatch> pending;
+        synchronized (this) {
+            closed = true;
+            pending = new ArrayList<>(batches.values());
+            batches.clear();
+        }
+        pending.forEach(this::send);
+        if (Objects.nonNull(lingerScheduler)) {
+            lingerScheduler.shutdownNow();
+        }
+    }
+
+    private void expire(String topic, ProducerBatch batch) {
+        synchronized (this) {
+            // the batch may already be sent because it was full
+            if (batches.get(topic) != batch) {
+                return;
+            }
+            batches.remove(topic);
+        }
+        send(batch);
+    }
+
+    private void send(ProducerBatch batch) {
+        try {
+            sendExecutor.execute(() -> doSend(batch));
+        } catch (Exception e) {
+            log.warn("submit batch failed, size:{}", batch.messages.size(), e);
+            batch.sendCallbacks.forEach(sendCallback -> onException(sendCallback, e));
+        }
+    }
+
+    private void doSend(ProducerBatch batch) {
+        if (batch.messages.size() == 1) {
+            try {
+                producer.send(batch.messages.get(0), batch.sendCallbacks.get(0), batch.timeout);
+            } catch (Exception e) {
+                onException(batch.sendCallbacks.get(0), e);
+            }
+            return;
+        }
+
+        SendResult sendResult;
+        try {
+            long now = System.currentTimeMillis();
+            sendResult = producer.send(batch.messages, batch.timeout);
+            long costTime = System.currentTimeMillis() - now;
+            log.debug("send accumulated batch of {} messages cost: {} ms", batch.messages.size(), costTime);
+        } catch (Exception e) {
+            log.info("send accumulated batch failed, topic:{}, size:{}", batch.messages.get(0).getTopic(),
+                batch.messages.size());
+            batch.sendCallbacks.forEach(sendCallback -> onException(sendCallback, e));
+            return;
+        }
+
+        String[] msgIds = split(sendResult.getMsgId(), batch.messages.size());
+        String[] offsetMsgIds = split(sendResult.getOffsetMsgId(), batch.messages.size());
+        for (int i = 0; i < batch.sendCallbacks.size(); i++) {
+            SendResult messageResult = new SendResult(sendResult.getSendStatus(), msgIds[i], offsetMsgIds[i],
+                sendResult.getMessageQueue(), sendResult.getQueueOffset() + i);
+            try {
+                batch.sendCallbacks.get(i).onSuccess(messageResult);
+            } catch (Exception e) {
+                log.warn("execute send callback failed", e);
+            }
+        }
+    }
+
+    /**
+     * The broker returns the ids of a batch joined by comma.
+     */
+    private static String[] split(String ids, int size) {
+        String[] parts = Objects.isNull(ids) ? new String[0] : ids.split(",");
+        if (parts.length == size) {
+            return parts;
+        }
+        String[] result = new String[size];
+        System.arraycopy(parts, 0, result, 0, Math.min(parts.length, size));
+        return result;
+    }
+
+    private static void onException(SendCallback sendCallback, Throwable e) {
+        try {
+            sendCallback.onException(e);
+        } catch (Exception ex) {
+            log.warn("execute send callback failed", ex);
+        }
+    }
+
+    private static class ProducerBatch {
+
+        private final List<Message> messages = new ArrayList<>();
+
+        private final List<SendCallback> sendCallbacks = new ArrayList<>();
+
+        private int bytes;
+
+        private long timeout = Long.MAX_VALUE;
+
+        private void add(Message message, SendCallback sendCallback, int size, long timeout) {
+            messages.add(message);
+            sendCallbacks.add(sendCallback);
+            this.bytes += size;
+            this.timeout = Math.min(this.timeout, timeout);
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.cjie.spring.starter.rocketmq.core;
+
+import java.util.List;
+
+/**
+ * Receives the messages pulled in one consume call as a single list. The list size is bounded by
+ * {@link com.cjie.spring.starter.rocketmq.annotation.RocketMQMessageListener#consumeMessageBatchMaxSize()}.
+ */
+public interface RocketMQBatchListener<T> {
+    void onMessage(List<T> messages);
+}
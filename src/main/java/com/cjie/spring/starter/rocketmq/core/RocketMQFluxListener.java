@@ -0,0 +1,15 @@
+package com.cjie.spring.starter.rocketmq.core;
+
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+
+/**
+ * <p> Receives the messages of a topic as a {@link Flux}. The container calls {@link #onMessages(Flux)} once on start
+ * and subscribes to the returned publisher, demand of that subscription drives how fast messages are pulled. </p>
+ *
+ * A message is acknowledged once it was emitted to the flux. The flux supports a single subscriber, an error or
+ * cancel of the subscription stops the delivery until the container is restarted.
+ */
+public interface RocketMQFluxListener<T> {
+    Publisher<?> onMessages(Flux<T> messages);
+}
@@ -0,0 +1,92 @@
+package com.cjie.spring.starter.rocketmq.core;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+
+import java.util.Objects;
+
+/**
+ * <p> Adapts a {@link RocketMQFluxListener} to the blocking {@link RocketMQListener} the container dispatches to. </p>
+ *
+ * {@link #onMessage(Object)} blocks the consume thread until the subscriber requested a message, so without demand
+ * the cached messages of a queue reach the consumer's pull threshold and pulling pauses.
+ */
+@Slf4j
+public class RocketMQFluxListenerAdapter implements RocketMQListener<Object>, DisposableBean {
+
+    private final Object lock = new Object();
+
+    private final Disposable subscription;
+
+    private FluxSink<Object> sink;
+
+    private long requested;
+
+    private boolean terminated;
+
+    @SuppressWarnings("unchecked")
+    public RocketMQFluxListenerAdapter(RocketMQFluxListener<?> listener) {
+        Flux<Object> messages = Flux.create(this::bind);
+        this.subscription = Flux.from(((RocketMQFluxListener<Object>) listener).onMessages(messages)).subscribe(
+            result -> { },
+            e -> log.error("flux listener terminated with error, delivery stopped", e),
+            () -> log.warn("flux listener completed, delivery stopped"));
+    }
+
+    private void bind(FluxSink<Object> sink) {
+        synchronized (lock) {
+            if (Objects.nonNull(this.sink)) {
+                sink.error(new IllegalStateException("flux of messages supports a single subscriber"));
+                return;
+            }
+            this.sink = sink;
+        }
+        sink.onRequest(this::request);
+        sink.onDispose(this::terminate);
+    }
+
+    private void request(long n) {
+        synchronized (lock) {
+            requested = requested + n < 0 ? Long.MAX_VALUE : requested + n;
+            lock.notifyAll();
+        }
+    }
+
+    private void terminate() {
+        synchronized (lock) {
+            terminated = true;
+            lock.notifyAll();
+        }
+    }
+
+    @Override
+    public void onMessage(Object message) {
+        synchronized (lock) {
+            while (requested == 0 && !terminated) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("interrupted while waiting for demand", e);
+                }
+            }
+            if (terminated || Objects.isNull(sink)) {
+                throw new IllegalStateException("flux of messages is not subscribed");
+            }
+            if (requested != Long.MAX_VALUE) {
+                requested--;
+            }
+        }
+        // FluxSink serializes concurrent emissions
+        sink.next(message);
+    }
+
+    @Override
+    public void destroy() {
+        subscription.dispose();
+        terminate();
+    }
+}
@@ -11,4 +11,14 @@ public interface RocketMQListenerContainer extends DisposableBean {
      * not supported.
      */
     void setupMessageListener(RocketMQListener<?> messageListener);
+
+    /**
+     * Stop pulling messages without leaving the consumer group, messages already pulled are still consumed.
+     */
+    void pause();
+
+    /**
+     * Continue pulling messages after {@link #pause()}.
+     */
+    void resume();
 }
@@ -0,0 +1,159 @@
+package com.cjie.spring.starter.rocketmq.core;
+
+import com.cjie.spring.starter.rocketmq.enums.StartupMode;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.rocketmq.common.ThreadFactoryImpl;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.util.Assert;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p> Starts listener containers in parallel instead of one by one during context refresh, either in the last
+ * lifecycle phase or once the application is ready, see {@link StartupMode}. </p>
+ *
+ * Starting a container looks up the name server and joins the rebalance, so with many listeners parallel starts
+ * shorten application startup considerably. The startup millis of every container are logged and kept in
+ * {@link #getStartupTimes()}.
+ */
+@Slf4j
+public class RocketMQListenerContainerStarter implements SmartLifecycle, ApplicationListener<ApplicationReadyEvent> {
+
+    private final Map<String, SmartLifecycle> containers;
+
+    private final StartupMode startupMode;
+
+    private final int parallelism;
+
+    private final Map<String, Long> startupTimes = Collections.synchronizedMap(new LinkedHashMap<>());
+
+    private volatile boolean running;
+
+    private boolean containersStarted;
+
+    /**
+     * @param containers containers by bean name, not started yet
+     * @param startupMode when to start the containers, {@link StartupMode#EAGER} containers were started on
+     * registration and are not passed here
+     * @param parallelism max number of containers starting at the same time
+     */
+    public RocketMQListenerContainerStarter(Map<String, ? extends SmartLifecycle> containers,
+        StartupMode startupMode, int parallelism) {
+        Assert.isTrue(parallelism > 0, "'parallelism' must be positive");
+        this.containers = new LinkedHashMap<>(containers);
+        this.startupMode = startupMode;
+        this.parallelism = parallelism;
+    }
+
+    @Override
+    public void start() {
+        if (startupMode == StartupMode.LIFECYCLE) {
+            startContainers();
+        }
+    }
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        if (startupMode == StartupMode.READY) {
+            startContainers();
+        }
+    }
+
+    private synchronized void startContainers() {
+        running = true;
+        // a restarted context resumes the containers through their own lifecycle
+        if (containersStarted || containers.isEmpty()) {
+            return;
+        }
+        containersStarted = true;
+
+        long now = System.nanoTime();
+        ExecutorService startExecutor = Executors.newFixedThreadPool(Math.min(parallelism, containers.size()),
+            new ThreadFactoryImpl("RocketMQContainerStartThread_"));
+        try {
+            List<CompletableFuture<Void>> futures = new ArrayList<>(containers.size());
+            containers.forEach((beanName, container) ->
+                futures.add(CompletableFuture.runAsync(() -> startContainer(beanName, container), startExecutor)));
+
+            RuntimeException failure = null;
+            for (CompletableFuture<Void> future : futures) {
+                try {
+                    future.join();
+                } catch (CompletionException e) {
+                    if (failure == null) {
+                        failure = new IllegalStateException("start listener containers failed", e.getCause());
+                    } else {
+                        failure.addSuppressed(e.getCause());
+                    }
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        } finally {
+            startExecutor.shutdown();
+        }
+        log.info("started {} listener containers in {} ms, parallelism: {}", containers.size(),
+            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - now), parallelism);
+    }
+
+    private void startContainer(String beanName, SmartLifecycle container) {
+        long now = System.nanoTime();
+        try {
+            container.start();
+        } catch (Exception e) {
+            log.error("started container failed. {}", container, e);
+            throw new CompletionException(e);
+        }
+        long costTime = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - now);
+        startupTimes.put(beanName, costTime);
+        log.info("started container {} in {} ms", beanName, costTime);
+    }
+
+    /**
+     * @return startup millis of every started container by bean name
+     */
+    public Map<String, Long> getStartupTimes() {
+        synchronized (startupTimes) {
+            return new LinkedHashMap<>(startupTimes);
+        }
+    }
+
+    @Override
+    public void stop() {
+        // the containers shut down with their beans
+        running = false;
+    }
+
+    @Override
+    public void stop(Runnable callback) {
+        stop();
+        callback.run();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public boolean isAutoStartup() {
+        return true;
+    }
+
+    @Override
+    public int getPhase() {
+        return Integer.MAX_VALUE;
+    }
+}
@@ -2,22 +2,43 @@ package com.cjie.spring.starter.rocketmq.core;
 
 
 
-import com.alibaba.fastjson.JSON;
+import com.cjie.spring.starter.rocketmq.codec.JsonMessageCodec;
+import com.cjie.spring.starter.rocketmq.codec.MessageCodec;
+import lombok.AccessLevel;
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
 import org.apache.rocketmq.common.message.Message;
 import org.apache.rocketmq.common.message.MessageExt;
 
 import java.io.IOException;
 import java.io.Serializable;
-import java.nio.charset.Charset;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Created by 123 on 2016/5/31.
  */
 @Data
-@Builder
+@EqualsAndHashCode(exclude = "encodedBody")
+@ToString(exclude = "encodedBody")
 public final class RocketMQMessage<T extends Serializable> {
+    private static final MessageCodec DEFAULT_CODEC = new JsonMessageCodec();
+
+    /**
+     * Body types that cannot change after they were encoded.
+     */
+    private static final Set<Class<?>> IMMUTABLE_BODY_TYPES = new HashSet<>(Arrays.asList(String.class,
+        Boolean.class, Character.class, Byte.class, Short.class, Integer.class, Long.class, Float.class, Double.class,
+        BigInteger.class, BigDecimal.class));
+
     private String topic;//最大长度 64
     private String tags;
     private T body;
@@ -27,14 +48,123 @@ public final class RocketMQMessage<T extends Serializable> {
     private int delayLevel;//延迟级别
     private MessageExt ext;
 
+    /**
+     * Epoch millis to deliver the message at, 0 for none, takes precedence over {@link #delayLevel}. The message is
+     * sent with the highest delay level not exceeding the delay, and the consumer waits for the rest, see {@link
+     * DelayLevels}. Consumers in broadcasting mode cannot send the message back to wait on the broker, they hold it in
+     * memory for the whole rest past the highest delay level and consume it early when they stop, so keep deliver
+     * times to broadcasting consumers within the delay levels.
+     */
+    private long deliverTime;
+
+    /**
+     * Optional, whether the body is never mutated after the first send, so later sends of the message reuse its
+     * encoded bytes. Bodies of immutable types such as {@link String} are always reused.
+     */
+    private boolean immutableBody;
+
+    /**
+     * Body encoded by the last send, reused while the body and the codec stay the same and the body is immutable.
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private volatile EncodedBody encodedBody;
+
+    @Builder
+    private RocketMQMessage(String topic, String tags, T body, String key, String messageId, String consumeGroup,
+        int delayLevel, MessageExt ext, long deliverTime, boolean immutableBody) {
+        this.topic = topic;
+        this.tags = tags;
+        this.body = body;
+        this.key = key;
+        this.messageId = messageId;
+        this.consumeGroup = consumeGroup;
+        this.delayLevel = delayLevel;
+        this.ext = ext;
+        this.deliverTime = deliverTime;
+        this.immutableBody = immutableBody;
+    }
+
+    /**
+     * Deliver the message after <code>delay</code>, same to a {@link #deliverTime} of now plus <code>delay</code>.
+     */
+    public void setDelay(long delay, TimeUnit unit) {
+        this.deliverTime = System.currentTimeMillis() + unit.toMillis(delay);
+    }
+
+    public void setBody(T body) {
+        this.body = body;
+        this.encodedBody = null;
+    }
+
+    public void setImmutableBody(boolean immutableBody) {
+        this.immutableBody = immutableBody;
+        this.encodedBody = null;
+    }
 
     protected Message covertMq() throws IOException {
+        return covertMq(DEFAULT_CODEC);
+    }
+
+    protected Message covertMq(MessageCodec codec) throws IOException {
+        return covertMq(codec, DelayLevels.getDefault());
+    }
+
+    protected Message covertMq(MessageCodec codec, DelayLevels delayLevels) throws IOException {
         Message message = new Message();
-        message.setBody(JSON.toJSONString(body).getBytes(Charset.forName("utf-8")));
+        message.setBody(encode(codec));
         message.setTopic(topic);
         message.setTags(tags);
         message.setKeys(key);
         message.setDelayTimeLevel(delayLevel);
+        if (deliverTime > 0) {
+            delayLevels.apply(message, deliverTime);
+        }
         return message;
     }
+
+    /**
+     * The client never writes into a message body, so sends of the same message to several topics or retries of it
+     * share the bytes. A mutable body is encoded on every send, the same object may hold other fields by then.
+     */
+    private byte[] encode(MessageCodec codec) {
+        EncodedBody encoded = encodedBody;
+        if (encoded != null && encoded.payload == body && encoded.codec == codec) {
+            return encoded.bytes;
+        }
+        byte[] bytes = codec.encode(body);
+        if (isBodyImmutable()) {
+            encodedBody = new EncodedBody(body, codec, bytes);
+        }
+        return bytes;
+    }
+
+    private boolean isBodyImmutable() {
+        return immutableBody || body instanceof Enum || (body != null && IMMUTABLE_BODY_TYPES.contains(body.getClass()));
+    }
+
+    public static class RocketMQMessageBuilder<T extends Serializable> {
+
+        /**
+         * Deliver the message after <code>delay</code>, same to a deliver time of now plus <code>delay</code>.
+         */
+        public RocketMQMessageBuilder<T> delay(long delay, TimeUnit unit) {
+            return deliverTime(System.currentTimeMillis() + unit.toMillis(delay));
+        }
+    }
+
+    private static final class EncodedBody {
+
+        private final Object payload;
+
+        private final MessageCodec codec;
+
+        private final byte[] bytes;
+
+        private EncodedBody(Object payload, MessageCodec codec, byte[] bytes) {
+            this.payload = payload;
+            this.codec = codec;
+            this.bytes = bytes;
+        }
+    }
 }
@@ -0,0 +1,61 @@
+package com.cjie.spring.starter.rocketmq.core;
+
+import com.cjie.spring.starter.rocketmq.enums.ConsumeResult;
+import com.cjie.spring.starter.rocketmq.enums.SendMode;
+
+/**
+ * Receives timings of {@link RocketMQProducer} sends and listener container consumes. Implementations must be
+ * thread-safe and cheap, they are called on the send and consume paths.
+ */
+public interface RocketMQMetrics {
+
+    RocketMQMetrics NOOP = new RocketMQMetrics() {
+    };
+
+    /**
+     * A send completed.
+     *
+     * @param topic topic of the messages
+     * @param mode send mode
+     * @param messages number of messages sent together, larger than 1 for batch sends
+     * @param costNanos nanos from calling the producer to completion, 0 for one-way sends which are not timed
+     * @param success whether the broker accepted the messages
+     */
+    default void sent(String topic, SendMode mode, int messages, long costNanos, boolean success) {
+    }
+
+    /**
+     * A send of a producer pool completed, defaults to {@link #sent(String, SendMode, int, long, boolean)}.
+     *
+     * @param instance index of the producer in the pool of {@link RocketMQProducer}
+     * @param topic topic of the messages
+     * @param mode send mode
+     * @param messages number of messages sent together, larger than 1 for batch sends
+     * @param costNanos nanos from calling the producer to completion, 0 for one-way sends which are not timed
+     * @param success whether the broker accepted the messages
+     */
+    default void sent(String instance, String topic, SendMode mode, int messages, long costNanos, boolean success) {
+        sent(topic, mode, messages, costNanos, success);
+    }
+
+    /**
+     * A message went through the {@link RocketMQSpillover} journal.
+     *
+     * @param topic topic of the message
+     * @param replayed false when the message was written to the journal, true when the drainer sent it
+     */
+    default void spilled(String topic, boolean replayed) {
+    }
+
+    /**
+     * A listener invocation completed.
+     *
+     * @param consumerGroup consumer group of the container
+     * @param topic subscribed topic
+     * @param messages number of messages passed to the listener
+     * @param costNanos nanos spent converting and in the listener
+     * @param result what happens to the messages
+     */
+    default void consumed(String consumerGroup, String topic, int messages, long costNanos, ConsumeResult result) {
+    }
+}
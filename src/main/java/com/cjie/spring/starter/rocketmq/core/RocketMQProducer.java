@@ -2,29 +2,107 @@
 package com.cjie.spring.starter.rocketmq.core;
 
 import com.alibaba.fastjson.JSON;
+import com.cjie.spring.starter.rocketmq.codec.JsonMessageCodec;
+import com.cjie.spring.starter.rocketmq.codec.MessageCodec;
+import com.cjie.spring.starter.rocketmq.enums.ProducerRouting;
+import com.cjie.spring.starter.rocketmq.enums.SendMode;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.Getter;
+import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.rocketmq.client.producer.DefaultMQProducer;
 import org.apache.rocketmq.client.producer.MessageQueueSelector;
 import org.apache.rocketmq.client.producer.SendCallback;
 import org.apache.rocketmq.client.producer.SendResult;
 import org.apache.rocketmq.client.producer.selector.SelectMessageQueueByHash;
+import org.apache.rocketmq.common.ThreadFactoryImpl;
+import org.apache.rocketmq.common.UtilAll;
+import org.apache.rocketmq.common.message.MessageClientIDSetter;
+import org.apache.rocketmq.common.message.MessageExt;
 import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.util.Assert;
 
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Data
 @Slf4j
 public class RocketMQProducer implements InitializingBean, DisposableBean {
 
+    private static final String DEFAULT_INSTANCE_NAME = "DEFAULT";
+
     private DefaultMQProducer producer;
 
     private String charset = "UTF-8";
 
     private MessageQueueSelector messageQueueSelector = new SelectMessageQueueByHash();
 
+    private MessageCodec messageCodec = new JsonMessageCodec();
+
+    /**
+     * Runs the sends of {@link #asyncSendBatch(Collection, SendCallback)} and of the {@link #batchAccumulator}, shut
+     * down together with this producer.
+     */
+    private ExecutorService batchSendExecutor;
+
+    /**
+     * Optional, when set {@link #asyncSend(RocketMQMessage, SendCallback, long)} collects non-delay messages into
+     * batches instead of sending them one by one.
+     */
+    private RocketMQBatchAccumulator batchAccumulator;
+
+    private RocketMQMetrics metrics = RocketMQMetrics.NOOP;
+
+    /**
+     * Delay levels of the brokers, messages with a deliver time are sent with the highest level not exceeding their
+     * delay.
+     */
+    private DelayLevels delayLevels = DelayLevels.getDefault();
+
+    /**
+     * Number of producer instances sends are spread over, each with its own client instance. {@link #producer} is the
+     * first, the others copy its settings.
+     */
+    private int poolSize = 1;
+
+    /**
+     * How sends without a hash key pick a producer of the pool, orderly sends always go by their hash key.
+     */
+    private ProducerRouting routing = ProducerRouting.ROUND_ROBIN;
+
+    /**
+     * Optional, when set messages that failed to send because the broker is unreachable are written to its journal
+     * and sent later, and while the broker of a topic is down sends to the topic go to the journal right away. Orderly and batch sends are
+     * never spilled, a spilled message loses its place in the queue order.
+     */
+    private RocketMQSpillover spillover;
+
+    /**
+     * Optional, receives the replies to {@link #sendAndReceive(RocketMQMessage, long)}, started and closed together
+     * with this producer.
+     */
+    private RocketMQReplyConsumer replyConsumer;
+
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private List<PooledProducer> producers;
+
+    @Getter(AccessLevel.NONE)
+    private final AtomicInteger roundRobin = new AtomicInteger();
+
     /**
      * <p> Send message in synchronous mode. This method returns only when the sending procedure totally completes.
      * Reliable synchronous transmission is used in extensive scenes, such as important notification messages, SMS
@@ -35,6 +113,9 @@ public class RocketMQProducer implements InitializingBean, DisposableBean {
      * messages may potentially delivered to broker(s). It's up to the application developers to resolve potential
      * duplication issue.
      *
+     * When a {@link RocketMQSpillover} is configured and the broker is unreachable, the message is written to its
+     * journal and a {@link SpilledSendResult} is returned.
+     *
      * @param message {@link RocketMQMessage}
      * @return {@link SendResult}
      */
@@ -55,14 +136,31 @@ public class RocketMQProducer implements InitializingBean, DisposableBean {
             throw new IllegalArgumentException("`message` and `message.payload` cannot be null");
         }
 
+        org.apache.rocketmq.common.message.Message rocketMsg;
         try {
-            long now = System.currentTimeMillis();
-            org.apache.rocketmq.common.message.Message rocketMsg = message.covertMq();
-            SendResult sendResult = producer.send(rocketMsg, timeout);
-            long costTime = System.currentTimeMillis() - now;
-            log.debug("send message cost: {} ms, msgId:{}", costTime, sendResult.getMsgId());
+            rocketMsg = message.covertMq(messageCodec, delayLevels);
+        } catch (Exception e) {
+            log.info("syncSend failed, message:{} ", message);
+            throw new MessagingException(e.getMessage(), e);
+        }
+        if (Objects.nonNull(spillover) && spillover.isBrokerDown(rocketMsg.getTopic())) {
+            return spillover.spill(rocketMsg);
+        }
+
+        PooledProducer sender = route(message);
+        long now = System.nanoTime();
+        try {
+            SendResult sendResult = sender.producer.send(rocketMsg, timeout);
+            long costTime = System.nanoTime() - now;
+            metrics.sent(sender.instance, message.getTopic(), SendMode.SYNC, 1, costTime, true);
+            log.debug("send message cost: {} ms, msgId:{}", TimeUnit.NANOSECONDS.toMillis(costTime), sendResult.getMsgId());
             return sendResult;
         } catch (Exception e) {
+            metrics.sent(sender.instance, message.getTopic(), SendMode.SYNC, 1, System.nanoTime() - now, false);
+            if (Objects.nonNull(spillover) && RocketMQSpillover.isTransient(e)) {
+                log.info("syncSend failed, spill message:{} ", message);
+                return spillover.spill(rocketMsg);
+            }
             log.info("syncSend failed, message:{} ", message);
             throw new MessagingException(e.getMessage(), e);
         }
@@ -94,14 +192,17 @@ public class RocketMQProducer implements InitializingBean, DisposableBean {
             throw new IllegalArgumentException("`message` and `message.payload` cannot be null");
         }
 
+        PooledProducer sender = route(hashKey);
+        long now = System.nanoTime();
         try {
-            long now = System.currentTimeMillis();
-            org.apache.rocketmq.common.message.Message rocketMsg = message.covertMq();
-            SendResult sendResult = producer.send(rocketMsg, messageQueueSelector, hashKey, timeout);
-            long costTime = System.currentTimeMillis() - now;
-            log.debug("send message cost: {} ms, msgId:{}", costTime, sendResult.getMsgId());
+            org.apache.rocketmq.common.message.Message rocketMsg = message.covertMq(messageCodec, delayLevels);
+            SendResult sendResult = sender.producer.send(rocketMsg, messageQueueSelector, hashKey, timeout);
+            long costTime = System.nanoTime() - now;
+            metrics.sent(sender.instance, message.getTopic(), SendMode.SYNC, 1, costTime, true);
+            log.debug("send message cost: {} ms, msgId:{}", TimeUnit.NANOSECONDS.toMillis(costTime), sendResult.getMsgId());
             return sendResult;
         } catch (Exception e) {
+            metrics.sent(sender.instance, message.getTopic(), SendMode.SYNC, 1, System.nanoTime() - now, false);
             log.info("syncSendOrderly failed. message:{} ", message);
             throw new MessagingException(e.getMessage(), e);
         }
@@ -122,10 +223,34 @@ public class RocketMQProducer implements InitializingBean, DisposableBean {
             throw new IllegalArgumentException("`message` and `message.payload` cannot be null");
         }
 
+        org.apache.rocketmq.common.message.Message rocketMsg;
+        try {
+            rocketMsg = message.covertMq(messageCodec, delayLevels);
+        } catch (Exception e) {
+            log.info("asyncSend failed. message:{} ", message);
+            throw new MessagingException(e.getMessage(), e);
+        }
+        if (Objects.nonNull(spillover) && spillover.isBrokerDown(rocketMsg.getTopic())) {
+            spill(rocketMsg, sendCallback);
+            return;
+        }
+
+        SendCallback callback = spilling(rocketMsg, sendCallback);
         try {
-            org.apache.rocketmq.common.message.Message rocketMsg = message.covertMq();
-            producer.send(rocketMsg, sendCallback, timeout);
+            if (Objects.nonNull(batchAccumulator) && rocketMsg.getDelayTimeLevel() <= 0) {
+                // the accumulator sends through the first producer of the pool
+                batchAccumulator.append(rocketMsg, timed(producers.get(0).instance, message.getTopic(), callback),
+                    timeout);
+            } else {
+                PooledProducer sender = route(message);
+                sender.producer.send(rocketMsg, timed(sender.instance, message.getTopic(), callback), timeout);
+            }
         } catch (Exception e) {
+            if (Objects.nonNull(spillover) && RocketMQSpillover.isTransient(e)) {
+                log.info("asyncSend failed, spill message:{} ", message);
+                spill(rocketMsg, sendCallback);
+                return;
+            }
             log.info("asyncSend failed. message:{} ", message);
             throw new MessagingException(e.getMessage(), e);
         }
@@ -141,6 +266,10 @@ public class RocketMQProducer implements InitializingBean, DisposableBean {
      * DefaultMQProducer#getRetryTimesWhenSendAsyncFailed} times before claiming sending failure, which may yield
      * message duplication and application developers are the one to resolve this potential issue.
      *
+     * When a {@link RocketMQBatchAccumulator} is configured, the message may wait up to its linger time to be sent
+     * in one batch with other messages of the same topic. When a {@link RocketMQSpillover} is configured and the
+     * broker is unreachable, <code>sendCallback</code> receives a {@link SpilledSendResult}.
+     *
      * @param message {@link RocketMQMessage}
      * @param sendCallback {@link SendCallback}
      */
@@ -168,8 +297,10 @@ public class RocketMQProducer implements InitializingBean, DisposableBean {
         }
 
         try {
-            org.apache.rocketmq.common.message.Message rocketMsg = message.covertMq();
-            producer.send(rocketMsg, messageQueueSelector, hashKey, sendCallback, timeout);
+            org.apache.rocketmq.common.message.Message rocketMsg = message.covertMq(messageCodec, delayLevels);
+            PooledProducer sender = route(hashKey);
+            sender.producer.send(rocketMsg, messageQueueSelector, hashKey,
+                timed(sender.instance, message.getTopic(), sendCallback), timeout);
         } catch (Exception e) {
             log.info("asyncSendOrderly failed, message:{} ", message);
             throw new MessagingException(e.getMessage(), e);
@@ -187,10 +318,265 @@ public class RocketMQProducer implements InitializingBean, DisposableBean {
         asyncSendOrderly(message, hashKey, sendCallback, producer.getSendMsgTimeout());
     }
 
+    /**
+     * <p> Same to {@link #asyncSend(RocketMQMessage, SendCallback)}, but returns a {@link CompletableFuture} completed
+     * with the {@link SendResult} instead of executing a callback. </p>
+     *
+     * The future is completed on the client's callback thread, so dependent stages should not block. Send failures,
+     * including those raised before the message left the client, complete the future exceptionally, while invalid
+     * arguments are still thrown.
+     *
+     * @param message {@link RocketMQMessage}
+     * @return future of the {@link SendResult}
+     */
+    public CompletableFuture<SendResult> asyncSend(RocketMQMessage message) {
+        return asyncSend(message, producer.getSendMsgTimeout(), null);
+    }
+
+    /**
+     * Same to {@link #asyncSend(RocketMQMessage)} with send timeout specified in addition.
+     *
+     * @param message {@link RocketMQMessage}
+     * @param timeout send timeout with millis
+     * @return future of the {@link SendResult}
+     */
+    public CompletableFuture<SendResult> asyncSend(RocketMQMessage message, long timeout) {
+        return asyncSend(message, timeout, null);
+    }
+
+    /**
+     * Same to {@link #asyncSend(RocketMQMessage, long)}, the future is completed on <code>executor</code>.
+     *
+     * @param message {@link RocketMQMessage}
+     * @param timeout send timeout with millis
+     * @param executor executor completing the future and running its non-async dependent stages, <code>null</code>
+     * completes on the client's callback thread
+     * @return future of the {@link SendResult}
+     */
+    public CompletableFuture<SendResult> asyncSend(RocketMQMessage message, long timeout, Executor executor) {
+        CompletableFuture<SendResult> future = new CompletableFuture<>();
+        try {
+            asyncSend(message, completing(future, executor), timeout);
+        } catch (MessagingException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * Same to {@link #asyncSendOrderly(RocketMQMessage, String, SendCallback)}, but returns a {@link
+     * CompletableFuture} like {@link #asyncSend(RocketMQMessage)}.
+     *
+     * @param message {@link RocketMQMessage}
+     * @param hashKey use this key to select queue. for example: orderId, productId ...
+     * @return future of the {@link SendResult}
+     */
+    public CompletableFuture<SendResult> asyncSendOrderly(RocketMQMessage message, String hashKey) {
+        return asyncSendOrderly(message, hashKey, producer.getSendMsgTimeout(), null);
+    }
+
+    /**
+     * Same to {@link #asyncSendOrderly(RocketMQMessage, String)} with send timeout specified in addition.
+     *
+     * @param message {@link RocketMQMessage}
+     * @param hashKey use this key to select queue. for example: orderId, productId ...
+     * @param timeout send timeout with millis
+     * @return future of the {@link SendResult}
+     */
+    public CompletableFuture<SendResult> asyncSendOrderly(RocketMQMessage message, String hashKey, long timeout) {
+        return asyncSendOrderly(message, hashKey, timeout, null);
+    }
+
+    /**
+     * Same to {@link #asyncSendOrderly(RocketMQMessage, String, long)}, the future is completed on
+     * <code>executor</code>.
+     *
+     * @param message {@link RocketMQMessage}
+     * @param hashKey use this key to select queue. for example: orderId, productId ...
+     * @param timeout send timeout with millis
+     * @param executor executor completing the future, <code>null</code> completes on the client's callback thread
+     * @return future of the {@link SendResult}
+     */
+    public CompletableFuture<SendResult> asyncSendOrderly(RocketMQMessage message, String hashKey, long timeout,
+        Executor executor) {
+        CompletableFuture<SendResult> future = new CompletableFuture<>();
+        try {
+            asyncSendOrderly(message, hashKey, completing(future, executor), timeout);
+        } catch (MessagingException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
 
 
 
 
+    /**
+     * <p> Send messages in batches synchronously. Messages are grouped by topic and each group is split into
+     * {@link org.apache.rocketmq.common.message.MessageBatch}es that stay under {@link
+     * DefaultMQProducer#getMaxMessageSize()}, so one network round trip carries many messages. </p>
+     *
+     * Delay messages are not supported in batch. Batches are sent one after another, if one fails the batches before
+     * it have already been delivered.
+     *
+     * @param messages collection of {@link RocketMQMessage}
+     * @return {@link SendResult} of every batch sent, in send order
+     */
+    public List<SendResult> syncSendBatch(Collection<RocketMQMessage> messages) {
+        return syncSendBatch(messages, producer.getSendMsgTimeout());
+    }
+
+    /**
+     * Same to {@link #syncSendBatch(Collection)} with send timeout specified in addition.
+     *
+     * @param messages collection of {@link RocketMQMessage}
+     * @param timeout send timeout with millis for each batch
+     * @return {@link SendResult} of every batch sent, in send order
+     */
+    public List<SendResult> syncSendBatch(Collection<RocketMQMessage> messages, long timeout) throws MessagingException {
+        List<List<org.apache.rocketmq.common.message.Message>> batches = splitBatch(messages, "syncSendBatch");
+
+        List<SendResult> sendResults = new ArrayList<>(batches.size());
+        for (List<org.apache.rocketmq.common.message.Message> batch : batches) {
+            sendResults.add(doSendBatch(batch, SendMode.SYNC, timeout));
+        }
+        return sendResults;
+    }
+
+    /**
+     * <p> Same to {@link #syncSendBatch(Collection)}, but returns immediately. </p>
+     *
+     * The batches are sent on {@link #getBatchSendExecutor()}, and <code>sendCallback</code> is executed once per
+     * batch on completion.
+     *
+     * @param messages collection of {@link RocketMQMessage}
+     * @param sendCallback {@link SendCallback}
+     */
+    public void asyncSendBatch(Collection<RocketMQMessage> messages, SendCallback sendCallback) {
+        asyncSendBatch(messages, sendCallback, producer.getSendMsgTimeout());
+    }
+
+    /**
+     * Same to {@link #asyncSendBatch(Collection, SendCallback)} with send timeout specified in addition.
+     *
+     * @param messages collection of {@link RocketMQMessage}
+     * @param sendCallback {@link SendCallback}
+     * @param timeout send timeout with millis for each batch
+     */
+    public void asyncSendBatch(Collection<RocketMQMessage> messages, SendCallback sendCallback, long timeout) {
+        List<List<org.apache.rocketmq.common.message.Message>> batches = splitBatch(messages, "asyncSendBatch");
+
+        for (List<org.apache.rocketmq.common.message.Message> batch : batches) {
+            batchSendExecutor.execute(() -> {
+                SendResult sendResult;
+                try {
+                    sendResult = doSendBatch(batch, SendMode.ASYNC, timeout);
+                } catch (MessagingException e) {
+                    sendCallback.onException(e);
+                    return;
+                }
+                sendCallback.onSuccess(sendResult);
+            });
+        }
+    }
+
+    /**
+     * <p> Same to {@link #asyncSendBatch(Collection, SendCallback)}, but returns a {@link CompletableFuture}
+     * completed when every batch was sent. </p>
+     *
+     * The future fails with the first failure of a batch, the other batches are still sent.
+     *
+     * @param messages collection of {@link RocketMQMessage}
+     * @return future of the {@link SendResult} of every batch, in split order
+     */
+    public CompletableFuture<List<SendResult>> asyncSendBatch(Collection<RocketMQMessage> messages) {
+        return asyncSendBatch(messages, producer.getSendMsgTimeout(), null);
+    }
+
+    /**
+     * Same to {@link #asyncSendBatch(Collection)} with send timeout specified in addition.
+     *
+     * @param messages collection of {@link RocketMQMessage}
+     * @param timeout send timeout with millis for each batch
+     * @return future of the {@link SendResult} of every batch, in split order
+     */
+    public CompletableFuture<List<SendResult>> asyncSendBatch(Collection<RocketMQMessage> messages, long timeout) {
+        return asyncSendBatch(messages, timeout, null);
+    }
+
+    /**
+     * Same to {@link #asyncSendBatch(Collection, long)}, the future is completed on <code>executor</code>.
+     *
+     * @param messages collection of {@link RocketMQMessage}
+     * @param timeout send timeout with millis for each batch
+     * @param executor executor completing the future, <code>null</code> completes on {@link #getBatchSendExecutor()}
+     * @return future of the {@link SendResult} of every batch, in split order
+     */
+    public CompletableFuture<List<SendResult>> asyncSendBatch(Collection<RocketMQMessage> messages, long timeout,
+        Executor executor) {
+        List<List<org.apache.rocketmq.common.message.Message>> batches = splitBatch(messages, "asyncSendBatch");
+
+        List<CompletableFuture<SendResult>> futures = new ArrayList<>(batches.size());
+        for (List<org.apache.rocketmq.common.message.Message> batch : batches) {
+            futures.add(CompletableFuture.supplyAsync(() -> doSendBatch(batch, SendMode.ASYNC, timeout),
+                batchSendExecutor));
+        }
+        CompletableFuture<List<SendResult>> future = new CompletableFuture<>();
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).whenComplete((ignored, e) -> {
+            if (Objects.nonNull(e)) {
+                complete(future, null, e instanceof CompletionException ? e.getCause() : e, executor);
+                return;
+            }
+            List<SendResult> sendResults = new ArrayList<>(futures.size());
+            futures.forEach(batchFuture -> sendResults.add(batchFuture.join()));
+            complete(future, sendResults, null, executor);
+        });
+        return future;
+    }
+
+    private List<List<org.apache.rocketmq.common.message.Message>> splitBatch(Collection<RocketMQMessage> messages,
+        String operation) {
+        if (Objects.isNull(messages) || messages.isEmpty()) {
+            log.info("{} failed. messages is empty", operation);
+            throw new IllegalArgumentException("`messages` cannot be empty");
+        }
+
+        List<org.apache.rocketmq.common.message.Message> rocketMsgs = new ArrayList<>(messages.size());
+        for (RocketMQMessage message : messages) {
+            if (Objects.isNull(message) || Objects.isNull(message.getTopic()) || Objects.isNull(message.getBody())) {
+                log.info("{} failed. destination:{}, message is null ", operation, JSON.toJSONString(message));
+                throw new IllegalArgumentException("`message` and `message.payload` cannot be null");
+            }
+            try {
+                rocketMsgs.add(message.covertMq(messageCodec, delayLevels));
+            } catch (Exception e) {
+                log.info("{} failed. message:{} ", operation, message);
+                throw new MessagingException(e.getMessage(), e);
+            }
+        }
+        return MessageBatchSplitter.split(rocketMsgs, producer.getMaxMessageSize());
+    }
+
+    private SendResult doSendBatch(List<org.apache.rocketmq.common.message.Message> batch, SendMode mode,
+        long timeout) {
+        String topic = batch.get(0).getTopic();
+        PooledProducer sender = routeByKey(batch.get(0).getKeys());
+        long now = System.nanoTime();
+        try {
+            SendResult sendResult = sender.producer.send(batch, timeout);
+            long costTime = System.nanoTime() - now;
+            metrics.sent(sender.instance, topic, mode, batch.size(), costTime, true);
+            log.debug("send batch of {} messages cost: {} ms, msgId:{}", batch.size(),
+                TimeUnit.NANOSECONDS.toMillis(costTime), sendResult.getMsgId());
+            return sendResult;
+        } catch (Exception e) {
+            metrics.sent(sender.instance, topic, mode, batch.size(), System.nanoTime() - now, false);
+            log.info("sendBatch failed. topic:{}, size:{}", batch.get(0).getTopic(), batch.size());
+            throw new MessagingException(e.getMessage(), e);
+        }
+    }
+
     /**
      * Similar to <a href="https://en.wikipedia.org/wiki/User_Datagram_Protocol">UDP</a>, this method won't wait for
      * acknowledgement from broker before return. Obviously, it has maximums throughput yet potentials of message loss.
@@ -205,10 +591,29 @@ public class RocketMQProducer implements InitializingBean, DisposableBean {
             throw new IllegalArgumentException("`message` and `message.payload` cannot be null");
         }
 
+        org.apache.rocketmq.common.message.Message rocketMsg;
+        try {
+            rocketMsg = message.covertMq(messageCodec, delayLevels);
+        } catch (Exception e) {
+            log.info("sendOneWay failed. message:{} ", message);
+            throw new MessagingException(e.getMessage(), e);
+        }
+        if (Objects.nonNull(spillover) && spillover.isBrokerDown(rocketMsg.getTopic())) {
+            spillover.spill(rocketMsg);
+            return;
+        }
+
+        PooledProducer sender = route(message);
         try {
-            org.apache.rocketmq.common.message.Message rocketMsg = message.covertMq();
-            producer.sendOneway(rocketMsg);
+            sender.producer.sendOneway(rocketMsg);
+            metrics.sent(sender.instance, message.getTopic(), SendMode.ONEWAY, 1, 0, true);
         } catch (Exception e) {
+            metrics.sent(sender.instance, message.getTopic(), SendMode.ONEWAY, 1, 0, false);
+            if (Objects.nonNull(spillover) && RocketMQSpillover.isTransient(e)) {
+                log.info("sendOneWay failed, spill message:{} ", message);
+                spillover.spill(rocketMsg);
+                return;
+            }
             log.info("sendOneWay failed. message:{} ", message);
             throw new MessagingException(e.getMessage(), e);
         }
@@ -228,10 +633,13 @@ public class RocketMQProducer implements InitializingBean, DisposableBean {
             throw new IllegalArgumentException("`message` and `message.payload` cannot be null");
         }
 
+        PooledProducer sender = route(hashKey);
         try {
-            org.apache.rocketmq.common.message.Message rocketMsg = message.covertMq();
-            producer.sendOneway(rocketMsg, messageQueueSelector, hashKey);
+            org.apache.rocketmq.common.message.Message rocketMsg = message.covertMq(messageCodec, delayLevels);
+            sender.producer.sendOneway(rocketMsg, messageQueueSelector, hashKey);
+            metrics.sent(sender.instance, message.getTopic(), SendMode.ONEWAY, 1, 0, true);
         } catch (Exception e) {
+            metrics.sent(sender.instance, message.getTopic(), SendMode.ONEWAY, 1, 0, false);
             log.info("sendOneWayOrderly failed. destination:{}, message:{}", destination, message);
             throw new MessagingException(e.getMessage(), e);
         }
@@ -239,17 +647,351 @@ public class RocketMQProducer implements InitializingBean, DisposableBean {
 
 
 
+    /**
+     * <p> Send a request and wait for its reply asynchronously. The request carries a correlation id and the reply
+     * topic and tag of the {@link #replyConsumer}, the listener consuming it answers with {@link #reply(MessageExt,
+     * Serializable)}. </p>
+     *
+     * The request goes to the broker right away, it is neither batched nor spilled. The future fails with a {@link
+     * java.util.concurrent.TimeoutException} when no reply arrived within <code>timeout</code>, and is completed on
+     * a consume thread of the reply consumer, so dependent stages should not block.
+     *
+     * @param message {@link RocketMQMessage}
+     * @param timeout millis to wait for the reply, including the send
+     * @return future of the reply
+     */
+    public CompletableFuture<MessageExt> sendAndReceive(RocketMQMessage message, long timeout) {
+        if (Objects.isNull(message) || Objects.isNull(message.getTopic()) || Objects.isNull(message.getBody())) {
+            log.info("sendAndReceive failed. destination:{}, message is null ", JSON.toJSONString(message));
+            throw new IllegalArgumentException("`message` and `message.payload` cannot be null");
+        }
+        Assert.state(Objects.nonNull(replyConsumer), "Property 'replyConsumer' is required for sendAndReceive");
+
+        org.apache.rocketmq.common.message.Message rocketMsg;
+        try {
+            rocketMsg = message.covertMq(messageCodec, delayLevels);
+        } catch (Exception e) {
+            log.info("sendAndReceive failed. message:{} ", message);
+            CompletableFuture<MessageExt> future = new CompletableFuture<>();
+            future.completeExceptionally(new MessagingException(e.getMessage(), e));
+            return future;
+        }
+        String correlationId = MessageClientIDSetter.createUniqID();
+        rocketMsg.putUserProperty(RocketMQReplyConsumer.PROPERTY_CORRELATION_ID, correlationId);
+        rocketMsg.putUserProperty(RocketMQReplyConsumer.PROPERTY_REPLY_TOPIC, replyConsumer.getReplyTopic());
+        rocketMsg.putUserProperty(RocketMQReplyConsumer.PROPERTY_REPLY_TAG, replyConsumer.getReplyTag());
+        CompletableFuture<MessageExt> future = replyConsumer.register(correlationId, timeout);
+
+        PooledProducer sender = route(message);
+        SendCallback sendCallback = new SendCallback() {
+            @Override
+            public void onSuccess(SendResult sendResult) {
+                log.debug("request sent, msgId:{}, correlationId:{}", sendResult.getMsgId(), correlationId);
+            }
+
+            @Override
+            public void onException(Throwable e) {
+                log.info("sendAndReceive failed. message:{} ", message);
+                future.completeExceptionally(e);
+            }
+        };
+        try {
+            sender.producer.send(rocketMsg, timed(sender.instance, message.getTopic(), sendCallback), timeout);
+        } catch (Exception e) {
+            sendCallback.onException(e);
+        }
+        return future;
+    }
+
+    /**
+     * Same to {@link #sendAndReceive(RocketMQMessage, long)}, the reply is decoded to <code>replyType</code> by
+     * {@link #messageCodec}.
+     *
+     * @param message {@link RocketMQMessage}
+     * @param replyType type of the reply payload
+     * @param timeout millis to wait for the reply, including the send
+     * @return future of the reply payload
+     */
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> sendAndReceive(RocketMQMessage message, Class<T> replyType, long timeout) {
+        MessageCodec.Decoder decoder = messageCodec.decoderFor(replyType);
+        return sendAndReceive(message, timeout).thenApply(reply -> (T) decoder.decode(reply.getBody()));
+    }
+
+    /**
+     * <p> Answer a request sent by {@link #sendAndReceive(RocketMQMessage, long)}, from the {@link RocketMQListener}
+     * consuming it, which takes {@link MessageExt} to see the reply properties. </p>
+     *
+     * The reply is sent synchronously to the reply topic of the requesting process and is not spilled, a reply that
+     * arrives after the request timed out is dropped.
+     *
+     * @param request the request as consumed
+     * @param payload reply payload, encoded by {@link #messageCodec}
+     * @return {@link SendResult}
+     */
+    public SendResult reply(MessageExt request, Serializable payload) throws MessagingException {
+        String correlationId = request.getUserProperty(RocketMQReplyConsumer.PROPERTY_CORRELATION_ID);
+        String replyTopic = request.getUserProperty(RocketMQReplyConsumer.PROPERTY_REPLY_TOPIC);
+        if (Objects.isNull(correlationId) || Objects.isNull(replyTopic) || Objects.isNull(payload)) {
+            log.info("reply failed. msgId:{} is no request or payload is null", request.getMsgId());
+            throw new IllegalArgumentException("`request` must be sent by sendAndReceive and `payload` not be null");
+        }
+
+        org.apache.rocketmq.common.message.Message rocketMsg = new org.apache.rocketmq.common.message.Message(
+            replyTopic, request.getUserProperty(RocketMQReplyConsumer.PROPERTY_REPLY_TAG), null);
+        rocketMsg.putUserProperty(RocketMQReplyConsumer.PROPERTY_CORRELATION_ID, correlationId);
+        PooledProducer sender = route(correlationId);
+        long now = System.nanoTime();
+        try {
+            rocketMsg.setBody(messageCodec.encode(payload));
+            SendResult sendResult = sender.producer.send(rocketMsg, producer.getSendMsgTimeout());
+            metrics.sent(sender.instance, replyTopic, SendMode.SYNC, 1, System.nanoTime() - now, true);
+            return sendResult;
+        } catch (Exception e) {
+            metrics.sent(sender.instance, replyTopic, SendMode.SYNC, 1, System.nanoTime() - now, false);
+            log.info("reply failed. correlationId:{}", correlationId);
+            throw new MessagingException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Callback completing <code>future</code>, on <code>executor</code> when given.
+     */
+    private static SendCallback completing(CompletableFuture<SendResult> future, Executor executor) {
+        return new SendCallback() {
+            @Override
+            public void onSuccess(SendResult sendResult) {
+                complete(future, sendResult, null, executor);
+            }
+
+            @Override
+            public void onException(Throwable e) {
+                complete(future, null, e, executor);
+            }
+        };
+    }
+
+    private static <T> void complete(CompletableFuture<T> future, T result, Throwable e, Executor executor) {
+        Runnable completion = () -> {
+            if (Objects.isNull(e)) {
+                future.complete(result);
+            } else {
+                future.completeExceptionally(e);
+            }
+        };
+        if (Objects.isNull(executor)) {
+            completion.run();
+            return;
+        }
+        try {
+            executor.execute(completion);
+        } catch (RejectedExecutionException ex) {
+            log.warn("completion executor rejected, complete on the current thread", ex);
+            completion.run();
+        }
+    }
+
+    /**
+     * Spill the message of an asynchronous send, a full journal fails the callback instead of the caller.
+     */
+    private void spill(org.apache.rocketmq.common.message.Message rocketMsg, SendCallback sendCallback) {
+        SendResult sendResult;
+        try {
+            sendResult = spillover.spill(rocketMsg);
+        } catch (MessagingException e) {
+            sendCallback.onException(e);
+            return;
+        }
+        sendCallback.onSuccess(sendResult);
+    }
+
+    /**
+     * Wrap the callback of an asynchronous send to spill the message when the broker is unreachable, the callback
+     * then receives a {@link SpilledSendResult}.
+     */
+    private SendCallback spilling(org.apache.rocketmq.common.message.Message rocketMsg, SendCallback sendCallback) {
+        if (Objects.isNull(spillover)) {
+            return sendCallback;
+        }
+        return new SendCallback() {
+            @Override
+            public void onSuccess(SendResult sendResult) {
+                sendCallback.onSuccess(sendResult);
+            }
+
+            @Override
+            public void onException(Throwable e) {
+                if (!RocketMQSpillover.isTransient(e)) {
+                    sendCallback.onException(e);
+                    return;
+                }
+                SendResult sendResult;
+                try {
+                    sendResult = spillover.spill(rocketMsg);
+                } catch (MessagingException ex) {
+                    log.warn("spill message failed. topic:{}", rocketMsg.getTopic(), ex);
+                    sendCallback.onException(e);
+                    return;
+                }
+                sendCallback.onSuccess(sendResult);
+            }
+        };
+    }
+
+    /**
+     * Wrap the callback of an asynchronous send to record its latency up to completion.
+     */
+    private SendCallback timed(String instance, String topic, SendCallback sendCallback) {
+        if (metrics == RocketMQMetrics.NOOP) {
+            return sendCallback;
+        }
+        long now = System.nanoTime();
+        return new SendCallback() {
+            @Override
+            public void onSuccess(SendResult sendResult) {
+                metrics.sent(instance, topic, SendMode.ASYNC, 1, System.nanoTime() - now, true);
+                sendCallback.onSuccess(sendResult);
+            }
+
+            @Override
+            public void onException(Throwable e) {
+                metrics.sent(instance, topic, SendMode.ASYNC, 1, System.nanoTime() - now, false);
+                sendCallback.onException(e);
+            }
+        };
+    }
+
+    /**
+     * Producer of the pool for a message, by {@link #routing}.
+     */
+    private PooledProducer route(RocketMQMessage message) {
+        return routeByKey(message.getKey());
+    }
+
+    /**
+     * Producer of the pool by {@link #routing}, sends without keys go round robin.
+     */
+    private PooledProducer routeByKey(String keys) {
+        if (producers.size() == 1) {
+            return producers.get(0);
+        }
+        if (routing == ProducerRouting.KEY_HASH && Objects.nonNull(keys)) {
+            return route(keys);
+        }
+        return producers.get((roundRobin.getAndIncrement() & Integer.MAX_VALUE) % producers.size());
+    }
+
+    /**
+     * Producer of the pool for a hash key, sends with equal keys always go through the same producer and keep their
+     * order.
+     */
+    private PooledProducer route(Object hashKey) {
+        if (producers.size() == 1 || Objects.isNull(hashKey)) {
+            return producers.get(0);
+        }
+        int hash = hashKey.hashCode();
+        return producers.get(((hash ^ (hash >>> 16)) & Integer.MAX_VALUE) % producers.size());
+    }
+
+    /**
+     * Copy the settings of {@link #producer} into another producer of the same group with its own client instance,
+     * so it has its own remoting client and callback executor.
+     */
+    protected DefaultMQProducer copyProducer(String instanceName) {
+        DefaultMQProducer copy = new DefaultMQProducer(producer.getProducerGroup());
+        copy.resetClientConfig(producer.cloneClientConfig());
+        copy.setInstanceName(instanceName);
+        copy.setCreateTopicKey(producer.getCreateTopicKey());
+        copy.setDefaultTopicQueueNums(producer.getDefaultTopicQueueNums());
+        copy.setSendMsgTimeout(producer.getSendMsgTimeout());
+        copy.setRetryTimesWhenSendFailed(producer.getRetryTimesWhenSendFailed());
+        copy.setRetryTimesWhenSendAsyncFailed(producer.getRetryTimesWhenSendAsyncFailed());
+        copy.setMaxMessageSize(producer.getMaxMessageSize());
+        copy.setCompressMsgBodyOverHowmuch(producer.getCompressMsgBodyOverHowmuch());
+        copy.setRetryAnotherBrokerWhenNotStoreOK(producer.isRetryAnotherBrokerWhenNotStoreOK());
+        copy.setSendLatencyFaultEnable(producer.isSendLatencyFaultEnable());
+        copy.setLatencyMax(producer.getLatencyMax());
+        copy.getDefaultMQProducerImpl().setNotAvailableDuration(
+            producer.getDefaultMQProducerImpl().getNotAvailableDuration());
+        return copy;
+    }
+
     @Override
     public void afterPropertiesSet() throws Exception {
         Assert.notNull(producer, "Property 'producer' is required");
-        producer.start();
+        Assert.isTrue(poolSize > 0, "Property 'poolSize' must be positive");
+        List<PooledProducer> pool = new ArrayList<>(poolSize);
+        if (poolSize > 1) {
+            // an instance name left at its default becomes the pid on start, like it does without pool
+            String instanceName = producer.getInstanceName();
+            String instancePrefix = (DEFAULT_INSTANCE_NAME.equals(instanceName) ? String.valueOf(UtilAll.getPid())
+                : instanceName) + "#";
+            producer.setInstanceName(instancePrefix + 0);
+            pool.add(new PooledProducer(producer, "0"));
+            for (int i = 1; i < poolSize; i++) {
+                pool.add(new PooledProducer(copyProducer(instancePrefix + i), String.valueOf(i)));
+            }
+        } else {
+            pool.add(new PooledProducer(producer, "0"));
+        }
+        if (Objects.isNull(batchSendExecutor)) {
+            batchSendExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+                new ThreadFactoryImpl("RocketMQBatchSendThread_"));
+        }
+        for (PooledProducer pooledProducer : pool) {
+            pooledProducer.producer.start();
+        }
+        this.producers = pool;
+        if (Objects.nonNull(batchAccumulator)) {
+            batchAccumulator.start(producer, batchSendExecutor);
+        }
+        if (Objects.nonNull(spillover)) {
+            spillover.start(producer, metrics);
+        }
+        if (Objects.nonNull(replyConsumer)) {
+            replyConsumer.start();
+        }
     }
 
 
     @Override
     public void destroy() {
-        if (Objects.nonNull(producer)) {
+        if (Objects.nonNull(batchAccumulator)) {
+            batchAccumulator.close();
+        }
+        if (Objects.nonNull(replyConsumer)) {
+            replyConsumer.close();
+        }
+        if (Objects.nonNull(spillover)) {
+            spillover.close();
+        }
+        if (Objects.nonNull(batchSendExecutor)) {
+            batchSendExecutor.shutdown();
+            try {
+                batchSendExecutor.awaitTermination(producer.getSendMsgTimeout(), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (Objects.nonNull(producers)) {
+            producers.forEach(pooledProducer -> pooledProducer.producer.shutdown());
+        } else if (Objects.nonNull(producer)) {
             producer.shutdown();
         }
     }
+
+    private static final class PooledProducer {
+
+        private final DefaultMQProducer producer;
+
+        /**
+         * Index in the pool, tags the metrics of the producer.
+         */
+        private final String instance;
+
+        private PooledProducer(DefaultMQProducer producer, String instance) {
+            this.producer = producer;
+            this.instance = instance;
+        }
+    }
 }
@@ -0,0 +1,16 @@
+package com.cjie.spring.starter.rocketmq.core;
+
+import java.util.List;
+
+/**
+ * <p> Receives the messages of a topic as batches pulled from one queue at a time, in offset order, without the flow
+ * control of push consumers. The batch size is bounded by
+ * {@link com.cjie.spring.starter.rocketmq.annotation.RocketMQMessageListener#pullBatchSize()}. </p>
+ *
+ * Offsets are only committed through the {@link OffsetCommitter}, e.g. once a bulk write succeeded. Returning without
+ * a commit goes on with the next batch, and the uncommitted batches are pulled again after a restart or when the queue
+ * moves to another consumer. Throwing pulls the queue again from its committed offset.
+ */
+public interface RocketMQPullListener<T> {
+    void onMessages(List<T> messages, OffsetCommitter offsetCommitter);
+}
@@ -0,0 +1,183 @@
+package com.cjie.spring.starter.rocketmq.core;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.rocketmq.client.consumer.DefaultMQPushConsumer;
+import org.apache.rocketmq.client.consumer.listener.ConsumeConcurrentlyStatus;
+import org.apache.rocketmq.client.consumer.listener.MessageListenerConcurrently;
+import org.apache.rocketmq.client.exception.MQClientException;
+import org.apache.rocketmq.common.ThreadFactoryImpl;
+import org.apache.rocketmq.common.consumer.ConsumeFromWhere;
+import org.apache.rocketmq.common.message.MessageExt;
+import org.apache.rocketmq.common.protocol.heartbeat.MessageModel;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * <p> Receives the replies to the requests of {@link RocketMQProducer#sendAndReceive(RocketMQMessage, long)} and
+ * completes the future waiting for each by its correlation id. </p>
+ *
+ * <p> One consumer serves all requests of a process. Every process subscribes the shared reply topic with a tag of its
+ * own in a consumer group of its own, the group of the consumer suffixed with the tag. The broker filters pulls by the
+ * subscription a group registered last, so processes sharing a group would lose the replies to each other. A request
+ * times out when no reply arrived within its timeout, a reply arriving later is dropped. </p>
+ *
+ * <p> The tag is the id of the process instance, stable across restarts so a restarted process reuses its group. By
+ * default it is the client IP, followed by the instance name of the consumer when one is set, so processes sharing a
+ * host need instance names or ids of their own. A broker creating subscription groups automatically keeps the group
+ * of an instance that is gone for good, e.g. after a deploy moved the process to another host, delete such groups
+ * with <code>mqadmin deleteSubGroup</code>. </p>
+ *
+ * Futures are completed on the consume threads of the reply consumer, dependent stages should not block.
+ */
+@Slf4j
+public class RocketMQReplyConsumer {
+
+    /**
+     * Property of requests and replies matching a reply to its request.
+     */
+    public static final String PROPERTY_CORRELATION_ID = "CORRELATION_ID";
+
+    /**
+     * Property of requests, the topic to send the reply to.
+     */
+    public static final String PROPERTY_REPLY_TOPIC = "REPLY_TOPIC";
+
+    /**
+     * Property of requests, the tag to send the reply with.
+     */
+    public static final String PROPERTY_REPLY_TAG = "REPLY_TAG";
+
+    private final DefaultMQPushConsumer consumer;
+
+    private final String replyTopic;
+
+    private final String replyTag;
+
+    private final ConcurrentMap<String, CompletableFuture<MessageExt>> pendingReplies = new ConcurrentHashMap<>();
+
+    private ScheduledThreadPoolExecutor timeoutScheduler;
+
+    /**
+     * Same to {@link #RocketMQReplyConsumer(DefaultMQPushConsumer, String, String)} with the default instance id, the
+     * client IP followed by the instance name of the consumer unless it is the default one.
+     */
+    public RocketMQReplyConsumer(DefaultMQPushConsumer consumer, String replyTopic) {
+        this(consumer, replyTopic, defaultInstanceId(consumer));
+    }
+
+    /**
+     * @param consumer consumer of the replies, not started, its group is suffixed with the reply tag and its message
+     * model and listener are set by {@link #start()}
+     * @param replyTopic topic the replies of all processes are sent to
+     * @param instanceId id of this process among the processes sharing the reply topic, stable across restarts,
+     * characters other than letters, digits, '-' and '_' are replaced by '_' in the reply tag
+     */
+    public RocketMQReplyConsumer(DefaultMQPushConsumer consumer, String replyTopic, String instanceId) {
+        Assert.notNull(consumer, "'consumer' must not be null");
+        Assert.hasText(replyTopic, "'replyTopic' must not be empty");
+        Assert.hasText(instanceId, "'instanceId' must not be empty");
+        this.consumer = consumer;
+        this.replyTopic = replyTopic;
+        this.replyTag = instanceId.replaceAll("[^a-zA-Z0-9_-]", "_");
+    }
+
+    private static String defaultInstanceId(DefaultMQPushConsumer consumer) {
+        Assert.notNull(consumer, "'consumer' must not be null");
+        String instanceName = consumer.getInstanceName();
+        return StringUtils.hasText(instanceName) && !"DEFAULT".equals(instanceName)
+            ? consumer.getClientIP() + "_" + instanceName : consumer.getClientIP();
+    }
+
+    public synchronized void start() throws MQClientException {
+        this.timeoutScheduler = new ScheduledThreadPoolExecutor(1,
+            new ThreadFactoryImpl("RocketMQReplyTimeoutThread_"));
+        // replied requests cancel their timeout, do not keep the cancelled tasks until they are due
+        timeoutScheduler.setRemoveOnCancelPolicy(true);
+
+        consumer.setConsumerGroup(consumer.getConsumerGroup() + "_" + replyTag);
+        // the group has a single member, broadcasting keeps its offsets local instead of on the broker
+        consumer.setMessageModel(MessageModel.BROADCASTING);
+        consumer.setConsumeFromWhere(ConsumeFromWhere.CONSUME_FROM_LAST_OFFSET);
+        consumer.subscribe(replyTopic, replyTag);
+        consumer.registerMessageListener((MessageListenerConcurrently) (msgs, context) -> {
+            msgs.forEach(this::onReply);
+            return ConsumeConcurrentlyStatus.CONSUME_SUCCESS;
+        });
+        consumer.start();
+    }
+
+    public String getReplyTopic() {
+        return replyTopic;
+    }
+
+    /**
+     * @return tag of the replies to this process
+     */
+    public String getReplyTag() {
+        return replyTag;
+    }
+
+    /**
+     * Wait for the reply to a request.
+     *
+     * @param correlationId correlation id of the request
+     * @param timeout millis to wait for the reply, the future fails with a {@link TimeoutException} after it
+     * @return future of the reply, cancelling it stops waiting
+     */
+    public CompletableFuture<MessageExt> register(String correlationId, long timeout) {
+        CompletableFuture<MessageExt> future = new CompletableFuture<>();
+        if (Objects.nonNull(pendingReplies.putIfAbsent(correlationId, future))) {
+            throw new IllegalStateException("correlation id already waits for a reply: " + correlationId);
+        }
+        ScheduledFuture<?> timeoutTask = timeoutScheduler.schedule(() -> future.completeExceptionally(
+            new TimeoutException("no reply within " + timeout + " ms, correlationId:" + correlationId)),
+            timeout, TimeUnit.MILLISECONDS);
+        future.whenComplete((reply, e) -> {
+            pendingReplies.remove(correlationId, future);
+            timeoutTask.cancel(false);
+        });
+        return future;
+    }
+
+    /**
+     * @return number of requests waiting for their reply
+     */
+    public int pendingReplies() {
+        return pendingReplies.size();
+    }
+
+    /**
+     * Stop receiving replies, the requests still waiting fail.
+     */
+    public synchronized void close() {
+        consumer.shutdown();
+        List<CompletableFuture<MessageExt>> pending = new ArrayList<>(pendingReplies.values());
+        pending.forEach(future -> future.completeExceptionally(new MessagingException("reply consumer closed")));
+        if (Objects.nonNull(timeoutScheduler)) {
+            timeoutScheduler.shutdownNow();
+        }
+    }
+
+    private void onReply(MessageExt reply) {
+        String correlationId = reply.getUserProperty(PROPERTY_CORRELATION_ID);
+        CompletableFuture<MessageExt> future = Objects.isNull(correlationId) ? null
+            : pendingReplies.get(correlationId);
+        if (Objects.isNull(future)) {
+            log.debug("drop reply without waiting request, timed out or of a previous run. correlationId:{}",
+                correlationId);
+            return;
+        }
+        future.complete(reply);
+    }
+}
@@ -0,0 +1,269 @@
+package com.cjie.spring.starter.rocketmq.core;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.rocketmq.client.common.ClientErrorCode;
+import org.apache.rocketmq.client.exception.MQBrokerException;
+import org.apache.rocketmq.client.exception.MQClientException;
+import org.apache.rocketmq.client.producer.DefaultMQProducer;
+import org.apache.rocketmq.client.producer.SendResult;
+import org.apache.rocketmq.client.producer.SendStatus;
+import org.apache.rocketmq.common.message.Message;
+import org.apache.rocketmq.common.message.MessageClientIDSetter;
+import org.apache.rocketmq.common.message.MessageDecoder;
+import org.apache.rocketmq.common.protocol.ResponseCode;
+import org.apache.rocketmq.remoting.exception.RemotingConnectException;
+import org.apache.rocketmq.remoting.exception.RemotingTimeoutException;
+import org.apache.rocketmq.remoting.exception.RemotingTooMuchRequestException;
+import org.springframework.util.Assert;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p> Keeps messages of {@link RocketMQProducer} that the broker did not accept in a {@link SpilloverJournal}, and a
+ * drainer thread sends them again in journal order once the broker is back. </p>
+ *
+ * <p> A failed send marks the broker of its topic down, from then on sends to that topic go to the journal right away
+ * without waiting for a timeout, until a replay of a message of the topic succeeds. Sends then go to the broker again
+ * while the drainer empties the journal, so spilled messages keep their order among each other but may arrive after
+ * messages sent later. Messages left by a previous run are replayed while new sends go to the broker. </p>
+ *
+ * <p> Only failures that may pass once the broker is reachable again are spilled, see {@link #isTransient}. A message
+ * whose replay still fails after {@link #maxReplayAttempts} attempts is dropped with an error log, so it does not hold
+ * back the messages of other topics behind it. </p>
+ *
+ * Replayed messages keep their client msgId, so a consumer deduplicating on it drops a message that reached the broker
+ * although its send failed.
+ */
+@Slf4j
+public class RocketMQSpillover {
+
+    private final SpilloverJournal journal;
+
+    private final long retryInterval;
+
+    private final Object drainLock = new Object();
+
+    private final Set<String> downTopics = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Failed replays of the journal head before it is dropped.
+     */
+    private int maxReplayAttempts = 300;
+
+    private int headAttempts;
+
+    private volatile boolean closed;
+
+    private DefaultMQProducer producer;
+
+    private RocketMQMetrics metrics = RocketMQMetrics.NOOP;
+
+    private Thread drainer;
+
+    /**
+     * @param journal journal of the spilled messages, closed together with this spillover
+     * @param retryInterval millis the drainer waits after a failed replay
+     */
+    public RocketMQSpillover(SpilloverJournal journal, long retryInterval) {
+        Assert.notNull(journal, "'journal' must not be null");
+        Assert.isTrue(retryInterval > 0, "'retryInterval' must be positive");
+        this.journal = journal;
+        this.retryInterval = retryInterval;
+    }
+
+    public synchronized void start(DefaultMQProducer producer, RocketMQMetrics metrics) {
+        this.producer = producer;
+        this.metrics = metrics;
+        this.drainer = new Thread(this::drain, "RocketMQSpilloverDrainThread");
+        drainer.setDaemon(true);
+        drainer.start();
+    }
+
+    public void setMaxReplayAttempts(int maxReplayAttempts) {
+        Assert.isTrue(maxReplayAttempts > 0, "'maxReplayAttempts' must be positive");
+        this.maxReplayAttempts = maxReplayAttempts;
+    }
+
+    /**
+     * @return true while sends to the topic should go to the journal without trying the broker
+     */
+    public boolean isBrokerDown(String topic) {
+        return downTopics.contains(topic);
+    }
+
+    /**
+     * Write a message to the journal, to be sent by the drainer.
+     *
+     * @return result carrying the msgId the message is replayed with
+     * @throws MessagingException when the journal is full or cannot be written
+     */
+    public SendResult spill(Message message) throws MessagingException {
+        MessageClientIDSetter.setUniqID(message);
+        byte[] record = encode(message);
+        synchronized (drainLock) {
+            boolean appended;
+            try {
+                appended = journal.append(record);
+            } catch (IOException | IllegalArgumentException e) {
+                throw new MessagingException("write spillover journal failed", e);
+            }
+            if (!appended) {
+                throw new MessagingException("spillover journal is full or closed, " + journal.pendingBytes()
+                    + " bytes pending");
+            }
+            downTopics.add(message.getTopic());
+            drainLock.notifyAll();
+        }
+        metrics.spilled(message.getTopic(), false);
+        return new SpilledSendResult(MessageClientIDSetter.getUniqID(message));
+    }
+
+    /**
+     * @return bytes of the messages not replayed yet
+     */
+    public long pendingBytes() {
+        return journal.pendingBytes();
+    }
+
+    /**
+     * Stop the drainer, the messages not replayed yet stay in the journal for the next start.
+     */
+    public void close() {
+        this.closed = true;
+        if (Objects.nonNull(drainer)) {
+            drainer.interrupt();
+            try {
+                drainer.join(producer.getSendMsgTimeout());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        journal.close();
+    }
+
+    private void drain() {
+        while (!closed) {
+            try {
+                byte[] record = journal.peek();
+                if (Objects.isNull(record)) {
+                    synchronized (drainLock) {
+                        // a spill between peek and here is drained right away
+                        if (journal.pendingBytes() == 0) {
+                            drainLock.wait(retryInterval);
+                        }
+                    }
+                    continue;
+                }
+                if (replay(record)) {
+                    this.headAttempts = 0;
+                    journal.advance();
+                } else {
+                    TimeUnit.MILLISECONDS.sleep(retryInterval);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return false when the message must be sent again later
+     */
+    private boolean replay(byte[] record) {
+        Message message;
+        try {
+            message = decode(record);
+        } catch (Exception e) {
+            log.error("drop undecodable spillover record of {} bytes", record.length, e);
+            return true;
+        }
+        try {
+            SendResult sendResult = producer.send(message);
+            if (sendResult.getSendStatus() != SendStatus.SEND_OK) {
+                // stored on the master, the slave catches up
+                log.warn("replay spilled message not fully stored. topic:{}, status:{}", message.getTopic(),
+                    sendResult.getSendStatus());
+            }
+            metrics.spilled(message.getTopic(), true);
+            // the broker is back, the rest of the journal drains while sends to the topic go to the broker again
+            downTopics.remove(message.getTopic());
+            return true;
+        } catch (Exception e) {
+            if (!isTransient(e)) {
+                log.error("drop spilled message the broker rejects. topic:{}, msgId:{}", message.getTopic(),
+                    MessageClientIDSetter.getUniqID(message), e);
+                return true;
+            }
+            if (++headAttempts >= maxReplayAttempts) {
+                log.error("drop spilled message after {} failed replays. topic:{}, msgId:{}, keys:{}", headAttempts,
+                    message.getTopic(), MessageClientIDSetter.getUniqID(message), message.getKeys(), e);
+                return true;
+            }
+            downTopics.add(message.getTopic());
+            log.info("replay spilled message failed, retry in {} ms. topic:{}", retryInterval, message.getTopic());
+            return false;
+        }
+    }
+
+    /**
+     * Whether a send failure may pass when the broker is reachable again or less loaded, so the message is worth
+     * spilling. A missing route, a missing topic or a denied permission fail again on every replay.
+     */
+    static boolean isTransient(Throwable e) {
+        // a send failing after all its retries carries the failure of the last try as cause
+        while (e instanceof MQClientException && Objects.nonNull(e.getCause())) {
+            e = e.getCause();
+        }
+        if (e instanceof MQClientException) {
+            switch (((MQClientException) e).getResponseCode()) {
+                case ClientErrorCode.CONNECT_BROKER_EXCEPTION:
+                case ClientErrorCode.ACCESS_BROKER_TIMEOUT:
+                    return true;
+                default:
+                    return false;
+            }
+        }
+        if (e instanceof MQBrokerException) {
+            // flow control of the broker answers with system busy
+            switch (((MQBrokerException) e).getResponseCode()) {
+                case ResponseCode.SYSTEM_BUSY:
+                case ResponseCode.SERVICE_NOT_AVAILABLE:
+                    return true;
+                default:
+                    return false;
+            }
+        }
+        // a send running out of its timeout before a try reaches the broker fails with too much request
+        return e instanceof RemotingConnectException || e instanceof RemotingTimeoutException
+            || e instanceof RemotingTooMuchRequestException;
+    }
+
+    /**
+     * [short topic length][topic][message without topic]
+     */
+    static byte[] encode(Message message) {
+        byte[] topic = message.getTopic().getBytes(StandardCharsets.UTF_8);
+        byte[] encoded = MessageDecoder.encodeMessage(message);
+        ByteBuffer buffer = ByteBuffer.allocate(2 + topic.length + encoded.length);
+        buffer.putShort((short) topic.length);
+        buffer.put(topic);
+        buffer.put(encoded);
+        return buffer.array();
+    }
+
+    static Message decode(byte[] record) throws Exception {
+        ByteBuffer buffer = ByteBuffer.wrap(record);
+        byte[] topic = new byte[buffer.getShort()];
+        buffer.get(topic);
+        Message message = MessageDecoder.decodeMessage(buffer.slice());
+        message.setTopic(new String(topic, StandardCharsets.UTF_8));
+        return message;
+    }
+}
@@ -0,0 +1,19 @@
+package com.cjie.spring.starter.rocketmq.core;
+
+import org.apache.rocketmq.client.producer.SendResult;
+import org.apache.rocketmq.client.producer.SendStatus;
+
+/**
+ * <p> Result of a send that was written to the {@link RocketMQSpillover} journal instead of the broker. The message
+ * is sent later by the drainer, so there is no queue and no offset yet. </p>
+ *
+ * The status is {@link SendStatus#SEND_OK} because the message is stored, callers that must know whether the broker
+ * has it check <code>instanceof SpilledSendResult</code>. The msgId is the client id the message keeps when it is
+ * replayed.
+ */
+public class SpilledSendResult extends SendResult {
+
+    public SpilledSendResult(String msgId) {
+        super(SendStatus.SEND_OK, msgId, null, null, -1);
+    }
+}
@@ -0,0 +1,277 @@
+package com.cjie.spring.starter.rocketmq.core;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.rocketmq.common.UtilAll;
+import org.springframework.util.Assert;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * <p> Append-only journal of records in memory-mapped segment files of {@link #segmentSize} bytes, read back in append
+ * order. Segments are named by the journal offset of their first byte, fully read segments are deleted. </p>
+ *
+ * <p> A record is its length, its CRC32 and its bytes. A length of -1 marks the unused end of a segment. The read
+ * offset is kept in a <code>checkpoint</code> file, on open the write offset is recovered by scanning the last segment
+ * up to the first record that is missing or fails its CRC. </p>
+ *
+ * Mapped pages are written back by the operating system, so the journal survives a crash of the process but not
+ * necessarily of the machine. All methods are synchronized.
+ */
+@Slf4j
+public class SpilloverJournal {
+
+    private static final int RECORD_HEADER_SIZE = 8;
+
+    private static final int END_OF_SEGMENT = -1;
+
+    private static final String CHECKPOINT_FILE = "checkpoint";
+
+    private final File dir;
+
+    private final int segmentSize;
+
+    private final long maxSize;
+
+    private final LinkedList<Segment> segments = new LinkedList<>();
+
+    private final MappedByteBuffer checkpoint;
+
+    private final RandomAccessFile checkpointFile;
+
+    private long writeOffset;
+
+    private long readOffset;
+
+    private boolean closed;
+
+    /**
+     * @param dir directory of the segment files, created if missing
+     * @param segmentSize bytes per segment file, larger than the largest record
+     * @param maxSize max bytes of all segment files, appends fail when it is reached
+     */
+    public SpilloverJournal(File dir, int segmentSize, long maxSize) throws IOException {
+        Assert.isTrue(segmentSize > RECORD_HEADER_SIZE * 2, "'segmentSize' is too small");
+        Assert.isTrue(maxSize >= segmentSize, "'maxSize' must not be smaller than 'segmentSize'");
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("cannot create spillover journal directory " + dir);
+        }
+        this.dir = dir;
+        this.segmentSize = segmentSize;
+        this.maxSize = maxSize;
+
+        this.checkpointFile = new RandomAccessFile(new File(dir, CHECKPOINT_FILE), "rw");
+        this.checkpoint = checkpointFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, 8);
+        recover();
+    }
+
+    private void recover() throws IOException {
+        File[] files = dir.listFiles((parent, name) -> name.matches("\\d{20}"));
+        Arrays.sort(Objects.requireNonNull(files));
+        for (File file : files) {
+            segments.add(new Segment(Long.parseLong(file.getName()), file));
+        }
+        if (segments.isEmpty()) {
+            this.readOffset = 0;
+            this.writeOffset = 0;
+            checkpoint.putLong(0, 0);
+            return;
+        }
+
+        long firstOffset = segments.getFirst().baseOffset;
+        this.readOffset = Math.max(checkpoint.getLong(0), firstOffset);
+        Segment last = segments.getLast();
+        int position = readOffset > last.baseOffset ? (int) (readOffset - last.baseOffset) : 0;
+        while (true) {
+            int length = position + RECORD_HEADER_SIZE <= segmentSize ? last.buffer.getInt(position) : END_OF_SEGMENT;
+            if (length == END_OF_SEGMENT) {
+                position = segmentSize;
+                break;
+            }
+            if (length <= 0 || position + RECORD_HEADER_SIZE + length > segmentSize
+                || crc(last, position + RECORD_HEADER_SIZE, length) != last.buffer.getInt(position + 4)) {
+                break;
+            }
+            position += RECORD_HEADER_SIZE + length;
+        }
+        this.writeOffset = last.baseOffset + position;
+        this.readOffset = Math.min(readOffset, writeOffset);
+        log.info("recovered spillover journal {}, {} bytes pending", dir, pendingBytes());
+    }
+
+    /**
+     * @return false when the journal is full or closed
+     */
+    public synchronized boolean append(byte[] record) throws IOException {
+        Assert.isTrue(record.length > 0 && record.length <= segmentSize - RECORD_HEADER_SIZE * 2,
+            "record size must be positive and smaller than the segment size");
+        if (closed) {
+            return false;
+        }
+        Segment segment = segments.isEmpty() ? null : segments.getLast();
+        int position = Objects.isNull(segment) ? 0 : (int) (writeOffset - segment.baseOffset);
+        if (Objects.isNull(segment) || position >= segmentSize
+            || position + RECORD_HEADER_SIZE + record.length > segmentSize) {
+            if ((long) (segments.size() + 1) * segmentSize > maxSize) {
+                return false;
+            }
+            if (Objects.nonNull(segment) && position + 4 <= segmentSize) {
+                segment.buffer.putInt(position, END_OF_SEGMENT);
+            }
+            long baseOffset = Objects.isNull(segment) ? writeOffset : segment.baseOffset + segmentSize;
+            segment = new Segment(baseOffset, new File(dir, String.format("%020d", baseOffset)));
+            segments.add(segment);
+            position = 0;
+        }
+
+        // bytes first, the length makes the record visible to recovery
+        ByteBuffer bytes = segment.buffer.duplicate();
+        bytes.position(position + RECORD_HEADER_SIZE);
+        bytes.put(record);
+        segment.buffer.putInt(position + 4, UtilAll.crc32(record));
+        segment.buffer.putInt(position, record.length);
+        this.writeOffset = segment.baseOffset + position + RECORD_HEADER_SIZE + record.length;
+        return true;
+    }
+
+    /**
+     * @return the oldest record not read yet, null when all records were read
+     */
+    public synchronized byte[] peek() {
+        skipEndOfSegment();
+        if (readOffset >= writeOffset) {
+            return null;
+        }
+        Segment segment = segmentOf(readOffset);
+        int position = (int) (readOffset - segment.baseOffset);
+        return read(segment, position + RECORD_HEADER_SIZE, segment.buffer.getInt(position));
+    }
+
+    /**
+     * Mark the record returned by {@link #peek()} as read, deleting segments that were read completely.
+     */
+    public synchronized void advance() {
+        skipEndOfSegment();
+        if (readOffset >= writeOffset) {
+            return;
+        }
+        Segment segment = segmentOf(readOffset);
+        int position = (int) (readOffset - segment.baseOffset);
+        this.readOffset += RECORD_HEADER_SIZE + segment.buffer.getInt(position);
+        skipEndOfSegment();
+        checkpoint.putLong(0, readOffset);
+
+        while (segments.size() > 1 && segments.get(1).baseOffset <= readOffset) {
+            segments.removeFirst().delete();
+        }
+    }
+
+    private void skipEndOfSegment() {
+        while (readOffset < writeOffset) {
+            Segment segment = segmentOf(readOffset);
+            int position = (int) (readOffset - segment.baseOffset);
+            if (position + RECORD_HEADER_SIZE <= segmentSize && segment.buffer.getInt(position) != END_OF_SEGMENT) {
+                return;
+            }
+            this.readOffset = segment.baseOffset + segmentSize;
+        }
+    }
+
+    private Segment segmentOf(long offset) {
+        for (Segment segment : segments) {
+            if (offset < segment.baseOffset + segmentSize) {
+                return segment;
+            }
+        }
+        throw new IllegalStateException("no spillover segment holds offset " + offset);
+    }
+
+    /**
+     * @return bytes of the records not read yet
+     */
+    public synchronized long pendingBytes() {
+        return writeOffset - readOffset;
+    }
+
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        this.closed = true;
+        List<Segment> closing = new ArrayList<>(segments);
+        segments.clear();
+        closing.forEach(Segment::close);
+        unmap(checkpoint);
+        try {
+            checkpointFile.close();
+        } catch (IOException e) {
+            log.warn("close spillover checkpoint failed", e);
+        }
+    }
+
+    private static int crc(Segment segment, int position, int length) {
+        return UtilAll.crc32(read(segment, position, length));
+    }
+
+    private static byte[] read(Segment segment, int position, int length) {
+        byte[] bytes = new byte[length];
+        ByteBuffer buffer = segment.buffer.duplicate();
+        buffer.position(position);
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Release a mapping right away instead of when it is garbage collected, so deleted segments free their disk space.
+     */
+    private static void unmap(MappedByteBuffer buffer) {
+        try {
+            Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+            Object cleaner = cleanerMethod.invoke(buffer);
+            if (Objects.nonNull(cleaner)) {
+                cleaner.getClass().getMethod("clean").invoke(cleaner);
+            }
+        } catch (Exception e) {
+            log.debug("unmap spillover segment failed, released on garbage collection", e);
+        }
+    }
+
+    private class Segment {
+
+        private final long baseOffset;
+
+        private final File file;
+
+        private final MappedByteBuffer buffer;
+
+        private Segment(long baseOffset, File file) throws IOException {
+            this.baseOffset = baseOffset;
+            this.file = file;
+            try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+                this.buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+            }
+        }
+
+        private void close() {
+            unmap(buffer);
+        }
+
+        private void delete() {
+            close();
+            if (!file.delete()) {
+                log.warn("delete spillover segment {} failed", file);
+            }
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.cjie.spring.starter.rocketmq.core;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Creates executors running every task on a new virtual thread when the runtime supports them, looked up
+ * reflectively since the starter is built for Java 8.
+ */
+@Slf4j
+public final class VirtualThreadExecutors {
+
+    private VirtualThreadExecutors() {
+    }
+
+    /**
+     * @return a new virtual thread per task executor, or <code>null</code> when the runtime does not support virtual
+     * threads
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutor() {
+        Method factoryMethod = findFactoryMethod();
+        if (factoryMethod == null) {
+            return null;
+        }
+        try {
+            return (ExecutorService) factoryMethod.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            log.warn("create virtual thread executor failed", e);
+            return null;
+        }
+    }
+
+    private static Method findFactoryMethod() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+}
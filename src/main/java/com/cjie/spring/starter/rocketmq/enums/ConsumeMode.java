@@ -11,5 +11,11 @@ public enum ConsumeMode {
     /**
      * receive asynchronously delivered messages orderly. one queue, one thread
      */
-    ORDERLY
+    ORDERLY,
+
+    /**
+     * receive asynchronously delivered messages orderly per message keys. messages of one queue with different keys
+     * are consumed in parallel
+     */
+    ORDERLY_BY_KEY
 }
@@ -0,0 +1,18 @@
+package com.cjie.spring.starter.rocketmq.enums;
+
+public enum ConsumeResult {
+    /**
+     * consumed by the listener
+     */
+    SUCCESS,
+
+    /**
+     * listener failed, the message will be redelivered
+     */
+    RETRY,
+
+    /**
+     * listener failed and the message reached its max reconsume times, it goes to the dead letter queue
+     */
+    DLQ
+}
@@ -0,0 +1,18 @@
+package com.cjie.spring.starter.rocketmq.enums;
+
+public enum DedupKey {
+    /**
+     * consume every delivered message
+     */
+    NONE,
+
+    /**
+     * drop messages whose message id was already consumed, catches the duplicates of producer and broker retries
+     */
+    MSG_ID,
+
+    /**
+     * drop messages whose key was already consumed, messages without key fall back to their message id
+     */
+    KEY
+}
@@ -0,0 +1,13 @@
+package com.cjie.spring.starter.rocketmq.enums;
+
+public enum ProducerRouting {
+    /**
+     * spread sends evenly over the producers of the pool
+     */
+    ROUND_ROBIN,
+
+    /**
+     * send messages with equal keys through the same producer of the pool, messages without key go round robin
+     */
+    KEY_HASH
+}
@@ -0,0 +1,15 @@
+package com.cjie.spring.starter.rocketmq.enums;
+
+public enum QueueSelectorType {
+    /**
+     * hash code of the hash key modulo the number of queues, most keys move to another queue when the number of
+     * queues changes
+     */
+    HASH,
+
+    /**
+     * consistent hashing of the hash key over the queues, only about 1/n of the keys move when a queue is added or
+     * removed
+     */
+    CONSISTENT_HASH
+}
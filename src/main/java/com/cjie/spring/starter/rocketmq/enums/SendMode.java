@@ -0,0 +1,18 @@
+package com.cjie.spring.starter.rocketmq.enums;
+
+public enum SendMode {
+    /**
+     * wait for the broker's acknowledgement
+     */
+    SYNC,
+
+    /**
+     * return immediately, complete with a callback
+     */
+    ASYNC,
+
+    /**
+     * fire and forget, no acknowledgement
+     */
+    ONEWAY
+}
@@ -0,0 +1,19 @@
+package com.cjie.spring.starter.rocketmq.enums;
+
+public enum StartupMode {
+    /**
+     * start every listener container one by one when it is registered, during context refresh
+     */
+    EAGER,
+
+    /**
+     * start the listener containers in parallel in the last phase of the context lifecycle, after all singletons
+     * were created
+     */
+    LIFECYCLE,
+
+    /**
+     * start the listener containers in parallel once the application is ready
+     */
+    READY
+}
@@ -0,0 +1,174 @@
+package com.cjie.spring.starter.rocketmq.metrics;
+
+import com.cjie.spring.starter.rocketmq.core.RocketMQMetrics;
+import com.cjie.spring.starter.rocketmq.enums.ConsumeResult;
+import com.cjie.spring.starter.rocketmq.enums.SendMode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p> Publishes {@link RocketMQMetrics} to a Micrometer {@link MeterRegistry}: </p>
+ *
+ * <ul>
+ * <li><code>rocketmq.producer.send</code> timer, tags topic, mode (sync, async), result (success, failure) and
+ * instance (index in the producer pool)</li>
+ * <li><code>rocketmq.producer.oneway</code> counter of one-way sends, which have no latency, tags topic, result and
+ * instance</li>
+ * <li><code>rocketmq.producer.batch.size</code> summary of messages per batch send, tags topic and instance</li>
+ * <li><code>rocketmq.producer.spillover</code> counter of messages through the spillover journal, tags topic and
+ * action (spilled, replayed)</li>
+ * <li><code>rocketmq.consumer.consume</code> timer per listener invocation, tags group, topic and result</li>
+ * <li><code>rocketmq.consumer.messages</code> counter, tags group, topic and result (success, retry, dlq)</li>
+ * <li><code>rocketmq.consumer.batch.size</code> summary of messages per listener invocation, tags group and
+ * topic</li>
+ * </ul>
+ *
+ * Meters are looked up once per topic and consumer group and cached.
+ */
+public class MicrometerRocketMQMetrics implements RocketMQMetrics {
+
+    private final MeterRegistry registry;
+
+    private final ConcurrentMap<String, ProducerMeters> producerMeters = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, ConsumerMeters> consumerMeters = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, Counter> spilloverCounters = new ConcurrentHashMap<>();
+
+    public MicrometerRocketMQMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public void sent(String topic, SendMode mode, int messages, long costNanos, boolean success) {
+        sent("0", topic, mode, messages, costNanos, success);
+    }
+
+    @Override
+    public void sent(String instance, String topic, SendMode mode, int messages, long costNanos, boolean success) {
+        ProducerMeters meters = producerMeters.computeIfAbsent(instance + '\n' + topic,
+            key -> new ProducerMeters(instance, topic));
+        if (mode == SendMode.ONEWAY) {
+            (success ? meters.oneWaySuccess : meters.oneWayFailure).increment();
+            return;
+        }
+        (success ? meters.success : meters.failure).get(mode).record(costNanos, TimeUnit.NANOSECONDS);
+        if (messages > 1) {
+            meters.batchSize.record(messages);
+        }
+    }
+
+    @Override
+    public void spilled(String topic, boolean replayed) {
+        String action = replayed ? "replayed" : "spilled";
+        spilloverCounters.computeIfAbsent(action + '\n' + topic,
+            key -> Counter.builder("rocketmq.producer.spillover")
+                .description("Messages through the spillover journal")
+                .tag("topic", topic)
+                .tag("action", action)
+                .register(registry))
+            .increment();
+    }
+
+    @Override
+    public void consumed(String consumerGroup, String topic, int messages, long costNanos, ConsumeResult result) {
+        ConsumerMeters meters = consumerMeters.computeIfAbsent(consumerGroup + '\n' + topic,
+            key -> new ConsumerMeters(consumerGroup, topic));
+        meters.consume.get(result).record(costNanos, TimeUnit.NANOSECONDS);
+        meters.messages.get(result).increment(messages);
+        meters.batchSize.record(messages);
+    }
+
+    private static String tagValue(Enum<?> value) {
+        return value.name().toLowerCase();
+    }
+
+    private class ProducerMeters {
+
+        private final Map<SendMode, Timer> success = new EnumMap<>(SendMode.class);
+
+        private final Map<SendMode, Timer> failure = new EnumMap<>(SendMode.class);
+
+        private final Counter oneWaySuccess;
+
+        private final Counter oneWayFailure;
+
+        private final DistributionSummary batchSize;
+
+        private ProducerMeters(String instance, String topic) {
+            for (SendMode mode : SendMode.values()) {
+                if (mode != SendMode.ONEWAY) {
+                    success.put(mode, sendTimer(instance, topic, mode, "success"));
+                    failure.put(mode, sendTimer(instance, topic, mode, "failure"));
+                }
+            }
+            oneWaySuccess = oneWayCounter(instance, topic, "success");
+            oneWayFailure = oneWayCounter(instance, topic, "failure");
+            batchSize = DistributionSummary.builder("rocketmq.producer.batch.size")
+                .description("Messages per batch send")
+                .tag("topic", topic)
+                .tag("instance", instance)
+                .register(registry);
+        }
+
+        private Timer sendTimer(String instance, String topic, SendMode mode, String result) {
+            return Timer.builder("rocketmq.producer.send")
+                .description("Send latency")
+                .tag("topic", topic)
+                .tag("mode", tagValue(mode))
+                .tag("result", result)
+                .tag("instance", instance)
+                .publishPercentileHistogram()
+                .register(registry);
+        }
+
+        private Counter oneWayCounter(String instance, String topic, String result) {
+            return Counter.builder("rocketmq.producer.oneway")
+                .description("One-way sends")
+                .tag("topic", topic)
+                .tag("result", result)
+                .tag("instance", instance)
+                .register(registry);
+        }
+    }
+
+    private class ConsumerMeters {
+
+        private final Map<ConsumeResult, Timer> consume = new EnumMap<>(ConsumeResult.class);
+
+        private final Map<ConsumeResult, Counter> messages = new EnumMap<>(ConsumeResult.class);
+
+        private final DistributionSummary batchSize;
+
+        private ConsumerMeters(String consumerGroup, String topic) {
+            for (ConsumeResult result : ConsumeResult.values()) {
+                consume.put(result, Timer.builder("rocketmq.consumer.consume")
+                    .description("Listener invocation latency")
+                    .tag("group", consumerGroup)
+                    .tag("topic", topic)
+                    .tag("result", tagValue(result))
+                    .publishPercentileHistogram()
+                    .register(registry));
+                messages.put(result, Counter.builder("rocketmq.consumer.messages")
+                    .description("Consumed messages")
+                    .tag("group", consumerGroup)
+                    .tag("topic", topic)
+                    .tag("result", tagValue(result))
+                    .register(registry));
+            }
+            batchSize = DistributionSummary.builder("rocketmq.consumer.batch.size")
+                .description("Messages per listener invocation")
+                .tag("group", consumerGroup)
+                .tag("topic", topic)
+                .register(registry);
+        }
+    }
+}
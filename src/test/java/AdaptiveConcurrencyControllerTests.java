@@ -0,0 +1,55 @@
+import com.cjie.spring.starter.rocketmq.core.AdaptiveConcurrencyController;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AdaptiveConcurrencyControllerTests {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(500);
+
+    @Test
+    public void increaseWithBacklog() {
+        AdaptiveConcurrencyController controller = new AdaptiveConcurrencyController(2, 42, 20, 100, 0.1);
+
+        controller.record(10, 10 * FAST, true);
+        assertThat(controller.adjust(100)).isEqualTo(24);
+
+        controller.record(10, 10 * FAST, true);
+        assertThat(controller.adjust(0)).isEqualTo(24);
+
+        for (int i = 0; i < 10; i++) {
+            controller.record(1, FAST, true);
+            controller.adjust(100);
+        }
+        assertThat(controller.getLimit()).isEqualTo(42);
+    }
+
+    @Test
+    public void decreaseOnLatencyOrErrors() {
+        AdaptiveConcurrencyController controller = new AdaptiveConcurrencyController(2, 42, 20, 100, 0.1);
+
+        controller.record(10, 10 * SLOW, true);
+        assertThat(controller.adjust(100)).isEqualTo(14);
+
+        controller.record(8, 8 * FAST, true);
+        controller.record(2, 2 * FAST, false);
+        assertThat(controller.adjust(100)).isEqualTo(9);
+
+        for (int i = 0; i < 10; i++) {
+            controller.record(1, SLOW, true);
+            controller.adjust(100);
+        }
+        assertThat(controller.getLimit()).isEqualTo(2);
+    }
+
+    @Test
+    public void keepLimitWithoutSamples() {
+        AdaptiveConcurrencyController controller = new AdaptiveConcurrencyController(2, 42, 20, 100, 0.1);
+
+        assertThat(controller.adjust(100)).isEqualTo(20);
+    }
+}
@@ -0,0 +1,478 @@
+
+
+import com.cjie.spring.starter.rocketmq.codec.JsonMessageCodec;
+import com.cjie.spring.starter.rocketmq.core.DefaultRocketMQListenerContainer;
+import com.cjie.spring.starter.rocketmq.core.DelayLevels;
+import com.cjie.spring.starter.rocketmq.core.DeliverTimeScheduler;
+import com.cjie.spring.starter.rocketmq.core.MessageDedupStore;
+import com.cjie.spring.starter.rocketmq.core.MessageDeduplicator;
+import com.cjie.spring.starter.rocketmq.core.RocketMQFluxListener;
+import com.cjie.spring.starter.rocketmq.core.RocketMQFluxListenerAdapter;
+import com.cjie.spring.starter.rocketmq.core.RocketMQListener;
+import com.cjie.spring.starter.rocketmq.enums.ConsumeMode;
+import com.cjie.spring.starter.rocketmq.enums.DedupKey;
+import com.cjie.spring.starter.rocketmq.metrics.MicrometerRocketMQMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.rocketmq.client.consumer.DefaultMQPushConsumer;
+import org.apache.rocketmq.client.consumer.listener.ConsumeConcurrentlyContext;
+import org.apache.rocketmq.client.consumer.listener.ConsumeConcurrentlyStatus;
+import org.apache.rocketmq.client.consumer.listener.ConsumeOrderlyContext;
+import org.apache.rocketmq.client.consumer.listener.ConsumeOrderlyStatus;
+import org.apache.rocketmq.client.consumer.listener.MessageListenerConcurrently;
+import org.apache.rocketmq.client.consumer.listener.MessageListenerOrderly;
+import org.apache.rocketmq.client.exception.MQClientException;
+import org.apache.rocketmq.client.producer.DefaultMQProducer;
+import org.apache.rocketmq.client.producer.SendResult;
+import org.apache.rocketmq.common.message.Message;
+import org.apache.rocketmq.common.message.MessageConst;
+import org.apache.rocketmq.common.message.MessageExt;
+import org.apache.rocketmq.common.message.MessageQueue;
+import org.junit.Test;
+import org.reactivestreams.Subscription;
+import reactor.core.publisher.BaseSubscriber;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DefaultRocketMQListenerContainerTests {
+
+    @Test
+    public void partialBatchAck() {
+        List<String> consumed = new ArrayList<>();
+        DefaultRocketMQListenerContainer container = newContainer(message -> {
+            if ("c".equals(message)) {
+                throw new IllegalStateException("bad message");
+            }
+            consumed.add(message);
+        });
+
+        ConsumeConcurrentlyContext context = new ConsumeConcurrentlyContext(new MessageQueue("test", "broker", 0));
+        ConsumeConcurrentlyStatus status = container.new DefaultMessageListenerConcurrently()
+            .consumeMessage(messages("a", "b", "c", "d"), context);
+
+        assertThat(status).isEqualTo(ConsumeConcurrentlyStatus.CONSUME_SUCCESS);
+        assertThat(context.getAckIndex()).isEqualTo(1);
+        assertThat(consumed).containsExactly("a", "b");
+    }
+
+    @Test
+    public void firstMessageFailureRetriesWholeBatch() {
+        DefaultRocketMQListenerContainer container = newContainer(message -> {
+            throw new IllegalStateException("bad message");
+        });
+
+        ConsumeConcurrentlyContext context = new ConsumeConcurrentlyContext(new MessageQueue("test", "broker", 0));
+        ConsumeConcurrentlyStatus status = container.new DefaultMessageListenerConcurrently()
+            .consumeMessage(messages("a", "b"), context);
+
+        assertThat(status).isEqualTo(ConsumeConcurrentlyStatus.RECONSUME_LATER);
+    }
+
+    @Test
+    public void consumeMetrics() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        DefaultRocketMQListenerContainer container = newContainer(message -> {
+            if ("c".equals(message)) {
+                throw new IllegalStateException("bad message");
+            }
+        });
+        container.setConsumerGroup("group");
+        container.setTopic("test");
+        container.setMetrics(new MicrometerRocketMQMetrics(registry));
+
+        container.new DefaultMessageListenerConcurrently().consumeMessage(messages("a", "b", "c"),
+            new ConsumeConcurrentlyContext(new MessageQueue("test", "broker", 0)));
+
+        assertThat(registry.get("rocketmq.consumer.messages").tag("result", "success").counter().count()).isEqualTo(2);
+        assertThat(registry.get("rocketmq.consumer.messages").tag("result", "retry").counter().count()).isEqualTo(1);
+        assertThat(registry.get("rocketmq.consumer.consume").tag("result", "success").timer().count()).isEqualTo(2);
+    }
+
+    @Test
+    public void dedupDropsConsumedMessages() {
+        List<String> consumed = new ArrayList<>();
+        DefaultRocketMQListenerContainer container = newContainer(message -> {
+            if ("c".equals(message) && !consumed.contains("fail")) {
+                consumed.add("fail");
+                throw new IllegalStateException("bad message");
+            }
+            consumed.add(message);
+        });
+        Set<String> stored = new HashSet<>(Collections.singleton("store"));
+        container.setDeduplicator(new MessageDeduplicator("group", DedupKey.KEY, 100, 60000, new MessageDedupStore() {
+            @Override
+            public boolean isConsumed(String consumerGroup, String key) {
+                return stored.contains(key);
+            }
+
+            @Override
+            public void markConsumed(String consumerGroup, String key, long windowMillis) {
+                stored.add(key);
+            }
+        }));
+
+        List<MessageExt> msgs = messages("a", "b", "a", "c", "store");
+        msgs.forEach(messageExt -> messageExt.setKeys(new String(messageExt.getBody(), Charset.forName("UTF-8"))));
+        MessageListenerConcurrently listener = container.new DefaultMessageListenerConcurrently();
+        ConsumeConcurrentlyContext context = new ConsumeConcurrentlyContext(new MessageQueue("test", "broker", 0));
+        assertThat(listener.consumeMessage(msgs, context)).isEqualTo(ConsumeConcurrentlyStatus.CONSUME_SUCCESS);
+        assertThat(context.getAckIndex()).isEqualTo(2);
+
+        // redelivery of the failed tail
+        listener.consumeMessage(msgs.subList(3, 5), context);
+        assertThat(consumed).containsExactly("a", "b", "fail", "c");
+        assertThat(stored).contains("a", "b", "c");
+    }
+
+    @Test
+    public void keyOrderedRedeliversOnlyUnconsumedMessages() {
+        List<String> consumed = Collections.synchronizedList(new ArrayList<>());
+        AtomicBoolean failed = new AtomicBoolean();
+        DefaultRocketMQListenerContainer container = newContainer(message -> {
+            if ("b:1".equals(message) && failed.compareAndSet(false, true)) {
+                throw new IllegalStateException("bad message");
+            }
+            consumed.add(message);
+        });
+        container.setConsumeMode(ConsumeMode.ORDERLY_BY_KEY);
+        container.setKeyOrderedConcurrency(4);
+        container.setKeyOrderedExecutor(Executors.newFixedThreadPool(4));
+
+        List<MessageExt> msgs = messages("a:0", "b:0", "c:0", "a:1", "b:1", "c:1", "a:2", "b:2", "c:2");
+        for (int i = 0; i < msgs.size(); i++) {
+            msgs.get(i).setQueueOffset(i);
+            msgs.get(i).setKeys(new String(msgs.get(i).getBody(), Charset.forName("UTF-8")).substring(0, 1));
+        }
+        MessageListenerOrderly listener = container.new DefaultMessageListenerKeyOrderly();
+        ConsumeOrderlyContext context = new ConsumeOrderlyContext(new MessageQueue("test", "broker", 0));
+
+        assertThat(listener.consumeMessage(msgs, context)).isEqualTo(ConsumeOrderlyStatus.SUSPEND_CURRENT_QUEUE_A_MOMENT);
+        assertThat(consumed).contains("a:2", "c:2", "b:0").doesNotContain("b:1", "b:2");
+
+        assertThat(listener.consumeMessage(msgs, context)).isEqualTo(ConsumeOrderlyStatus.SUCCESS);
+        assertThat(consumed).hasSize(9).doesNotHaveDuplicates();
+        for (String key : Arrays.asList("a", "b", "c")) {
+            assertThat(consumed.stream().filter(message -> message.startsWith(key)).collect(Collectors.toList()))
+                .containsExactly(key + ":0", key + ":1", key + ":2");
+        }
+        container.getKeyOrderedExecutor().shutdown();
+    }
+
+    @Test
+    public void keyOrderedForgetsSentBackAndDroppedQueues() {
+        List<String> consumed = new ArrayList<>();
+        DefaultRocketMQListenerContainer container = newContainer(message -> {
+            if ("b".equals(message)) {
+                throw new IllegalStateException("bad message");
+            }
+            consumed.add(message);
+        });
+        DefaultMQPushConsumer consumer = new DefaultMQPushConsumer("group");
+        consumer.setMaxReconsumeTimes(1);
+        container.setConsumer(consumer);
+        container.setConsumeMode(ConsumeMode.ORDERLY_BY_KEY);
+        container.setKeyOrderedConcurrency(1);
+
+        List<MessageExt> msgs = messages("a", "b");
+        for (int i = 0; i < msgs.size(); i++) {
+            msgs.get(i).setQueueOffset(i);
+        }
+        MessageListenerOrderly listener = container.new DefaultMessageListenerKeyOrderly();
+        ConsumeOrderlyContext context = new ConsumeOrderlyContext(new MessageQueue("test", "broker", 0));
+        listener.consumeMessage(msgs, context);
+        listener.consumeMessage(msgs, context);
+        assertThat(consumed).containsExactly("a");
+
+        // at the max reconsume times the client sends the window back and moves on
+        msgs.forEach(messageExt -> messageExt.setReconsumeTimes(1));
+        listener.consumeMessage(msgs, context);
+        msgs.forEach(messageExt -> messageExt.setReconsumeTimes(0));
+        listener.consumeMessage(msgs, context);
+        assertThat(consumed).containsExactly("a", "a");
+
+        // queue 1 is not held by the consumer, a window of another queue forgets its offsets
+        ConsumeOrderlyContext dropped = new ConsumeOrderlyContext(new MessageQueue("test", "broker", 1));
+        listener.consumeMessage(msgs, dropped);
+        listener.consumeMessage(msgs, context);
+        listener.consumeMessage(msgs, dropped);
+        assertThat(consumed).containsExactly("a", "a", "a", "a");
+    }
+
+    @Test
+    public void listenerExecutorAcksPastMessagesSentBack() {
+        List<MessageExt> sentBack = new CopyOnWriteArrayList<>();
+        DefaultRocketMQListenerContainer container = newContainer(message -> {
+            if ("b".equals(message) || "d".equals(message)) {
+                throw new IllegalStateException("bad message");
+            }
+        });
+        container.setConsumer(new DefaultMQPushConsumer("group") {
+            @Override
+            public void sendMessageBack(MessageExt msg, int delayLevel, String brokerName) throws MQClientException {
+                if ("d".equals(new String(msg.getBody(), Charset.forName("UTF-8")))) {
+                    throw new MQClientException("broker down", null);
+                }
+                sentBack.add(msg);
+            }
+        });
+        ExecutorService executor = Executors.newCachedThreadPool();
+        container.setListenerExecutor(executor);
+
+        List<MessageExt> msgs = messages("a", "b", "c", "d", "e");
+        ConsumeConcurrentlyContext context = new ConsumeConcurrentlyContext(new MessageQueue("test", "broker", 0));
+        ConsumeConcurrentlyStatus status = container.new DefaultMessageListenerConcurrently()
+            .consumeMessage(msgs, context);
+
+        // b is sent back already, the client only sends back d and the messages after it
+        assertThat(status).isEqualTo(ConsumeConcurrentlyStatus.CONSUME_SUCCESS);
+        assertThat(sentBack).containsExactly(msgs.get(1));
+        assertThat(context.getAckIndex()).isEqualTo(2);
+        executor.shutdown();
+    }
+
+    @Test
+    public void listenerExecutorCapsConcurrency() {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        DefaultRocketMQListenerContainer container = newContainer(message -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            running.decrementAndGet();
+            if ("c".equals(message)) {
+                throw new IllegalStateException("bad message");
+            }
+        });
+        ExecutorService executor = Executors.newCachedThreadPool();
+        container.setListenerExecutor(executor);
+        container.setListenerConcurrency(2);
+
+        ConsumeConcurrentlyContext context = new ConsumeConcurrentlyContext(new MessageQueue("test", "broker", 0));
+        ConsumeConcurrentlyStatus status = container.new DefaultMessageListenerConcurrently()
+            .consumeMessage(messages("a", "b", "c", "d", "e", "f"), context);
+
+        // without a started consumer the failed message can not be sent back, the batch is acknowledged by index
+        assertThat(status).isEqualTo(ConsumeConcurrentlyStatus.CONSUME_SUCCESS);
+        assertThat(context.getAckIndex()).isEqualTo(1);
+        assertThat(maxRunning.get()).isEqualTo(2);
+        executor.shutdown();
+    }
+
+    @Test
+    public void fluxListenerFollowsDemand() throws Exception {
+        List<String> received = Collections.synchronizedList(new ArrayList<>());
+        AtomicReference<Subscription> subscription = new AtomicReference<>();
+        RocketMQFluxListener<String> fluxListener = messages -> subscriber -> messages.subscribe(new BaseSubscriber<String>() {
+            @Override
+            protected void hookOnSubscribe(Subscription s) {
+                subscription.set(s);
+                s.request(1);
+            }
+
+            @Override
+            protected void hookOnNext(String message) {
+                received.add(message);
+            }
+        });
+        RocketMQFluxListenerAdapter adapter = new RocketMQFluxListenerAdapter(fluxListener);
+        DefaultRocketMQListenerContainer container = newContainer(message -> adapter.onMessage(message));
+
+        CompletableFuture<ConsumeConcurrentlyStatus> status = CompletableFuture.supplyAsync(() ->
+            container.new DefaultMessageListenerConcurrently().consumeMessage(messages("a", "b"),
+                new ConsumeConcurrentlyContext(new MessageQueue("test", "broker", 0))));
+
+        Thread.sleep(200);
+        assertThat(received).containsExactly("a");
+        assertThat(status.isDone()).isFalse();
+
+        subscription.get().request(1);
+        assertThat(status.get(1, TimeUnit.SECONDS)).isEqualTo(ConsumeConcurrentlyStatus.CONSUME_SUCCESS);
+        assertThat(received).containsExactly("a", "b");
+        adapter.destroy();
+    }
+
+    @Test
+    public void deferMessagesBeforeDeliverTime() throws Exception {
+        List<String> consumed = new CopyOnWriteArrayList<>();
+        List<Message> relayed = new ArrayList<>();
+        DefaultRocketMQListenerContainer container = newContainer(consumed::add);
+        DefaultRocketMQListenerContainer.DefaultMessageListenerConcurrently listener =
+            container.new DefaultMessageListenerConcurrently();
+        container.setDeliverTimeExecutor(Executors.newSingleThreadExecutor());
+        container.setDeliverTimeScheduler(new DeliverTimeScheduler("group", new DelayLevels("1s 5s 10s 1h"),
+            relayProducer(relayed, new AtomicBoolean()), listener::consumeHeld));
+
+        List<MessageExt> msgs = messages("a", "b", "c");
+        long now = System.currentTimeMillis();
+        msgs.get(1).putUserProperty(DelayLevels.PROPERTY_DELIVER_TIME, String.valueOf(now + 200));
+        msgs.get(2).putUserProperty(DelayLevels.PROPERTY_DELIVER_TIME, String.valueOf(now + 7000));
+        ConsumeConcurrentlyStatus status = listener.consumeMessage(msgs,
+            new ConsumeConcurrentlyContext(new MessageQueue("test", "broker", 0)));
+
+        assertThat(status).isEqualTo(ConsumeConcurrentlyStatus.CONSUME_SUCCESS);
+        assertThat(consumed).containsExactly("a");
+        assertThat(relayed).hasSize(1);
+        assertThat(relayed.get(0).getTopic()).isEqualTo("%RETRY%group");
+        assertThat(relayed.get(0).getDelayTimeLevel()).isEqualTo(2);
+        assertThat(relayed.get(0).getProperty(MessageConst.PROPERTY_RETRY_TOPIC)).isEqualTo("test");
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (consumed.size() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(consumed).containsExactly("a", "b");
+        assertThat(System.currentTimeMillis()).isGreaterThanOrEqualTo(now + 200);
+        container.getDeliverTimeScheduler().close();
+        container.getDeliverTimeExecutor().shutdown();
+    }
+
+    @Test
+    public void relayHeldMessagesOnClose() throws Exception {
+        List<String> consumed = new CopyOnWriteArrayList<>();
+        List<Message> relayed = new CopyOnWriteArrayList<>();
+        DefaultRocketMQListenerContainer container = newContainer(consumed::add);
+        DefaultRocketMQListenerContainer.DefaultMessageListenerConcurrently listener =
+            container.new DefaultMessageListenerConcurrently();
+        container.setDeliverTimeScheduler(new DeliverTimeScheduler("group", new DelayLevels("1s 5s 10s 1h"),
+            relayProducer(relayed, new AtomicBoolean()), listener::consumeHeld));
+
+        List<MessageExt> msgs = messages("a");
+        msgs.get(0).putUserProperty(DelayLevels.PROPERTY_DELIVER_TIME, String.valueOf(System.currentTimeMillis() + 800));
+        assertThat(listener.consumeMessage(msgs, new ConsumeConcurrentlyContext(new MessageQueue("test", "broker", 0))))
+            .isEqualTo(ConsumeConcurrentlyStatus.CONSUME_SUCCESS);
+        assertThat(relayed).isEmpty();
+
+        // below the first level the relay goes without delay, the group holds the rest again
+        container.getDeliverTimeScheduler().close();
+        assertThat(relayed).hasSize(1);
+        assertThat(relayed.get(0).getTopic()).isEqualTo("%RETRY%group");
+        assertThat(relayed.get(0).getDelayTimeLevel()).isEqualTo(0);
+        Thread.sleep(1000);
+        assertThat(consumed).isEmpty();
+    }
+
+    @Test
+    public void acknowledgeDeferredMessagesOnlyBeforeFailure() {
+        List<String> consumed = new ArrayList<>();
+        List<Message> relayed = new ArrayList<>();
+        AtomicBoolean relayDown = new AtomicBoolean();
+        DefaultRocketMQListenerContainer container = newContainer(message -> {
+            if ("c".equals(message)) {
+                throw new IllegalStateException("bad message");
+            }
+            consumed.add(message);
+        });
+        DefaultRocketMQListenerContainer.DefaultMessageListenerConcurrently listener =
+            container.new DefaultMessageListenerConcurrently();
+        container.setDeliverTimeScheduler(new DeliverTimeScheduler("group", new DelayLevels("1s 5s 10s 1h"),
+            relayProducer(relayed, relayDown), listener::consumeHeld));
+
+        List<MessageExt> msgs = messages("a", "b", "c", "d");
+        long deliverTime = System.currentTimeMillis() + 7000;
+        msgs.get(1).putUserProperty(DelayLevels.PROPERTY_DELIVER_TIME, String.valueOf(deliverTime));
+        msgs.get(3).putUserProperty(DelayLevels.PROPERTY_DELIVER_TIME, String.valueOf(deliverTime));
+        ConsumeConcurrentlyContext context = new ConsumeConcurrentlyContext(new MessageQueue("test", "broker", 0));
+
+        // without a started consumer the failed message can not be sent back, the message after it is not deferred
+        assertThat(listener.consumeMessage(msgs, context)).isEqualTo(ConsumeConcurrentlyStatus.CONSUME_SUCCESS);
+        assertThat(context.getAckIndex()).isEqualTo(1);
+        assertThat(consumed).containsExactly("a");
+        assertThat(relayed).hasSize(1);
+        assertThat(new String(relayed.get(0).getBody(), Charset.forName("UTF-8"))).isEqualTo("b");
+
+        // a failed relay leaves the message to the client for retry
+        relayDown.set(true);
+        context = new ConsumeConcurrentlyContext(new MessageQueue("test", "broker", 0));
+        assertThat(listener.consumeMessage(msgs.subList(3, 4), context))
+            .isEqualTo(ConsumeConcurrentlyStatus.RECONSUME_LATER);
+        assertThat(relayed).hasSize(1);
+        container.getDeliverTimeScheduler().close();
+    }
+
+    @Test
+    public void sendHeldMessageBackWhenConsumeFails() throws Exception {
+        List<MessageExt> sentBack = new CopyOnWriteArrayList<>();
+        List<String> brokers = new CopyOnWriteArrayList<>();
+        DefaultRocketMQListenerContainer container = newContainer(message -> {
+            throw new IllegalStateException("bad message");
+        });
+        container.setConsumer(new DefaultMQPushConsumer("group") {
+            @Override
+            public void sendMessageBack(MessageExt msg, int delayLevel, String brokerName) {
+                brokers.add(String.valueOf(brokerName));
+                sentBack.add(msg);
+            }
+        });
+        DefaultRocketMQListenerContainer.DefaultMessageListenerConcurrently listener =
+            container.new DefaultMessageListenerConcurrently();
+        container.setDeliverTimeExecutor(Executors.newSingleThreadExecutor());
+        container.setDeliverTimeScheduler(new DeliverTimeScheduler("group", new DelayLevels("1s 5s 10s 1h"),
+            null, listener::consumeHeld));
+
+        List<MessageExt> msgs = messages("a");
+        msgs.get(0).putUserProperty(DelayLevels.PROPERTY_DELIVER_TIME, String.valueOf(System.currentTimeMillis() + 50));
+        assertThat(listener.consumeMessage(msgs, new ConsumeConcurrentlyContext(new MessageQueue("test", "broker", 0))))
+            .isEqualTo(ConsumeConcurrentlyStatus.CONSUME_SUCCESS);
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (sentBack.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(sentBack).containsExactly(msgs.get(0));
+        assertThat(brokers).containsExactly("null");
+        container.getDeliverTimeScheduler().close();
+        container.getDeliverTimeExecutor().shutdown();
+    }
+
+    private DefaultMQProducer relayProducer(List<Message> relayed, AtomicBoolean down) {
+        return new DefaultMQProducer() {
+            @Override
+            public SendResult send(Message msg) throws MQClientException {
+                if (down.get()) {
+                    throw new MQClientException("no route info of this topic", null);
+                }
+                relayed.add(msg);
+                return null;
+            }
+        };
+    }
+
+    private DefaultRocketMQListenerContainer newContainer(RocketMQListener<String> listener) {
+        DefaultRocketMQListenerContainer container = new DefaultRocketMQListenerContainer();
+        container.setRocketMQListener(listener);
+        container.setMessageType(String.class);
+        container.setMessageCodec(new JsonMessageCodec());
+        container.setMessageDecoder(container.getMessageCodec().decoderFor(String.class));
+        return container;
+    }
+
+    private List<MessageExt> messages(String... bodies) {
+        List<MessageExt> msgs = new ArrayList<>();
+        Arrays.stream(bodies).forEach(body -> {
+            MessageExt messageExt = new MessageExt();
+            messageExt.setTopic("test");
+            messageExt.setBody(body.getBytes(Charset.forName("UTF-8")));
+            msgs.add(messageExt);
+        });
+        return msgs;
+    }
+}
@@ -0,0 +1,189 @@
+import com.cjie.spring.starter.rocketmq.codec.JsonMessageCodec;
+import com.cjie.spring.starter.rocketmq.core.DefaultRocketMQPullListenerContainer;
+import org.apache.rocketmq.client.consumer.DefaultMQPullConsumer;
+import org.apache.rocketmq.client.consumer.PullResult;
+import org.apache.rocketmq.client.consumer.PullStatus;
+import org.apache.rocketmq.client.consumer.PullTaskCallback;
+import org.apache.rocketmq.client.consumer.PullTaskContext;
+import org.apache.rocketmq.client.consumer.store.OffsetStore;
+import org.apache.rocketmq.client.consumer.store.ReadOffsetType;
+import org.apache.rocketmq.common.message.MessageExt;
+import org.apache.rocketmq.common.message.MessageQueue;
+import org.junit.Test;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DefaultRocketMQPullListenerContainerTests {
+
+    private final MessageQueue messageQueue = new MessageQueue("test", "broker", 0);
+
+    @Test
+    public void pullFromCommittedOffsetAfterFailure() {
+        List<List<String>> received = new ArrayList<>();
+        DefaultRocketMQPullListenerContainer container = new DefaultRocketMQPullListenerContainer();
+        container.setRocketMQPullListener((messages, offsetCommitter) -> {
+            received.add(new ArrayList<>((List<String>) messages));
+            if (received.size() == 2) {
+                throw new IllegalStateException("bulk write failed");
+            }
+            if (received.size() > 2) {
+                offsetCommitter.commit();
+            }
+        });
+        container.setMessageType(String.class);
+        container.setMessageCodec(new JsonMessageCodec());
+        container.setMessageDecoder(container.getMessageCodec().decoderFor(String.class));
+        MemoryOffsetStore offsetStore = new MemoryOffsetStore();
+        container.setOffsetStore(offsetStore);
+        container.setStarted(true);
+
+        PullTaskContext context = new PullTaskContext();
+        context.setPullConsumer(new StubPullConsumer());
+        PullTaskCallback callback = container.new DefaultPullTaskCallback();
+
+        callback.doPullTask(messageQueue, context);
+        assertThat(offsetStore.readOffset(messageQueue, ReadOffsetType.READ_FROM_MEMORY)).isEqualTo(-1);
+        callback.doPullTask(messageQueue, context);
+        assertThat(context.getPullNextDelayTimeMillis()).isEqualTo(1000);
+        callback.doPullTask(messageQueue, context);
+        assertThat(offsetStore.readOffset(messageQueue, ReadOffsetType.READ_FROM_MEMORY)).isEqualTo(2);
+        callback.doPullTask(messageQueue, context);
+        callback.doPullTask(messageQueue, context);
+
+        assertThat(received).hasSize(4);
+        assertThat(received.get(0)).containsExactly("a", "b");
+        assertThat(received.get(1)).containsExactly("c");
+        assertThat(received.get(2)).containsExactly("a", "b");
+        assertThat(received.get(3)).containsExactly("c");
+        assertThat(offsetStore.readOffset(messageQueue, ReadOffsetType.READ_FROM_MEMORY)).isEqualTo(3);
+        assertThat(context.getPullNextDelayTimeMillis()).isEqualTo(0);
+    }
+
+    @Test
+    public void skipBatchPulledWhilePaused() {
+        List<List<String>> received = new ArrayList<>();
+        DefaultRocketMQPullListenerContainer container = new DefaultRocketMQPullListenerContainer();
+        container.setRocketMQPullListener((messages, offsetCommitter) -> {
+            received.add(new ArrayList<>((List<String>) messages));
+            offsetCommitter.commit();
+        });
+        container.setMessageType(String.class);
+        container.setMessageCodec(new JsonMessageCodec());
+        container.setMessageDecoder(container.getMessageCodec().decoderFor(String.class));
+        MemoryOffsetStore offsetStore = new MemoryOffsetStore();
+        container.setOffsetStore(offsetStore);
+        container.setStarted(true);
+
+        PullTaskContext context = new PullTaskContext();
+        context.setPullConsumer(new StubPullConsumer() {
+
+            private boolean pausedOnce;
+
+            @Override
+            public PullResult pullBlockIfNotFound(MessageQueue mq, String subExpression, long offset, int maxNums) {
+                // the container is stopped while the first pull waits on the broker
+                if (!pausedOnce) {
+                    pausedOnce = true;
+                    container.pause();
+                    assertThat(container.getPullTasks().get()).isEqualTo(1);
+                }
+                return super.pullBlockIfNotFound(mq, subExpression, offset, maxNums);
+            }
+        });
+        PullTaskCallback callback = container.new DefaultPullTaskCallback();
+
+        callback.doPullTask(messageQueue, context);
+        assertThat(received).isEmpty();
+        assertThat(context.getPullNextDelayTimeMillis()).isEqualTo(1000);
+        assertThat(container.getPullTasks().get()).isEqualTo(0);
+        assertThat(container.getNextOffsets()).isEmpty();
+
+        container.resume();
+        callback.doPullTask(messageQueue, context);
+        assertThat(received).hasSize(1);
+        assertThat(received.get(0)).containsExactly("a", "b");
+        assertThat(offsetStore.readOffset(messageQueue, ReadOffsetType.READ_FROM_MEMORY)).isEqualTo(2);
+    }
+
+    private static MessageExt message(String body) {
+        MessageExt messageExt = new MessageExt();
+        messageExt.setTopic("test");
+        messageExt.setBody(body.getBytes(Charset.forName("UTF-8")));
+        return messageExt;
+    }
+
+    private static class StubPullConsumer extends DefaultMQPullConsumer {
+
+        private final Map<Long, PullResult> results = new HashMap<>();
+
+        StubPullConsumer() {
+            List<MessageExt> first = new ArrayList<>();
+            first.add(message("a"));
+            first.add(message("b"));
+            List<MessageExt> second = new ArrayList<>();
+            second.add(message("c"));
+            results.put(0L, new PullResult(PullStatus.FOUND, 2, 0, 3, first));
+            results.put(2L, new PullResult(PullStatus.FOUND, 3, 0, 3, second));
+            results.put(3L, new PullResult(PullStatus.NO_NEW_MSG, 3, 0, 3, null));
+        }
+
+        @Override
+        public long minOffset(MessageQueue mq) {
+            return 0;
+        }
+
+        @Override
+        public PullResult pullBlockIfNotFound(MessageQueue mq, String subExpression, long offset, int maxNums) {
+            return results.get(offset);
+        }
+    }
+
+    private static class MemoryOffsetStore implements OffsetStore {
+
+        private final Map<MessageQueue, Long> offsets = new ConcurrentHashMap<>();
+
+        @Override
+        public void load() {
+        }
+
+        @Override
+        public void updateOffset(MessageQueue mq, long offset, boolean increaseOnly) {
+            offsets.merge(mq, offset, increaseOnly ? Math::max : (current, updated) -> updated);
+        }
+
+        @Override
+        public long readOffset(MessageQueue mq, ReadOffsetType type) {
+            return offsets.getOrDefault(mq, -1L);
+        }
+
+        @Override
+        public void persistAll(Set<MessageQueue> mqs) {
+        }
+
+        @Override
+        public void persist(MessageQueue mq) {
+        }
+
+        @Override
+        public void removeOffset(MessageQueue mq) {
+            offsets.remove(mq);
+        }
+
+        @Override
+        public Map<MessageQueue, Long> cloneOffsetTable(String topic) {
+            return new HashMap<>(offsets);
+        }
+
+        @Override
+        public void updateConsumeOffsetToBroker(MessageQueue mq, long offset, boolean isOneway) {
+        }
+    }
+}
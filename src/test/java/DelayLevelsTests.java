@@ -0,0 +1,69 @@
+import com.cjie.spring.starter.rocketmq.core.DelayLevels;
+import org.apache.rocketmq.common.message.Message;
+import org.apache.rocketmq.common.message.MessageAccessor;
+import org.apache.rocketmq.common.message.MessageExt;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DelayLevelsTests {
+
+    @Test
+    public void parseLevels() {
+        DelayLevels delayLevels = new DelayLevels("1s 5s 10s 2m 1h 1d");
+
+        assertThat(delayLevels.delayOf(0)).isEqualTo(0);
+        assertThat(delayLevels.delayOf(1)).isEqualTo(1000);
+        assertThat(delayLevels.delayOf(4)).isEqualTo(120000);
+        assertThat(delayLevels.delayOf(5)).isEqualTo(3600000);
+        assertThat(delayLevels.delayOf(6)).isEqualTo(86400000);
+        assertThat(DelayLevels.getDefault().delayOf(18)).isEqualTo(7200000);
+    }
+
+    @Test
+    public void levelForDelay() {
+        DelayLevels delayLevels = new DelayLevels("1s 5s 10s 1h");
+
+        assertThat(delayLevels.levelFor(999)).isEqualTo(0);
+        assertThat(delayLevels.levelFor(1000)).isEqualTo(1);
+        assertThat(delayLevels.levelFor(5000)).isEqualTo(2);
+        assertThat(delayLevels.levelFor(9999)).isEqualTo(2);
+        assertThat(delayLevels.levelFor(86400000)).isEqualTo(4);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectUnknownUnit() {
+        new DelayLevels("1s 5x");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectLevelsNotAscending() {
+        new DelayLevels("1s 10s 5s");
+    }
+
+    @Test
+    public void applyDeliverTime() {
+        DelayLevels delayLevels = new DelayLevels("1s 5s 10s 1h");
+        Message message = new Message("test", new byte[0]);
+        long deliverTime = System.currentTimeMillis() + 7000;
+        delayLevels.apply(message, deliverTime);
+
+        assertThat(message.getDelayTimeLevel()).isEqualTo(2);
+        MessageExt messageExt = new MessageExt();
+        MessageAccessor.setProperties(messageExt, message.getProperties());
+        assertThat(DelayLevels.deliverTime(messageExt)).isEqualTo(deliverTime);
+    }
+
+    @Test
+    public void applyPastDeliverTime() {
+        DelayLevels delayLevels = new DelayLevels("1s 5s 10s 1h");
+        Message message = new Message("test", new byte[0]);
+        message.setDelayTimeLevel(3);
+        delayLevels.apply(message, System.currentTimeMillis());
+        delayLevels.apply(message, System.currentTimeMillis() - 1000);
+
+        assertThat(message.getDelayTimeLevel()).isEqualTo(3);
+        assertThat(message.getUserProperty(DelayLevels.PROPERTY_DELIVER_TIME)).isNull();
+        assertThat(DelayLevels.deliverTime(new MessageExt())).isEqualTo(0);
+    }
+}
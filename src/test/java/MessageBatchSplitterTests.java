@@ -0,0 +1,53 @@
+
+
+import com.cjie.spring.starter.rocketmq.core.MessageBatchSplitter;
+import org.apache.rocketmq.common.message.Message;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MessageBatchSplitterTests {
+
+    @Test
+    public void groupByTopicInOrder() {
+        List<List<Message>> batches = MessageBatchSplitter.split(
+            Arrays.asList(message("a", 10), message("b", 10), message("a", 10)), 1024);
+
+        assertThat(batches).hasSize(2);
+        assertThat(batches.get(0)).extracting(Message::getTopic).containsExactly("a", "a");
+        assertThat(batches.get(1)).extracting(Message::getTopic).containsExactly("b");
+    }
+
+    @Test
+    public void splitBySize() {
+        List<Message> messages = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            messages.add(message("a", 400));
+        }
+
+        List<List<Message>> batches = MessageBatchSplitter.split(messages, 1024);
+
+        assertThat(batches).hasSize(5);
+        batches.forEach(batch -> assertThat(batch).hasSize(2));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectOversizedMessage() {
+        MessageBatchSplitter.split(Arrays.asList(message("a", 2048)), 1024);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectDelayMessage() {
+        Message message = message("a", 10);
+        message.setDelayTimeLevel(3);
+        MessageBatchSplitter.split(Arrays.asList(message), 1024);
+    }
+
+    private Message message(String topic, int bodySize) {
+        return new Message(topic, new byte[bodySize]);
+    }
+}
@@ -0,0 +1,136 @@
+
+
+import com.cjie.spring.starter.rocketmq.codec.BytesMessageCodec;
+import com.cjie.spring.starter.rocketmq.codec.JsonMessageCodec;
+import com.cjie.spring.starter.rocketmq.codec.KryoMessageCodec;
+import com.cjie.spring.starter.rocketmq.codec.MessageCodec;
+import com.cjie.spring.starter.rocketmq.core.MessagingException;
+import lombok.Data;
+import org.junit.Test;
+import org.springframework.core.ResolvableType;
+
+import java.io.Serializable;
+import java.lang.reflect.Type;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class MessageCodecTests {
+
+    @Test
+    public void json() {
+        MessageCodec codec = new JsonMessageCodec();
+        assertThat(codec.decode(codec.encode(testData()), TestData.class)).isEqualTo(testData());
+        assertThat(codec.decode("plain".getBytes(), String.class)).isEqualTo("plain");
+    }
+
+    @Test
+    public void jsonMultiByteBody() {
+        MessageCodec codec = new JsonMessageCodec();
+        // bodies around 16K chars, where decoding used to switch to a String
+        for (int length : new int[] {1, 2000, 5400, 5500}) {
+            StringBuilder name = new StringBuilder();
+            for (int i = 0; i < length; i++) {
+                name.append("订");
+            }
+            TestData testData = testData();
+            testData.setName(name.toString());
+            assertThat(codec.decode(codec.encode(testData), TestData.class)).isEqualTo(testData);
+        }
+    }
+
+    @Test
+    public void jsonLargeMultiByteBody() {
+        StringBuilder name = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            name.append("订单");
+        }
+        TestData testData = testData();
+        testData.setName(name.toString());
+
+        MessageCodec codec = new JsonMessageCodec();
+        assertThat(codec.decode(codec.encode(testData), TestData.class)).isEqualTo(testData);
+    }
+
+    @Test
+    public void jsonLargeBodyOtherCharset() {
+        // above the 128K chars fastjson caches per thread
+        StringBuilder name = new StringBuilder();
+        for (int i = 0; i < 70000; i++) {
+            name.append("订单");
+        }
+        TestData testData = testData();
+        testData.setName(name.toString());
+
+        MessageCodec codec = new JsonMessageCodec(Charset.forName("GBK"));
+        assertThat(codec.decode(codec.encode(testData), TestData.class)).isEqualTo(testData);
+    }
+
+    @Test
+    public void bytes() {
+        MessageCodec codec = new BytesMessageCodec();
+        byte[] body = {1, 2, 3};
+        assertThat(codec.encode(body)).isSameAs(body);
+        assertThat(codec.decode(body, byte[].class)).isSameAs(body);
+        assertThat(codec.decode(codec.encode("text"), String.class)).isEqualTo("text");
+    }
+
+    @Test
+    public void kryo() {
+        MessageCodec codec = new KryoMessageCodec();
+        byte[] body = codec.encode(testData());
+        assertThat(codec.decode(body, TestData.class)).isEqualTo(testData());
+
+        // the class name is written once per body, ahead of the first object of the class
+        ArrayList<TestData> list = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            list.add(testData());
+        }
+        assertThat(codec.encode(list).length).isLessThan(new JsonMessageCodec().encode(list).length);
+    }
+
+    @Test
+    public void kryoInterfaceType() {
+        MessageCodec codec = new KryoMessageCodec();
+        List<TestData> payload = new ArrayList<>(Collections.singletonList(testData()));
+        byte[] body = codec.encode(payload);
+        assertThat(codec.decode(body, List.class)).isEqualTo(payload);
+        assertThat(codec.decoderFor(Collection.class).decode(body)).isEqualTo(payload);
+
+        assertThatThrownBy(() -> codec.decode(body, Map.class)).isInstanceOf(MessagingException.class);
+        assertThatThrownBy(() -> codec.decode(new byte[] {1, 2, 3}, List.class))
+            .isInstanceOf(MessagingException.class);
+    }
+
+    @Test
+    public void kryoParameterizedType() {
+        MessageCodec codec = new KryoMessageCodec();
+        Type listOfTestData = ResolvableType.forClassWithGenerics(List.class, TestData.class).getType();
+        List<TestData> payload = new ArrayList<>(Collections.singletonList(testData()));
+        assertThat(codec.decoderFor(listOfTestData).decode(codec.encode(payload))).isEqualTo(payload);
+
+        byte[] strings = codec.encode(new ArrayList<>(Collections.singletonList("adb")));
+        assertThatThrownBy(() -> codec.decoderFor(listOfTestData).decode(strings))
+            .isInstanceOf(MessagingException.class);
+    }
+
+    private TestData testData() {
+        TestData testData = new TestData();
+        testData.setId(2313L);
+        testData.setName("adb");
+        return testData;
+    }
+
+    @Data
+    public static class TestData implements Serializable {
+        private Long id;
+
+        private String name;
+    }
+}
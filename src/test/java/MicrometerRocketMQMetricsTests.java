@@ -0,0 +1,29 @@
+import com.cjie.spring.starter.rocketmq.enums.SendMode;
+import com.cjie.spring.starter.rocketmq.metrics.MicrometerRocketMQMetrics;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MicrometerRocketMQMetricsTests {
+
+    @Test
+    public void countOneWaySendsOutsideTheSendTimer() {
+        MeterRegistry registry = new SimpleMeterRegistry();
+        MicrometerRocketMQMetrics metrics = new MicrometerRocketMQMetrics(registry);
+
+        metrics.sent("test", SendMode.SYNC, 1, 2000000, true);
+        metrics.sent("test", SendMode.ONEWAY, 1, 0, true);
+        metrics.sent("test", SendMode.ONEWAY, 1, 0, true);
+        metrics.sent("test", SendMode.ONEWAY, 1, 0, false);
+
+        assertThat(registry.find("rocketmq.producer.send").tag("mode", "oneway").timers()).isEmpty();
+        assertThat(registry.get("rocketmq.producer.send").tag("mode", "sync").tag("result", "success").timer()
+            .count()).isEqualTo(1);
+        assertThat(registry.get("rocketmq.producer.oneway").tag("result", "success").counter().count())
+            .isEqualTo(2);
+        assertThat(registry.get("rocketmq.producer.oneway").tag("result", "failure").counter().count())
+            .isEqualTo(1);
+    }
+}
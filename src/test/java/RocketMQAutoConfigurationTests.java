@@ -2,14 +2,24 @@
 
 import com.cjie.spring.starter.rocketmq.RocketMQAutoConfiguration;
 import com.cjie.spring.starter.rocketmq.annotation.RocketMQMessageListener;
+import com.cjie.spring.starter.rocketmq.codec.KryoMessageCodec;
+import com.cjie.spring.starter.rocketmq.codec.MessageCodec;
 import com.cjie.spring.starter.rocketmq.core.DefaultRocketMQListenerContainer;
+import com.cjie.spring.starter.rocketmq.core.RocketMQBatchListener;
 import com.cjie.spring.starter.rocketmq.core.RocketMQListener;
+import com.cjie.spring.starter.rocketmq.core.RocketMQListenerContainerStarter;
 import com.cjie.spring.starter.rocketmq.core.RocketMQMessage;
+import com.cjie.spring.starter.rocketmq.core.RocketMQMetrics;
+import com.cjie.spring.starter.rocketmq.metrics.MicrometerRocketMQMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import com.cjie.spring.starter.rocketmq.core.ConsistentHashMessageQueueSelector;
 import com.cjie.spring.starter.rocketmq.core.RocketMQProducer;
 import com.cjie.spring.starter.rocketmq.enums.ConsumeMode;
 import com.cjie.spring.starter.rocketmq.enums.SelectorType;
 import lombok.Data;
+import org.apache.rocketmq.client.consumer.DefaultMQPushConsumer;
 import org.apache.rocketmq.client.producer.DefaultMQProducer;
+import org.apache.rocketmq.client.producer.selector.SelectMessageQueueByHash;
 import org.apache.rocketmq.common.protocol.heartbeat.MessageModel;
 
 import org.junit.After;
@@ -19,6 +29,11 @@ import org.springframework.boot.test.util.EnvironmentTestUtils;
 import org.springframework.context.annotation.AnnotationConfigApplicationContext;
 
 import java.io.Serializable;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -94,6 +109,74 @@ public class RocketMQAutoConfigurationTests {
 
     }
 
+    @Test
+    public void producerBatching() {
+        load("spring.rocketmq.nameServer=127.0.0.1:9876", "spring.rocketmq.producer.group=my_group");
+        assertThat(this.context.getBean(RocketMQProducer.class).getBatchAccumulator()).isNull();
+        closeContext();
+
+        load("spring.rocketmq.nameServer=127.0.0.1:9876",
+            "spring.rocketmq.producer.group=my_group",
+            "spring.rocketmq.producer.batching.enabled=true",
+            "spring.rocketmq.producer.batching.linger-ms=10",
+            "spring.rocketmq.producer.batching.batch-size=2048");
+        assertThat(this.context.getBean(RocketMQProducer.class).getBatchAccumulator()).isNotNull();
+    }
+
+    @Test
+    public void producerQueueSelection() {
+        load("spring.rocketmq.nameServer=127.0.0.1:9876", "spring.rocketmq.producer.group=my_group");
+        assertThat(this.context.getBean(DefaultMQProducer.class).isSendLatencyFaultEnable()).isFalse();
+        assertThat(this.context.getBean(RocketMQProducer.class).getMessageQueueSelector())
+            .isInstanceOf(SelectMessageQueueByHash.class);
+        closeContext();
+
+        load("spring.rocketmq.nameServer=127.0.0.1:9876",
+            "spring.rocketmq.producer.group=my_group",
+            "spring.rocketmq.producer.orderly-selector=consistent_hash",
+            "spring.rocketmq.producer.latency-fault.enabled=true",
+            "spring.rocketmq.producer.latency-fault.latency-max=100,1000",
+            "spring.rocketmq.producer.latency-fault.not-available-duration=0,60000");
+        DefaultMQProducer producer = this.context.getBean(DefaultMQProducer.class);
+        assertThat(producer.isSendLatencyFaultEnable()).isTrue();
+        assertThat(producer.getLatencyMax()).containsExactly(100L, 1000L);
+        assertThat(this.context.getBean(RocketMQProducer.class).getMessageQueueSelector())
+            .isInstanceOf(ConsistentHashMessageQueueSelector.class);
+    }
+
+    @Test
+    public void metrics() {
+        load(false, "spring.rocketmq.nameServer=127.0.0.1:9876");
+        this.context.registerBeanDefinition("meterRegistry",
+            BeanDefinitionBuilder.rootBeanDefinition(SimpleMeterRegistry.class).getBeanDefinition());
+        this.context.registerBeanDefinition("myListener",
+            BeanDefinitionBuilder.rootBeanDefinition(MyListener.class).getBeanDefinition());
+        this.context.refresh();
+
+        assertThat(this.context.getBean(RocketMQMetrics.class)).isInstanceOf(MicrometerRocketMQMetrics.class);
+        DefaultRocketMQListenerContainer listenerContainer =
+            this.context.getBean(DefaultRocketMQListenerContainer.class.getName() + "_1",
+                DefaultRocketMQListenerContainer.class);
+        assertThat(listenerContainer.getMetrics()).isSameAs(this.context.getBean(RocketMQMetrics.class));
+    }
+
+    @Test
+    public void singleCodecBeanOnBothSides() {
+        load(false, "spring.rocketmq.nameServer=127.0.0.1:9876", "spring.rocketmq.producer.group=my_group");
+        this.context.registerBeanDefinition("kryoMessageCodec",
+            BeanDefinitionBuilder.rootBeanDefinition(KryoMessageCodec.class).getBeanDefinition());
+        this.context.registerBeanDefinition("myListener",
+            BeanDefinitionBuilder.rootBeanDefinition(MyListener.class).getBeanDefinition());
+        this.context.refresh();
+
+        MessageCodec messageCodec = this.context.getBean(MessageCodec.class);
+        assertThat(this.context.getBean(RocketMQProducer.class).getMessageCodec()).isSameAs(messageCodec);
+        DefaultRocketMQListenerContainer listenerContainer =
+            this.context.getBean(DefaultRocketMQListenerContainer.class.getName() + "_1",
+                DefaultRocketMQListenerContainer.class);
+        assertThat(listenerContainer.getMessageCodec()).isSameAs(messageCodec);
+    }
+
     @Test
     public void enableConsumer() {
         load();
@@ -145,6 +228,122 @@ public class RocketMQAutoConfigurationTests {
         assertThat(listenerContainer.getConsumeThreadMax()).isEqualTo(1);
     }
 
+    @Test
+    public void consumerTuning() {
+        load(false, "spring.rocketmq.nameServer=127.0.0.1:9876",
+            "spring.rocketmq.consumer.pull-batch-size=64",
+            "spring.rocketmq.consumer.consume-timeout=5",
+            "my.pull-interval=10");
+        BeanDefinitionBuilder beanBuilder = BeanDefinitionBuilder.rootBeanDefinition(MyTunedListener.class);
+        this.context.registerBeanDefinition("myTunedListener", beanBuilder.getBeanDefinition());
+        this.context.refresh();
+
+        DefaultRocketMQListenerContainer listenerContainer =
+            this.context.getBean(DefaultRocketMQListenerContainer.class.getName() + "_1",
+                DefaultRocketMQListenerContainer.class);
+        DefaultMQPushConsumer consumer = listenerContainer.getConsumer();
+        assertThat(consumer.getConsumeThreadMin()).isEqualTo(4);
+        assertThat(consumer.getConsumeThreadMax()).isEqualTo(8);
+        assertThat(consumer.getPullBatchSize()).isEqualTo(64);
+        assertThat(consumer.getPullInterval()).isEqualTo(10);
+        assertThat(consumer.getPullThresholdForQueue()).isEqualTo(500);
+        assertThat(consumer.getPullThresholdSizeForQueue()).isEqualTo(100);
+        assertThat(consumer.getConsumeConcurrentlyMaxSpan()).isEqualTo(2000);
+        assertThat(consumer.getConsumeTimeout()).isEqualTo(5);
+    }
+
+    @Test
+    public void lifecycleStartup() {
+        load(false, "spring.rocketmq.nameServer=127.0.0.1:9876",
+            "spring.rocketmq.consumer.startup-mode=lifecycle");
+        BeanDefinitionBuilder beanBuilder = BeanDefinitionBuilder.rootBeanDefinition(MyListener.class);
+        this.context.registerBeanDefinition("myListener", beanBuilder.getBeanDefinition());
+        this.context.refresh();
+
+        String containerBeanName = DefaultRocketMQListenerContainer.class.getName() + "_1";
+        DefaultRocketMQListenerContainer listenerContainer =
+            this.context.getBean(containerBeanName, DefaultRocketMQListenerContainer.class);
+        assertThat(listenerContainer.isStartOnInitialization()).isFalse();
+        assertThat(listenerContainer.isStarted()).isTrue();
+        assertThat(this.context.getBean(RocketMQListenerContainerStarter.class).getStartupTimes())
+            .containsOnlyKeys(containerBeanName);
+    }
+
+    @Test
+    public void pauseAndResume() {
+        load(false, "spring.rocketmq.nameServer=127.0.0.1:9876", "spring.rocketmq.consumer.drain-timeout=100");
+        BeanDefinitionBuilder beanBuilder = BeanDefinitionBuilder.rootBeanDefinition(MyListener.class);
+        this.context.registerBeanDefinition("myListener", beanBuilder.getBeanDefinition());
+        this.context.refresh();
+
+        DefaultRocketMQListenerContainer listenerContainer =
+            this.context.getBean(DefaultRocketMQListenerContainer.class.getName() + "_1",
+                DefaultRocketMQListenerContainer.class);
+        assertThat(listenerContainer.getDrainTimeout()).isEqualTo(100);
+        assertThat(listenerContainer.isRunning()).isTrue();
+
+        this.context.stop();
+        assertThat(listenerContainer.isRunning()).isFalse();
+        assertThat(listenerContainer.getConsumer().getDefaultMQPushConsumerImpl().isPause()).isTrue();
+
+        this.context.start();
+        assertThat(listenerContainer.isRunning()).isTrue();
+        assertThat(listenerContainer.getConsumer().getDefaultMQPushConsumerImpl().isPause()).isFalse();
+    }
+
+    @Test
+    public void batchListenerContainer() {
+        load(false, "spring.rocketmq.nameServer=127.0.0.1:9876");
+        BeanDefinitionBuilder beanBuilder = BeanDefinitionBuilder.rootBeanDefinition(MyBatchListener.class);
+        this.context.registerBeanDefinition("myBatchListener", beanBuilder.getBeanDefinition());
+        this.context.refresh();
+
+        DefaultRocketMQListenerContainer listenerContainer =
+            this.context.getBean(DefaultRocketMQListenerContainer.class.getName() + "_1",
+                DefaultRocketMQListenerContainer.class);
+        assertThat(listenerContainer.getRocketMQListener()).isNull();
+        assertThat(listenerContainer.getRocketMQBatchListener()).isInstanceOf(MyBatchListener.class);
+        assertThat(listenerContainer.getConsumeMessageBatchMaxSize()).isEqualTo(16);
+        assertThat(listenerContainer.getConsumer().getConsumeMessageBatchMaxSize()).isEqualTo(16);
+    }
+
+    @Test
+    public void genericMessageType() {
+        load(false, "spring.rocketmq.nameServer=127.0.0.1:9876");
+        BeanDefinitionBuilder beanBuilder = BeanDefinitionBuilder.rootBeanDefinition(MyGenericListener.class);
+        this.context.registerBeanDefinition("myGenericListener", beanBuilder.getBeanDefinition());
+        this.context.refresh();
+
+        DefaultRocketMQListenerContainer listenerContainer =
+            this.context.getBean(DefaultRocketMQListenerContainer.class.getName() + "_1",
+                DefaultRocketMQListenerContainer.class);
+        Type messageType = listenerContainer.getMessageType();
+        assertThat(messageType).isInstanceOf(ParameterizedType.class);
+        assertThat(((ParameterizedType) messageType).getRawType()).isEqualTo(List.class);
+        assertThat(((ParameterizedType) messageType).getActualTypeArguments()).containsExactly(TestData.class);
+
+        Object decoded = listenerContainer.getMessageDecoder().decode("[{\"id\":\"1\"}]".getBytes());
+        assertThat(((List<?>) decoded).get(0)).isInstanceOf(TestData.class);
+    }
+
+    @Test
+    public void genericMessageTypeKryo() {
+        load(false, "spring.rocketmq.nameServer=127.0.0.1:9876");
+        this.context.registerBeanDefinition("kryoMessageCodec",
+            BeanDefinitionBuilder.rootBeanDefinition(KryoMessageCodec.class).getBeanDefinition());
+        this.context.registerBeanDefinition("myGenericListener",
+            BeanDefinitionBuilder.rootBeanDefinition(MyGenericListener.class).getBeanDefinition());
+        this.context.refresh();
+
+        DefaultRocketMQListenerContainer listenerContainer =
+            this.context.getBean(DefaultRocketMQListenerContainer.class.getName() + "_1",
+                DefaultRocketMQListenerContainer.class);
+        TestData testData = new TestData();
+        Object decoded = listenerContainer.getMessageDecoder()
+            .decode(new KryoMessageCodec().encode(new ArrayList<>(Collections.singletonList(testData))));
+        assertThat((List<?>) decoded).containsExactly(testData);
+    }
+
     @After
     public void closeContext() {
         if (this.context != null) {
@@ -161,6 +360,38 @@ public class RocketMQAutoConfigurationTests {
         }
     }
 
+    @RocketMQMessageListener(consumerGroup = TEST_CONSUMER_GROUP, topic = TEST_TOPIC, consumeThreadMax = 8,
+        consumeThreadMin = "4", pullInterval = "${my.pull-interval}", pullThresholdForQueue = "500")
+    private static class MyTunedListener implements RocketMQListener<TestData> {
+
+        @Override
+        public void onMessage(TestData message) {
+            System.out.println(message);
+        }
+    }
+
+    @RocketMQMessageListener(consumerGroup = TEST_CONSUMER_GROUP, topic = TEST_TOPIC, consumeThreadMax = 1,
+        consumeMessageBatchMaxSize = 16)
+    private static class MyBatchListener implements RocketMQBatchListener<TestData> {
+
+        @Override
+        public void onMessage(List<TestData> messages) {
+            System.out.println(messages);
+        }
+    }
+
+    private abstract static class AbstractListListener<T> implements RocketMQListener<List<T>> {
+
+        @Override
+        public void onMessage(List<T> message) {
+            System.out.println(message);
+        }
+    }
+
+    @RocketMQMessageListener(consumerGroup = TEST_CONSUMER_GROUP, topic = TEST_TOPIC, consumeThreadMax = 1)
+    private static class MyGenericListener extends AbstractListListener<TestData> {
+    }
+
     private void load(boolean refresh, String... environment) {
         AnnotationConfigApplicationContext ctx = new AnnotationConfigApplicationContext();
         ctx.register(RocketMQAutoConfiguration.class);
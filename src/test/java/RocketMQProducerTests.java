@@ -0,0 +1,706 @@
+import com.cjie.spring.starter.rocketmq.codec.JsonMessageCodec;
+import com.cjie.spring.starter.rocketmq.core.ConsistentHashMessageQueueSelector;
+import com.cjie.spring.starter.rocketmq.core.MessagingException;
+import com.cjie.spring.starter.rocketmq.core.ReactiveRocketMQProducer;
+import com.cjie.spring.starter.rocketmq.core.RocketMQMessage;
+import com.cjie.spring.starter.rocketmq.core.RocketMQProducer;
+import com.cjie.spring.starter.rocketmq.core.RocketMQReplyConsumer;
+import com.cjie.spring.starter.rocketmq.core.RocketMQSpillover;
+import com.cjie.spring.starter.rocketmq.core.SpilledSendResult;
+import com.cjie.spring.starter.rocketmq.core.SpilloverJournal;
+import com.cjie.spring.starter.rocketmq.enums.ProducerRouting;
+import org.apache.rocketmq.client.consumer.DefaultMQPushConsumer;
+import org.apache.rocketmq.client.consumer.listener.MessageListenerConcurrently;
+import org.apache.rocketmq.client.exception.MQBrokerException;
+import org.apache.rocketmq.client.exception.MQClientException;
+import org.apache.rocketmq.client.producer.DefaultMQProducer;
+import org.apache.rocketmq.client.producer.MessageQueueSelector;
+import org.apache.rocketmq.client.producer.SendCallback;
+import org.apache.rocketmq.client.producer.SendResult;
+import org.apache.rocketmq.client.producer.SendStatus;
+import org.apache.rocketmq.common.message.Message;
+import org.apache.rocketmq.common.message.MessageAccessor;
+import org.apache.rocketmq.common.message.MessageExt;
+import org.apache.rocketmq.common.message.MessageQueue;
+import org.apache.rocketmq.common.protocol.ResponseCode;
+import org.apache.rocketmq.remoting.exception.RemotingConnectException;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import reactor.core.publisher.Flux;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+public class RocketMQProducerTests {
+
+    private final ExecutorService completionExecutor = Executors.newSingleThreadExecutor(
+        runnable -> new Thread(runnable, "completion"));
+
+    private RocketMQProducer rocketMQProducer;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @After
+    public void destroy() {
+        if (rocketMQProducer != null) {
+            rocketMQProducer.destroy();
+        }
+        completionExecutor.shutdown();
+    }
+
+    @Test
+    public void asyncSendFuture() throws Exception {
+        rocketMQProducer = newProducer(new StubProducer());
+        // hold the completion back until the dependent stage is attached
+        CountDownLatch attached = new CountDownLatch(1);
+        completionExecutor.execute(() -> {
+            try {
+                attached.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        CompletableFuture<String> threadName = rocketMQProducer.asyncSend(message("a"), 1000, completionExecutor)
+            .thenApply(sendResult -> Thread.currentThread().getName());
+        attached.countDown();
+        SendResult sendResult = rocketMQProducer.asyncSendOrderly(message("b"), "key").get();
+
+        assertThat(threadName.get()).isEqualTo("completion");
+        assertThat(sendResult.getSendStatus()).isEqualTo(SendStatus.SEND_OK);
+    }
+
+    @Test
+    public void asyncSendFutureFailure() throws Exception {
+        rocketMQProducer = newProducer(new StubProducer() {
+            @Override
+            public void send(Message msg, SendCallback sendCallback, long timeout) throws MQClientException {
+                throw new MQClientException("no route", null);
+            }
+        });
+
+        try {
+            rocketMQProducer.asyncSend(message("a")).get();
+            fail("send should fail");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause().getMessage()).contains("no route");
+        }
+    }
+
+    @Test
+    public void asyncSendBatchFuture() throws Exception {
+        rocketMQProducer = newProducer(new StubProducer());
+
+        List<RocketMQMessage> messages = Arrays.asList(message("a"), message("b"), message("other", "c"));
+        List<SendResult> sendResults = rocketMQProducer.asyncSendBatch(messages).get();
+
+        assertThat(sendResults).hasSize(2);
+    }
+
+    @Test
+    public void reactiveSendBoundsInFlight() throws Exception {
+        List<SendCallback> pending = new CopyOnWriteArrayList<>();
+        rocketMQProducer = newProducer(new StubProducer() {
+            @Override
+            public void send(Message msg, SendCallback sendCallback, long timeout) {
+                pending.add(sendCallback);
+            }
+        });
+        ReactiveRocketMQProducer reactiveProducer = new ReactiveRocketMQProducer(rocketMQProducer, 3);
+
+        List<SendResult> sendResults = new CopyOnWriteArrayList<>();
+        reactiveProducer.send(Flux.range(0, 10).map(i -> message(String.valueOf(i)))).subscribe(sendResults::add);
+        assertThat(pending).hasSize(3);
+
+        SendResult sendResult = new SendResult(SendStatus.SEND_OK, "msgId", "offsetMsgId",
+            new MessageQueue("test", "broker", 0), 0);
+        pending.get(0).onSuccess(sendResult);
+        assertThat(pending).hasSize(4);
+        assertThat(sendResults).hasSize(1);
+
+        for (int i = 1; i < 10; i++) {
+            pending.get(i).onSuccess(sendResult);
+        }
+        assertThat(sendResults).hasSize(10);
+    }
+
+    @Test
+    public void poolSpreadsSends() throws Exception {
+        List<StubProducer> pool = new CopyOnWriteArrayList<>();
+        rocketMQProducer = new RocketMQProducer() {
+            @Override
+            protected DefaultMQProducer copyProducer(String instanceName) {
+                StubProducer copy = new StubProducer();
+                pool.add(copy);
+                return copy;
+            }
+        };
+        StubProducer primary = new StubProducer();
+        pool.add(primary);
+        rocketMQProducer.setProducer(primary);
+        rocketMQProducer.setPoolSize(3);
+        rocketMQProducer.setRouting(ProducerRouting.KEY_HASH);
+        rocketMQProducer.afterPropertiesSet();
+
+        for (int i = 0; i < 6; i++) {
+            rocketMQProducer.asyncSend(message(String.valueOf(i))).get();
+        }
+        assertThat(pool).hasSize(3);
+        assertThat(pool.stream().map(producer -> producer.sends.get()).collect(Collectors.toList()))
+            .containsExactly(2, 2, 2);
+
+        for (int i = 0; i < 3; i++) {
+            rocketMQProducer.asyncSend(RocketMQMessage.builder().topic("test").key("k").body("a").build()).get();
+            rocketMQProducer.asyncSendOrderly(message("b"), "k").get();
+        }
+        assertThat(pool.stream().filter(producer -> producer.sends.get() == 8).count()).isEqualTo(1);
+    }
+
+    @Test
+    public void poolCopiesClientConfigAndSpreadsBatchesWithoutKeys() throws Exception {
+        List<DefaultMQProducer> copies = new CopyOnWriteArrayList<>();
+        List<StubProducer> pool = new CopyOnWriteArrayList<>();
+        rocketMQProducer = new RocketMQProducer() {
+            @Override
+            protected DefaultMQProducer copyProducer(String instanceName) {
+                copies.add(super.copyProducer(instanceName));
+                StubProducer copy = new StubProducer();
+                pool.add(copy);
+                return copy;
+            }
+        };
+        StubProducer primary = new StubProducer();
+        primary.setInstanceName("app");
+        primary.setNamesrvAddr("127.0.0.1:9876");
+        primary.setUnitName("unit");
+        primary.setSendMsgTimeout(1234);
+        pool.add(primary);
+        rocketMQProducer.setProducer(primary);
+        rocketMQProducer.setPoolSize(2);
+        rocketMQProducer.setRouting(ProducerRouting.KEY_HASH);
+        rocketMQProducer.afterPropertiesSet();
+
+        assertThat(primary.getInstanceName()).isEqualTo("app#0");
+        DefaultMQProducer copy = copies.get(0);
+        assertThat(copy.getInstanceName()).isEqualTo("app#1");
+        assertThat(copy.getProducerGroup()).isEqualTo("test_producer");
+        assertThat(copy.getNamesrvAddr()).isEqualTo("127.0.0.1:9876");
+        assertThat(copy.getUnitName()).isEqualTo("unit");
+        assertThat(copy.getSendMsgTimeout()).isEqualTo(1234);
+
+        for (int i = 0; i < 4; i++) {
+            rocketMQProducer.syncSendBatch(Arrays.asList(message("a"), message("b")));
+        }
+        assertThat(pool.stream().map(producer -> producer.sends.get()).collect(Collectors.toList()))
+            .containsExactly(2, 2);
+    }
+
+    @Test
+    public void encodedBodyReused() throws Exception {
+        List<byte[]> bodies = new CopyOnWriteArrayList<>();
+        rocketMQProducer = newProducer(new StubProducer() {
+            @Override
+            public void send(Message msg, SendCallback sendCallback, long timeout) throws MQClientException {
+                bodies.add(msg.getBody());
+                super.send(msg, sendCallback, timeout);
+            }
+        });
+        AtomicInteger encodes = new AtomicInteger();
+        rocketMQProducer.setMessageCodec(new JsonMessageCodec() {
+            @Override
+            public byte[] encode(Object payload) {
+                encodes.incrementAndGet();
+                return super.encode(payload);
+            }
+        });
+
+        RocketMQMessage message = message("a");
+        rocketMQProducer.asyncSend(message).get();
+        message.setTopic("other");
+        rocketMQProducer.asyncSend(message).get();
+        assertThat(encodes.get()).isEqualTo(1);
+        assertThat(bodies.get(1)).isSameAs(bodies.get(0));
+
+        message.setBody("b");
+        rocketMQProducer.asyncSend(message).get();
+        assertThat(encodes.get()).isEqualTo(2);
+        assertThat(new String(bodies.get(2), StandardCharsets.UTF_8)).isEqualTo("\"b\"");
+
+        // a mutable body may change in place between two sends
+        ArrayList<String> list = new ArrayList<>(Collections.singletonList("c"));
+        RocketMQMessage mutable = RocketMQMessage.builder().topic("test").body(list).build();
+        rocketMQProducer.asyncSend(mutable).get();
+        list.add("d");
+        rocketMQProducer.asyncSend(mutable).get();
+        assertThat(encodes.get()).isEqualTo(4);
+        assertThat(new String(bodies.get(4), StandardCharsets.UTF_8)).isEqualTo("[\"c\",\"d\"]");
+
+        mutable.setImmutableBody(true);
+        rocketMQProducer.asyncSend(mutable).get();
+        rocketMQProducer.asyncSend(mutable).get();
+        assertThat(encodes.get()).isEqualTo(5);
+        assertThat(bodies.get(6)).isSameAs(bodies.get(5));
+    }
+
+    @Test
+    public void consistentHashKeepsMostKeysWhenQueueAdded() {
+        ConsistentHashMessageQueueSelector selector = new ConsistentHashMessageQueueSelector();
+        List<MessageQueue> queues = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            queues.add(new MessageQueue("test", "broker", i));
+        }
+        Message msg = new Message("test", new byte[0]);
+        Map<String, MessageQueue> before = new HashMap<>();
+        for (int i = 0; i < 1000; i++) {
+            before.put("key" + i, selector.select(queues, msg, "key" + i));
+        }
+        assertThat(new HashSet<>(before.values())).hasSize(8);
+
+        queues.add(new MessageQueue("test", "broker", 8));
+        long moved = before.entrySet().stream()
+            .filter(entry -> !entry.getValue().equals(selector.select(queues, msg, entry.getKey())))
+            .count();
+        assertThat(moved).isGreaterThan(0).isLessThan(250);
+    }
+
+    @Test
+    public void consistentHashSelectsSameQueueConcurrently() throws Exception {
+        ConsistentHashMessageQueueSelector selector = new ConsistentHashMessageQueueSelector();
+        List<MessageQueue> queues = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            queues.add(new MessageQueue("test", "broker", i));
+        }
+        Message msg = new Message("test", new byte[0]);
+        Map<String, MessageQueue> expected = new HashMap<>();
+        for (int i = 0; i < 100; i++) {
+            expected.put("key" + i, selector.select(queues, msg, "key" + i));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<Integer>> mismatches = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            mismatches.add(executor.submit(() -> {
+                int mismatch = 0;
+                for (int round = 0; round < 200; round++) {
+                    for (Map.Entry<String, MessageQueue> entry : expected.entrySet()) {
+                        if (!entry.getValue().equals(selector.select(queues, msg, entry.getKey()))) {
+                            mismatch++;
+                        }
+                    }
+                }
+                return mismatch;
+            }));
+        }
+        executor.shutdown();
+        for (Future<Integer> mismatch : mismatches) {
+            assertThat(mismatch.get()).isEqualTo(0);
+        }
+    }
+
+    @Test
+    public void spillWhileBrokerDownAndSendLiveWhileDraining() throws Exception {
+        AtomicInteger down = new AtomicInteger(1);
+        CountDownLatch replayB = new CountDownLatch(1);
+        List<String> received = new CopyOnWriteArrayList<>();
+        StubProducer producer = new StubProducer() {
+            @Override
+            public SendResult send(Message msg) throws RemotingConnectException {
+                return send(msg, 0);
+            }
+
+            @Override
+            public SendResult send(Message msg, long timeout) throws RemotingConnectException {
+                if (down.get() == 1) {
+                    throw new RemotingConnectException("broker");
+                }
+                String body = new String(msg.getBody(), StandardCharsets.UTF_8);
+                if (body.equals("\"b\"")) {
+                    try {
+                        replayB.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                received.add(body);
+                return new SendResult(SendStatus.SEND_OK, "msgId", "offsetMsgId", null, 0);
+            }
+        };
+        rocketMQProducer = new RocketMQProducer();
+        rocketMQProducer.setProducer(producer);
+        rocketMQProducer.setSpillover(new RocketMQSpillover(
+            new SpilloverJournal(temporaryFolder.getRoot(), 4096, 4096 * 4), 20));
+        rocketMQProducer.afterPropertiesSet();
+
+        assertThat(rocketMQProducer.syncSend(message("a"))).isInstanceOf(SpilledSendResult.class);
+        assertThat(rocketMQProducer.syncSend(message("b"))).isInstanceOf(SpilledSendResult.class);
+        assertThat(rocketMQProducer.getSpillover().isBrokerDown("test")).isTrue();
+        down.set(0);
+
+        // the first replay clears the latch, sends go to the broker while the journal drains
+        long deadline = System.currentTimeMillis() + 5000;
+        while (rocketMQProducer.getSpillover().isBrokerDown("test") && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(rocketMQProducer.syncSend(message("c"))).isNotInstanceOf(SpilledSendResult.class);
+        assertThat(rocketMQProducer.getSpillover().pendingBytes()).isGreaterThan(0);
+
+        replayB.countDown();
+        while (rocketMQProducer.getSpillover().pendingBytes() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(received).containsExactly("\"a\"", "\"c\"", "\"b\"");
+        assertThat(rocketMQProducer.getSpillover().pendingBytes()).isEqualTo(0);
+    }
+
+    @Test
+    public void spillWhenBrokerBusy() throws Exception {
+        AtomicInteger responseCode = new AtomicInteger(ResponseCode.SYSTEM_BUSY);
+        StubProducer producer = new StubProducer() {
+            @Override
+            public SendResult send(Message msg, long timeout) throws MQBrokerException {
+                throw new MQBrokerException(responseCode.get(), "broker");
+            }
+        };
+        rocketMQProducer = new RocketMQProducer();
+        rocketMQProducer.setProducer(producer);
+        rocketMQProducer.setSpillover(new RocketMQSpillover(
+            new SpilloverJournal(temporaryFolder.getRoot(), 4096, 4096 * 4), 1000));
+        rocketMQProducer.afterPropertiesSet();
+
+        assertThat(rocketMQProducer.syncSend(message("a"))).isInstanceOf(SpilledSendResult.class);
+
+        rocketMQProducer.getSpillover().close();
+        rocketMQProducer.setSpillover(new RocketMQSpillover(
+            new SpilloverJournal(temporaryFolder.newFolder(), 4096, 4096 * 4), 1000));
+        responseCode.set(ResponseCode.NO_PERMISSION);
+        try {
+            rocketMQProducer.syncSend(message("b"));
+            fail("broker rejecting the message must fail the send");
+        } catch (MessagingException e) {
+            assertThat(e.getCause()).isInstanceOf(MQBrokerException.class);
+        }
+    }
+
+    @Test
+    public void spillOnlyTransientFailuresAndDropHeadAfterMaxReplays() throws Exception {
+        List<String> received = new CopyOnWriteArrayList<>();
+        StubProducer producer = new StubProducer() {
+            @Override
+            public SendResult send(Message msg) throws MQClientException {
+                return send(msg, 0);
+            }
+
+            @Override
+            public SendResult send(Message msg, long timeout) throws MQClientException {
+                if (msg.getTopic().equals("missing")) {
+                    throw new MQClientException("No route info of this topic, missing", null);
+                }
+                if (msg.getTopic().equals("down")) {
+                    throw new MQClientException("Send [3] times, still failed",
+                        new RemotingConnectException("broker"));
+                }
+                received.add(msg.getTopic());
+                return new SendResult(SendStatus.SEND_OK, "msgId", "offsetMsgId", null, 0);
+            }
+        };
+        RocketMQSpillover spillover = new RocketMQSpillover(
+            new SpilloverJournal(temporaryFolder.getRoot(), 4096, 4096 * 4), 10);
+        spillover.setMaxReplayAttempts(3);
+        rocketMQProducer = new RocketMQProducer();
+        rocketMQProducer.setProducer(producer);
+        rocketMQProducer.setSpillover(spillover);
+        rocketMQProducer.afterPropertiesSet();
+
+        try {
+            rocketMQProducer.syncSend(message("missing", "a"));
+            fail("a topic without route must fail the send");
+        } catch (MessagingException e) {
+            assertThat(e.getCause()).isInstanceOf(MQClientException.class);
+        }
+        assertThat(spillover.isBrokerDown("missing")).isFalse();
+
+        assertThat(rocketMQProducer.syncSend(message("down", "a"))).isInstanceOf(SpilledSendResult.class);
+        assertThat(spillover.isBrokerDown("down")).isTrue();
+        assertThat(spillover.isBrokerDown("test")).isFalse();
+        assertThat(rocketMQProducer.syncSend(message("test", "b"))).isNotInstanceOf(SpilledSendResult.class);
+
+        // the head of the journal keeps failing and is dropped, it does not block the journal forever
+        long deadline = System.currentTimeMillis() + 5000;
+        while (spillover.pendingBytes() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(spillover.pendingBytes()).isEqualTo(0);
+        assertThat(received).containsExactly("test");
+    }
+
+    @Test
+    public void spilloverJournalRecoversAfterReopen() throws Exception {
+        SpilloverJournal journal = new SpilloverJournal(temporaryFolder.getRoot(), 64, 64 * 3);
+        for (int i = 0; i < 5; i++) {
+            assertThat(journal.append(("record" + i).getBytes(StandardCharsets.UTF_8))).isTrue();
+        }
+        journal.advance();
+        journal.close();
+
+        journal = new SpilloverJournal(temporaryFolder.getRoot(), 64, 64 * 3);
+        List<String> records = new ArrayList<>();
+        for (byte[] record = journal.peek(); record != null; record = journal.peek()) {
+            records.add(new String(record, StandardCharsets.UTF_8));
+            journal.advance();
+        }
+        assertThat(records).containsExactly("record1", "record2", "record3", "record4");
+        assertThat(journal.pendingBytes()).isEqualTo(0);
+        assertThat(temporaryFolder.getRoot().list()).hasSize(2);
+        journal.close();
+    }
+
+    @Test
+    public void spilloverJournalFullUntilSegmentRead() throws Exception {
+        SpilloverJournal journal = new SpilloverJournal(temporaryFolder.getRoot(), 64, 64 * 2);
+        byte[] record = new byte[20];
+        for (int i = 0; i < 4; i++) {
+            assertThat(journal.append(record)).isTrue();
+        }
+        assertThat(journal.append(record)).isFalse();
+
+        journal.advance();
+        assertThat(journal.append(record)).isFalse();
+        journal.advance();
+        assertThat(journal.append(record)).isTrue();
+        int pending = 0;
+        for (; journal.peek() != null; journal.advance()) {
+            pending++;
+        }
+        assertThat(pending).isEqualTo(3);
+        journal.close();
+    }
+
+    @Test
+    public void asyncSendFailsCallbackWhenSpilloverFull() throws Exception {
+        StubProducer producer = new StubProducer() {
+            @Override
+            public void send(Message msg, SendCallback sendCallback, long timeout) throws MQClientException {
+                throw new MQClientException("broker down", new RemotingConnectException("broker"));
+            }
+        };
+        rocketMQProducer = new RocketMQProducer();
+        rocketMQProducer.setProducer(producer);
+        rocketMQProducer.setSpillover(new RocketMQSpillover(
+            new SpilloverJournal(temporaryFolder.getRoot(), 512, 512), 1000));
+        rocketMQProducer.afterPropertiesSet();
+
+        List<SendResult> spilled = new ArrayList<>();
+        List<Throwable> failed = new ArrayList<>();
+        SendCallback callback = new SendCallback() {
+            @Override
+            public void onSuccess(SendResult sendResult) {
+                spilled.add(sendResult);
+            }
+
+            @Override
+            public void onException(Throwable e) {
+                failed.add(e);
+            }
+        };
+        for (int i = 0; i < 10; i++) {
+            rocketMQProducer.asyncSend(message("message" + i), callback);
+        }
+
+        assertThat(spilled).isNotEmpty();
+        assertThat(spilled.get(0)).isInstanceOf(SpilledSendResult.class);
+        assertThat(failed).hasSize(10 - spilled.size());
+        assertThat(failed.get(0)).isInstanceOf(MessagingException.class);
+    }
+
+    @Test
+    public void sendAndReceiveMatchesReplyByCorrelationId() throws Exception {
+        List<Message> sent = new CopyOnWriteArrayList<>();
+        StubProducer producer = new StubProducer() {
+            @Override
+            public void send(Message msg, SendCallback sendCallback, long timeout) throws MQClientException {
+                sent.add(msg);
+                super.send(msg, sendCallback, timeout);
+            }
+
+            @Override
+            public SendResult send(Message msg, long timeout) {
+                sent.add(msg);
+                return new SendResult(SendStatus.SEND_OK, "msgId", "offsetMsgId", null, 0);
+            }
+        };
+        StubConsumer consumer = new StubConsumer();
+        RocketMQReplyConsumer replyConsumer = new RocketMQReplyConsumer(consumer, "reply");
+        rocketMQProducer = new RocketMQProducer();
+        rocketMQProducer.setProducer(producer);
+        rocketMQProducer.setReplyConsumer(replyConsumer);
+        rocketMQProducer.afterPropertiesSet();
+
+        CompletableFuture<Integer> answered = rocketMQProducer.sendAndReceive(message("ping"), Integer.class, 5000);
+        CompletableFuture<MessageExt> unanswered = rocketMQProducer.sendAndReceive(message("lost"), 50);
+
+        rocketMQProducer.reply(received(sent.get(0)), 42);
+        Message reply = sent.get(2);
+        assertThat(reply.getTopic()).isEqualTo("reply");
+        assertThat(reply.getTags()).isEqualTo(replyConsumer.getReplyTag());
+        consumer.listener.consumeMessage(Collections.singletonList(received(reply)), null);
+
+        assertThat(answered.get()).isEqualTo(42);
+        try {
+            unanswered.get();
+            fail("request without reply must time out");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause()).isInstanceOf(TimeoutException.class);
+        }
+        assertThat(replyConsumer.pendingReplies()).isEqualTo(0);
+    }
+
+    @Test
+    public void replyConsumersOfProcessesHaveGroupsOfTheirOwn() throws Exception {
+        StubConsumer consumer1 = new StubConsumer();
+        StubConsumer consumer2 = new StubConsumer();
+        RocketMQReplyConsumer replyConsumer1 = new RocketMQReplyConsumer(consumer1, "reply", "order-0");
+        RocketMQReplyConsumer replyConsumer2 = new RocketMQReplyConsumer(consumer2, "reply", "10.0.0.2");
+        replyConsumer1.start();
+        replyConsumer2.start();
+
+        // stable per instance, a restarted process keeps its group
+        assertThat(replyConsumer1.getReplyTag()).isEqualTo("order-0");
+        assertThat(replyConsumer2.getReplyTag()).isEqualTo("10_0_0_2");
+        assertThat(new RocketMQReplyConsumer(new StubConsumer(), "reply").getReplyTag())
+            .isEqualTo(consumer1.getClientIP().replaceAll("[^a-zA-Z0-9_-]", "_"));
+        assertThat(consumer1.getConsumerGroup()).isEqualTo("test_REPLY_order-0");
+        assertThat(consumer2.getConsumerGroup()).isEqualTo("test_REPLY_10_0_0_2");
+        assertThat(consumer1.subExpression).isEqualTo(replyConsumer1.getReplyTag());
+        assertThat(consumer2.subExpression).isEqualTo(replyConsumer2.getReplyTag());
+
+        CompletableFuture<MessageExt> future1 = replyConsumer1.register("id1", 5000);
+        CompletableFuture<MessageExt> future2 = replyConsumer2.register("id2", 5000);
+        Message reply = new Message("reply", replyConsumer2.getReplyTag(), new byte[] {1});
+        reply.putUserProperty(RocketMQReplyConsumer.PROPERTY_CORRELATION_ID, "id2");
+        consumer2.listener.consumeMessage(Collections.singletonList(received(reply)), null);
+
+        assertThat(future2.get().getBody()).containsExactly(1);
+        assertThat(future1.isDone()).isFalse();
+        replyConsumer1.close();
+        replyConsumer2.close();
+        assertThat(future1.isCompletedExceptionally()).isTrue();
+    }
+
+    private static MessageExt received(Message message) {
+        MessageExt messageExt = new MessageExt();
+        messageExt.setTopic(message.getTopic());
+        messageExt.setBody(message.getBody());
+        MessageAccessor.setProperties(messageExt, message.getProperties());
+        return messageExt;
+    }
+
+    private RocketMQProducer newProducer(DefaultMQProducer producer) {
+        RocketMQProducer rocketMQProducer = new RocketMQProducer();
+        rocketMQProducer.setProducer(producer);
+        try {
+            rocketMQProducer.afterPropertiesSet();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+        return rocketMQProducer;
+    }
+
+    private RocketMQMessage message(String body) {
+        return message("test", body);
+    }
+
+    private RocketMQMessage message(String topic, String body) {
+        return RocketMQMessage.builder().topic(topic).body(body).build();
+    }
+
+    private static class StubConsumer extends DefaultMQPushConsumer {
+
+        private MessageListenerConcurrently listener;
+
+        private String subExpression;
+
+        StubConsumer() {
+            super("test_REPLY");
+        }
+
+        @Override
+        public void subscribe(String topic, String subExpression) {
+            this.subExpression = subExpression;
+        }
+
+        @Override
+        public void registerMessageListener(MessageListenerConcurrently messageListener) {
+            this.listener = messageListener;
+        }
+
+        @Override
+        public void start() {
+        }
+
+        @Override
+        public void shutdown() {
+        }
+    }
+
+    private static class StubProducer extends DefaultMQProducer {
+
+        private final SendResult sendResult = new SendResult(SendStatus.SEND_OK, "msgId", "offsetMsgId",
+            new MessageQueue("test", "broker", 0), 0);
+
+        private final AtomicInteger sends = new AtomicInteger();
+
+        StubProducer() {
+            super("test_producer");
+        }
+
+        @Override
+        public void start() {
+        }
+
+        @Override
+        public void shutdown() {
+        }
+
+        @Override
+        public void send(Message msg, SendCallback sendCallback, long timeout) throws MQClientException {
+            sends.incrementAndGet();
+            sendCallback.onSuccess(sendResult);
+        }
+
+        @Override
+        public void send(Message msg, MessageQueueSelector selector, Object arg, SendCallback sendCallback,
+            long timeout) {
+            sends.incrementAndGet();
+            sendCallback.onSuccess(sendResult);
+        }
+
+        @Override
+        public SendResult send(Collection<Message> msgs, long timeout) {
+            sends.incrementAndGet();
+            return sendResult;
+        }
+    }
+}